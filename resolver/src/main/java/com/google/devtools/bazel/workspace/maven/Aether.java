@@ -33,7 +33,6 @@ import org.eclipse.aether.resolution.VersionRangeResult;
 import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
 import org.eclipse.aether.spi.connector.transport.TransporterFactory;
 import org.eclipse.aether.transport.file.FileTransporterFactory;
-import org.eclipse.aether.transport.http.HttpTransporterFactory;
 import org.eclipse.aether.util.graph.manager.ClassicDependencyManager;
 import org.eclipse.aether.version.Version;
 
@@ -97,12 +96,14 @@ public class Aether {
    */
   static class Utilities {
 
-    /* Creates a new aether repository system. */
+    /*
+     * Creates a new aether repository system. It is never given remote repositories (all remote
+     * traffic goes through HttpTransport), so it only reads local files.
+     */
     static RepositorySystem newRepositorySystem() {
       DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
       locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
       locator.addService(TransporterFactory.class, FileTransporterFactory.class);
-      locator.addService(TransporterFactory.class, HttpTransporterFactory.class);
       return locator.getService(RepositorySystem.class);
     }
 
@@ -0,0 +1,53 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import org.apache.maven.model.building.ModelSource2;
+
+/**
+ * A model source which serves an already-fetched POM body from memory, so the model builder does
+ * not need to open the URL again. Related sources are not supported, so the parents are always
+ * resolved from the repositories.
+ */
+public class BufferedModelSource2 implements ModelSource2 {
+
+  private final byte[] pomContent;
+  private final URL pomUrl;
+
+  public BufferedModelSource2(byte[] pomContent, URL pomUrl) {
+    this.pomContent = pomContent;
+    this.pomUrl = pomUrl;
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(pomContent);
+  }
+
+  @Override
+  public String getLocation() {
+    return pomUrl.toExternalForm();
+  }
+
+  @Override
+  public ModelSource2 getRelatedSource(String relPath) {
+    return null;
+  }
+
+  @Override
+  public URI getLocationURI() {
+    try {
+      return pomUrl.toURI();
+    } catch (URISyntaxException e) {
+      throw new Error(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getLocation();
+  }
+}
@@ -0,0 +1,55 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import org.apache.maven.model.building.ModelSource2;
+
+/**
+ * A model source which reads the POM from a local (cached) copy, but reports the remote URL it was
+ * originally fetched from. Like {@link BufferedModelSource2}, related sources are not supported, so
+ * the parents are always resolved from the repositories.
+ */
+public class CachedModelSource2 implements ModelSource2 {
+
+  private final File pomFile;
+  private final URL pomUrl;
+
+  public CachedModelSource2(File pomFile, URL pomUrl) {
+    this.pomFile = pomFile;
+    this.pomUrl = pomUrl;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return new FileInputStream(pomFile);
+  }
+
+  @Override
+  public String getLocation() {
+    return pomUrl.toExternalForm();
+  }
+
+  @Override
+  public ModelSource2 getRelatedSource(String relPath) {
+    return null;
+  }
+
+  @Override
+  public URI getLocationURI() {
+    try {
+      return pomUrl.toURI();
+    } catch (URISyntaxException e) {
+      throw new Error(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getLocation();
+  }
+}
@@ -18,14 +18,19 @@ import static java.util.stream.Collectors.toList;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Maps;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.NegativeLookupCache;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.Parent;
@@ -33,6 +38,7 @@ import org.apache.maven.model.Repository;
 import org.apache.maven.model.building.DefaultModelBuilder;
 import org.apache.maven.model.building.DefaultModelBuilderFactory;
 import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.ModelCache;
 import org.apache.maven.model.building.ModelBuildingRequest;
 import org.apache.maven.model.building.ModelSource;
 import org.apache.maven.model.building.ModelSource2;
@@ -47,54 +53,95 @@ import org.apache.maven.model.resolution.UnresolvableModelException;
  */
 public class DefaultModelResolver implements ModelResolver {
 
+  // the fetched POMs are kept in a model-cache, under the repository they were fetched from
+  private static final String FETCHED_POM_TAG = "pom@";
+
   private final Collection<Repository> repositories;
   private final Map<String, RepoModelSource> ruleNameToModelSource;
   private final DefaultModelBuilder modelBuilder;
   private final VersionResolver versionResolver;
   private final String jdkHome;
-
-  public DefaultModelResolver(
-      Collection<Repository> repositories, VersionResolver versionResolver, String jdkHome) {
-    this(
-        repositories,
-        Maps.newHashMap(),
-        new DefaultModelBuilderFactory()
-            .newInstance()
-            .setProfileSelector(
-                new DefaultProfileSelector().addProfileActivator(new PropertyProfileActivator())),
-        versionResolver,
-        jdkHome);
-  }
+  @Nullable private final PomCache pomCache;
+  private final HttpTransport transport;
+  private final ModelCache modelCache;
+  private final ModelCache fetchedPoms;
+  private final RepositoryRouter repositoryRouter;
+  @Nullable private final NegativeLookupCache negativeLookupCache;
+  private final RepositoryLookups repositoryLookups;
 
   private DefaultModelResolver(
       Collection<Repository> repositories,
       Map<String, RepoModelSource> ruleNameToModelSource,
       DefaultModelBuilder modelBuilder,
       VersionResolver versionResolver,
-      String jdkHome) {
+      String jdkHome,
+      @Nullable PomCache pomCache,
+      HttpTransport transport,
+      ModelCache modelCache,
+      ModelCache fetchedPoms,
+      RepositoryRouter repositoryRouter,
+      @Nullable NegativeLookupCache negativeLookupCache,
+      RepositoryLookups repositoryLookups) {
     this.repositories = repositories;
     this.ruleNameToModelSource = ruleNameToModelSource;
     this.modelBuilder = modelBuilder;
     this.versionResolver = versionResolver;
     this.jdkHome = jdkHome;
+    this.pomCache = pomCache;
+    this.transport = transport;
+    this.modelCache = modelCache;
+    this.fetchedPoms = fetchedPoms;
+    this.repositoryRouter = repositoryRouter;
+    this.negativeLookupCache = negativeLookupCache;
+    this.repositoryLookups = repositoryLookups;
+  }
+
+  /**
+   * Probes this resolver's repositories for an artifact of the given group.
+   *
+   * @see RepositoryRouter#firstHit
+   */
+  @Nullable
+  <T> T probeRepositories(String groupId, Function<Repository, T> probe) {
+    return repositoryRouter.firstHit(groupId, repositories, probe);
+  }
+
+  /** Whether the given URL exists. It is probed at most once by this resolver and its copies. */
+  boolean remoteFileExists(URL url) {
+    return repositoryLookups.exists(url, this::requestRemoteFileExists);
   }
 
-  static boolean remoteFileExists(URL url) {
+  private boolean requestRemoteFileExists(URL url) {
     try {
-      URLConnection urlConnection = url.openConnection();
-      if (!(urlConnection instanceof HttpURLConnection)) {
-        return false;
+      if (negativeLookupCache == null) {
+        return transport.head(url) == 200;
       }
+      return negativeLookupCache.head(url, transport::head) == 200;
+    } catch (IOException e) {
+      return false;
+    }
+  }
 
-      HttpURLConnection connection = (HttpURLConnection) urlConnection;
-      connection.setRequestMethod("HEAD");
-      connection.setInstanceFollowRedirects(true);
-      connection.connect();
+  /**
+   * Fetches the content of the given URL with a single GET request. It is requested at most once
+   * by this resolver and its copies, whether it exists or not.
+   *
+   * @return the content, or null if the file does not exist (or could not be fetched).
+   */
+  @Nullable
+  byte[] fetchRemoteFile(URL url) {
+    return repositoryLookups.content(url, this::requestRemoteFile);
+  }
 
-      int code = connection.getResponseCode();
-      return code == 200;
+  @Nullable
+  private byte[] requestRemoteFile(URL url) {
+    try {
+      if (negativeLookupCache == null) {
+        return transport.get(url);
+      }
+      return negativeLookupCache.get(url, transport::get);
     } catch (IOException e) {
-      return false;
+      return null;
     }
   }
 
@@ -142,15 +189,17 @@ public class DefaultModelResolver implements ModelResolver {
       return ruleNameToModelSource.get(ruleName);
     }
 
-    for (Repository repository : repositories) {
-      ModelSource2 modelSource =
-          getModelSource(repository.getUrl(), groupId, artifactId, classifier, version);
-      if (modelSource != null) {
-        final RepoModelSource repoModelSource = new RepoModelSource(modelSource, repository);
-        ruleNameToModelSource.put(
-            Rule.generateFullName(groupId, artifactId, version), repoModelSource);
-        return repoModelSource;
-      }
+    final RepoModelSource repoModelSource =
+        probeRepositories(
+            groupId,
+            repository -> {
+              ModelSource2 modelSource =
+                  getModelSource(repository.getUrl(), groupId, artifactId, classifier, version);
+              return modelSource == null ? null : new RepoModelSource(modelSource, repository);
+            });
+    if (repoModelSource != null) {
+      ruleNameToModelSource.put(ruleName, repoModelSource);
+      return repoModelSource;
     }
 
     List<String> attemptedUrls = repositories.stream().map(Repository::getUrl).collect(toList());
@@ -170,7 +219,6 @@ public class DefaultModelResolver implements ModelResolver {
         version);
   }
 
-  // TODO(kchodorow): make this work with local repositories.
   private ModelSource2 getModelSource(
       String repoUrl, String groupId, String artifactId, String classifier, String version) {
     try {
@@ -183,8 +231,39 @@ public class DefaultModelResolver implements ModelResolver {
           e);
     }
     URL pomUrl = getUrlForArtifact(repoUrl, groupId, artifactId, classifier, version, "pom");
-    if (remoteFileExists(pomUrl)) {
-      return new UrlModelSource2(pomUrl);
+    // local repositories are read directly, there is no point in copying their POMs
+    final boolean localFile = HttpTransport.isLocalFile(pomUrl);
+    // the fetched POMs may be kept for the lifetime of a persistent worker, and SNAPSHOTs change
+    final boolean keepFetchedPom = !localFile && PomCache.isCacheable(version);
+    final String fetchedPomTag = FETCHED_POM_TAG + repoUrl;
+    if (keepFetchedPom) {
+      final byte[] fetchedPom =
+          (byte[]) fetchedPoms.get(groupId, artifactId, version, fetchedPomTag);
+      if (fetchedPom != null) {
+        return new BufferedModelSource2(fetchedPom, pomUrl);
+      }
+    }
+    final PomCache pomCache = localFile ? null : this.pomCache;
+    if (pomCache != null) {
+      final File cachedPom = pomCache.getCachedPom(repoUrl, groupId, artifactId, version);
+      if (cachedPom != null) {
+        return new CachedModelSource2(cachedPom, pomUrl);
+      }
+    }
+    final byte[] pomContent = fetchRemoteFile(pomUrl);
+    if (pomContent != null) {
+      if (keepFetchedPom) {
+        fetchedPoms.put(groupId, artifactId, version, fetchedPomTag, pomContent);
+      }
+      if (pomCache != null) {
+        try {
+          pomCache.cachePom(
+              repoUrl, groupId, artifactId, version, new ByteArrayInputStream(pomContent));
+        } catch (IOException e) {
+          System.out.println("Failed to store " + pomUrl + " in the POM cache: " + e.getMessage());
+        }
+      }
+      return new BufferedModelSource2(pomContent, pomUrl);
     }
     return null;
   }
@@ -220,10 +299,44 @@ public class DefaultModelResolver implements ModelResolver {
     repositories.add(repository);
   }
 
+  /**
+   * Returns a resolver which shares this resolver's caches, and its record of the requests made to
+   * the repositories, but none of its state: the repositories which POMs declare, the resolved
+   * model sources and the learned repository affinity are all kept to the copy. So, using the copy
+   * (even concurrently) only saves this resolver from requesting the same URLs again, and does not
+   * change what this resolver resolves.
+   */
+  DefaultModelResolver readOnlyCopy() {
+    return new DefaultModelResolver(
+        new CopyOnWriteArrayList<>(repositories),
+        Maps.newConcurrentMap(),
+        modelBuilder,
+        versionResolver,
+        jdkHome,
+        pomCache,
+        transport,
+        modelCache,
+        fetchedPoms,
+        repositoryRouter.withoutLearning(),
+        negativeLookupCache,
+        repositoryLookups);
+  }
+
   @Override
   public ModelResolver newCopy() {
     return new DefaultModelResolver(
-        repositories, ruleNameToModelSource, modelBuilder, versionResolver, jdkHome);
+        repositories,
+        ruleNameToModelSource,
+        modelBuilder,
+        versionResolver,
+        jdkHome,
+        pomCache,
+        transport,
+        modelCache,
+        fetchedPoms,
+        repositoryRouter,
+        negativeLookupCache,
+        repositoryLookups);
   }
 
   public Model getEffectiveModel(ModelSource2 modelSource) {
@@ -235,6 +348,7 @@ public class DefaultModelResolver implements ModelResolver {
     request.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
     request.setProcessPlugins(false);
     request.setModelSource(modelSource);
+    request.setModelCache(modelCache);
 
     try {
       return modelBuilder.build(request).getEffectiveModel();
@@ -244,6 +358,98 @@ public class DefaultModelResolver implements ModelResolver {
     }
   }
 
+  /**
+   * Builds a {@link DefaultModelResolver}. Only the repositories, the version resolver, the JDK
+   * home and the transport are required, the rest default to a resolver which does not share any
+   * cache. Each built resolver (with its copies) keeps the outcome of every request it made to the
+   * repositories, so one should be built for each resolved root.
+   */
+  public static class Builder {
+
+    private final Collection<Repository> repositories;
+    private final VersionResolver versionResolver;
+    private final String jdkHome;
+    private final HttpTransport transport;
+    @Nullable private PomCache pomCache;
+    private ModelCache modelCache;
+    private ModelCache fetchedPoms;
+    private RepositoryRouter repositoryRouter;
+    @Nullable private NegativeLookupCache negativeLookupCache;
+
+    /**
+     * @param repositories the repositories to resolve from. POMs may add repositories to it while
+     *     their models are built, so it should not be shared with other resolvers.
+     * @param transport used for all requests to the repositories.
+     */
+    public Builder(
+        Collection<Repository> repositories,
+        VersionResolver versionResolver,
+        String jdkHome,
+        HttpTransport transport) {
+      this.repositories = repositories;
+      this.versionResolver = versionResolver;
+      this.jdkHome = jdkHome;
+      this.transport = transport;
+      this.modelCache = new LruModelCache();
+      this.fetchedPoms = new LruModelCache();
+      this.repositoryRouter = new RepositoryRouter();
+    }
+
+    /**
+     * If not null, POMs will be read from (and stored into) this cache before going to the
+     * network.
+     */
+    public Builder pomCache(@Nullable PomCache pomCache) {
+      this.pomCache = pomCache;
+      return this;
+    }
+
+    /** Keeps parsed parent POMs and imported BOMs between model builds. May be shared. */
+    public Builder modelCache(ModelCache modelCache) {
+      this.modelCache = modelCache;
+      return this;
+    }
+
+    /**
+     * Keeps the fetched POMs (but not SNAPSHOTs), by their repository, in memory. May be shared.
+     */
+    public Builder fetchedPoms(ModelCache fetchedPoms) {
+      this.fetchedPoms = fetchedPoms;
+      return this;
+    }
+
+    /** Decides in which order the repositories are probed for a POM. */
+    public Builder repositoryRouter(RepositoryRouter repositoryRouter) {
+      this.repositoryRouter = repositoryRouter;
+      return this;
+    }
+
+    /** If not null, artifacts which are known to be missing are not requested again. */
+    public Builder negativeLookupCache(@Nullable NegativeLookupCache negativeLookupCache) {
+      this.negativeLookupCache = negativeLookupCache;
+      return this;
+    }
+
+    public DefaultModelResolver build() {
+      return new DefaultModelResolver(
+          repositories,
+          Maps.newConcurrentMap(),
+          new DefaultModelBuilderFactory()
+              .newInstance()
+              .setProfileSelector(
+                  new DefaultProfileSelector().addProfileActivator(new PropertyProfileActivator())),
+          versionResolver,
+          jdkHome,
+          pomCache,
+          transport,
+          modelCache,
+          fetchedPoms,
+          repositoryRouter,
+          negativeLookupCache,
+          new RepositoryLookups());
+    }
+  }
+
   public static class RepoModelSource {
     private final ModelSource2 modelSource;
     private final Repository repository;
@@ -0,0 +1,65 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.maven.model.Exclusion;
+
+/**
+ * The exclusions in effect at a point of the traversal: the {@code <exclusions>} of every
+ * dependency on the path from the root. A scope is immutable and shares its ancestors' exclusions
+ * by linking to its parent scope, so extending it with a dependency's own exclusions costs only
+ * those exclusions, no matter how deep the path is or how many exclusions it already has.
+ *
+ * <p>A lookup walks the chain, but only dependencies that actually add new exclusions add a link,
+ * so the chain is usually much shorter than the path.
+ */
+final class ExclusionScope {
+
+  static final ExclusionScope EMPTY = new ExclusionScope(null, Collections.emptySet());
+
+  private final ExclusionScope parent;
+  private final Set<String> ownExclusions;
+
+  private ExclusionScope(ExclusionScope parent, Set<String> ownExclusions) {
+    this.parent = parent;
+    this.ownExclusions = ownExclusions;
+  }
+
+  static String unversionedCoordinate(Exclusion exclusion) {
+    return exclusion.getGroupId() + ":" + exclusion.getArtifactId();
+  }
+
+  /**
+   * Returns a scope with the given exclusions added. If all of them are already in this scope,
+   * this scope is returned.
+   */
+  ExclusionScope extend(Collection<Exclusion> exclusions) {
+    Set<String> newExclusions = null;
+    for (Exclusion exclusion : exclusions) {
+      final String coordinate = unversionedCoordinate(exclusion);
+      if (!contains(coordinate)) {
+        if (newExclusions == null) newExclusions = new HashSet<>();
+        newExclusions.add(coordinate);
+      }
+    }
+    return newExclusions == null ? this : new ExclusionScope(this, newExclusions);
+  }
+
+  boolean contains(String exclusion) {
+    for (ExclusionScope scope = this; scope != null; scope = scope.parent) {
+      if (scope.ownExclusions.contains(exclusion)) return true;
+    }
+    return false;
+  }
+
+  /** The number of links in this scope's chain, not counting the {@link #EMPTY} root. */
+  int chainLength() {
+    int length = 0;
+    for (ExclusionScope scope = this; scope.parent != null; scope = scope.parent) {
+      length++;
+    }
+    return length;
+  }
+}
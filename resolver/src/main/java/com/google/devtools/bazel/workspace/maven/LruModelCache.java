@@ -0,0 +1,54 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.maven.model.building.ModelCache;
+
+/**
+ * A size-bounded {@link ModelCache}, which evicts the least-recently-used entry when full. The
+ * model builder uses it to keep the parsed (raw) parent POMs and imported BOMs, so shared parents
+ * are not re-read and re-parsed for every child artifact. It is safe to share a single instance
+ * across all the model-building requests of the process.
+ */
+public class LruModelCache implements ModelCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  private final Map<String, Object> entries;
+
+  public LruModelCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  public LruModelCache(int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be at least 1");
+    }
+    this.entries =
+        new LinkedHashMap<String, Object>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  private static String key(String groupId, String artifactId, String version, String tag) {
+    return groupId + ':' + artifactId + ':' + version + ':' + tag;
+  }
+
+  @Override
+  public synchronized void put(
+      String groupId, String artifactId, String version, String tag, Object data) {
+    entries.put(key(groupId, artifactId, version, tag), data);
+  }
+
+  @Override
+  public synchronized Object get(String groupId, String artifactId, String version, String tag) {
+    return entries.get(key(groupId, artifactId, version, tag));
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+}
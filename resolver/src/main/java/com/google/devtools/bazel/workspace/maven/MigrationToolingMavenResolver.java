@@ -19,15 +19,24 @@ import static com.google.devtools.bazel.workspace.maven.ArtifactBuilder.InvalidA
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
+import net.evendanan.bazel.mvn.api.ExclusionMatcher;
 import org.apache.maven.model.Dependency;
-import org.apache.maven.model.Exclusion;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.Repository;
 import org.apache.maven.model.resolution.UnresolvableModelException;
@@ -52,20 +61,31 @@ public class MigrationToolingMavenResolver {
   private final Map<String, String> restriction;
   private final Collection<Repository> repositories;
   private final VersionResolver versionResolver;
-  private final Collection<String> blacklist;
+  private final ExclusionMatcher blacklist;
+  private final int traversalThreads;
+  private final Map<String, ResolvedModel> resolvedModels;
 
+  /**
+   * @param traversalThreads when larger than one, the repositories are asked for the transitive
+   *     POMs (and for the files of artifacts without POMs) concurrently, using this many threads,
+   *     before the graph is assembled. The graph is still assembled serially, from the recorded
+   *     outcomes of those requests, so it is identical to the one of the serial traversal.
+   */
   public MigrationToolingMavenResolver(
       Collection<Repository> repositories,
       DefaultModelResolver modelResolver,
       VersionResolver versionResolver,
       Collection<String> blacklist,
+      int traversalThreads,
       boolean debugLogs) {
     this.repositories = repositories;
     this.versionResolver = versionResolver;
     this.deps = Maps.newHashMap();
     this.restriction = Maps.newHashMap();
     this.modelResolver = modelResolver;
-    this.blacklist = blacklist;
+    this.blacklist = ExclusionMatcher.compile(blacklist);
+    this.traversalThreads = traversalThreads;
+    this.resolvedModels = new HashMap<>();
     this.debugLogs = debugLogs;
   }
 
@@ -73,14 +93,6 @@ public class MigrationToolingMavenResolver {
     return dependency.getGroupId() + ":" + dependency.getArtifactId();
   }
 
-  private static String unversionedCoordinateGroup(Dependency dependency) {
-    return dependency.getGroupId();
-  }
-
-  private static String unversionedCoordinate(Exclusion exclusion) {
-    return exclusion.getGroupId() + ":" + exclusion.getArtifactId();
-  }
-
   static boolean isEmpty(CharSequence text) {
     return text == null || text.length() == 0;
   }
@@ -94,31 +106,135 @@ public class MigrationToolingMavenResolver {
     }
   }
 
+  private static String modelKey(Artifact artifact) {
+    return artifact.getGroupId()
+        + ":"
+        + artifact.getArtifactId()
+        + ":"
+        + artifact.getClassifier()
+        + ":"
+        + artifact.getVersion();
+  }
+
   /** Resolves an artifact as a root of a dependency graph. */
   public Rule resolveRuleArtifacts(String mavenCoordinates) {
     final Rule rule = createRuleForCoordinates(mavenCoordinates);
-    traverseRuleAndFill(rule, Sets.newHashSet(), Sets.newHashSet());
+    if (traversalThreads > 1) {
+      prefetchModels(rule.getArtifact());
+    }
+    traverseRuleAndFill(rule, Sets.newHashSet(), ExclusionScope.EMPTY);
     return rule;
   }
 
-  private void traverseRuleAndFill(final Rule rule, Set<String> scopes, Set<String> exclusions) {
-    deps.put(DepKey.from(rule), rule);
-    if (debugLogs) {
-      System.out.println(
-          "Traversing "
-              + rule.mavenGeneratedName()
-              + ". Currently, have "
-              + deps.size()
-              + " resolved deps.");
+  /**
+   * Walks the dependency frontier of the given root on a bounded pool, requesting the POMs (and
+   * parent POMs) of every reachable artifact, or its file if it has no POM. This uses a {@link
+   * DefaultModelResolver#readOnlyCopy}, which shares the record of every request (hit or miss)
+   * with the model resolver, and does not create any {@link Rule}: the graph itself is still
+   * assembled by the serial traversal, which then finds the outcomes of its requests recorded.
+   * Since the POMs are built in whatever order they were fetched, nothing else is kept from here.
+   * Failures are ignored here, the serial traversal will hit (and report) them again.
+   */
+  private void prefetchModels(Artifact root) {
+    final DefaultModelResolver prefetchResolver = modelResolver.readOnlyCopy();
+    final ExecutorService executor = Executors.newFixedThreadPool(traversalThreads);
+    try {
+      final CompletionService<List<PrefetchNode>> completionService =
+          new ExecutorCompletionService<>(executor);
+      final Set<String> submitted = new HashSet<>();
+      submitted.add(modelKey(root));
+      completionService.submit(
+          () -> expandFrontier(prefetchResolver, new PrefetchNode(root, ExclusionScope.EMPTY)));
+      int inFlight = 1;
+      while (inFlight > 0) {
+        final List<PrefetchNode> children = completionService.take().get();
+        inFlight--;
+        for (PrefetchNode child : children) {
+          if (submitted.add(modelKey(child.artifact))) {
+            completionService.submit(() -> expandFrontier(prefetchResolver, child));
+            inFlight++;
+          }
+        }
+      }
+      if (debugLogs) {
+        System.out.println("Prefetched " + submitted.size() + " models.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // expandFrontier does not throw. But if it did, the serial traversal will deal with it.
+    } finally {
+      executor.shutdownNow();
     }
+  }
+
+  private List<PrefetchNode> expandFrontier(
+      DefaultModelResolver prefetchResolver, PrefetchNode node) {
+    final List<PrefetchNode> children = new ArrayList<>();
+    try {
+      final Model model;
+      try {
+        model = resolveEffectiveModel(prefetchResolver, node.artifact);
+      } catch (UnresolvableModelException e) {
+        // the serial traversal will look for the artifact's file instead
+        findDirectArtifact(prefetchResolver, node.artifact);
+        return children;
+      }
+      if (model != null) {
+        for (Dependency dependency : model.getDependencies()) {
+          if (isFilteredOut(dependency, node.exclusions)) continue;
+
+          children.add(
+              new PrefetchNode(
+                  ArtifactBuilder.fromMavenDependency(dependency, versionResolver, model),
+                  node.exclusions.extend(dependency.getExclusions())));
+        }
+      }
+    } catch (InvalidArtifactCoordinateException | RuntimeException e) {
+      if (debugLogs) {
+        System.out.println("Failed to prefetch model for " + node.artifact + ": " + e);
+      }
+    }
+    return children;
+  }
+
+  @Nullable
+  private static Model resolveEffectiveModel(DefaultModelResolver resolver, Artifact artifact)
+      throws UnresolvableModelException {
+    final DefaultModelResolver.RepoModelSource modelSource =
+        resolver.resolveModel(
+            artifact.getGroupId(),
+            artifact.getArtifactId(),
+            artifact.getClassifier() == null ? "" : artifact.getClassifier(),
+            artifact.getVersion());
+    return modelSource.getModelSource() == null
+        ? null
+        : resolver.getEffectiveModel(modelSource.getModelSource());
+  }
+
+  /**
+   * Resolves the model (or the direct artifact, if there is no model) of the given artifact. This
+   * is where all the network access happens, so the result is memoized.
+   */
+  private ResolvedModel resolveModel(Artifact artifact) {
+    final String key = modelKey(artifact);
+    ResolvedModel resolved = resolvedModels.get(key);
+    if (resolved == null) {
+      resolved = resolveModelFromRepositories(artifact);
+      resolvedModels.put(key, resolved);
+    }
+    return resolved;
+  }
+
+  private ResolvedModel resolveModelFromRepositories(Artifact artifact) {
     DefaultModelResolver.RepoModelSource depModelSource;
     try {
       depModelSource =
           modelResolver.resolveModel(
-              rule.groupId(),
-              rule.artifactId(),
-              rule.classifier() == null ? "" : rule.classifier(),
-              rule.version());
+              artifact.getGroupId(),
+              artifact.getArtifactId(),
+              artifact.getClassifier() == null ? "" : artifact.getClassifier(),
+              artifact.getVersion());
     } catch (UnresolvableModelException e) {
       depModelSource = null;
     }
@@ -128,38 +244,74 @@ public class MigrationToolingMavenResolver {
           depModelSource.getModelSource() != null
               ? modelResolver.getEffectiveModel(depModelSource.getModelSource())
               : null;
+      return new ResolvedModel(depModelSource.getRepository(), depModel, null);
+    } else {
+      final ResolvedModel directArtifact = findDirectArtifact(modelResolver, artifact);
+      if (directArtifact == null) {
+        return new ResolvedModel(null, null, null);
+      }
+      if (debugLogs)
+        System.out.println(
+            "Could not get a model for "
+                + artifact
+                + ". Using direct artifact "
+                + directArtifactUrl(
+                    directArtifact.repository, artifact, directArtifact.directArtifactPackaging));
+      return directArtifact;
+    }
+  }
+
+  /** Looks for the artifact's file (without a POM) in the resolver's repositories. */
+  @Nullable
+  private static ResolvedModel findDirectArtifact(
+      DefaultModelResolver resolver, Artifact artifact) {
+    return resolver.probeRepositories(
+        artifact.getGroupId(),
+        repository -> {
+          for (final String packaging : Arrays.asList("jar", "aar")) {
+            if (resolver.remoteFileExists(directArtifactUrl(repository, artifact, packaging))) {
+              return new ResolvedModel(repository, null, packaging);
+            }
+          }
+          return null;
+        });
+  }
+
+  private static URL directArtifactUrl(Repository repository, Artifact artifact, String packaging) {
+    return DefaultModelResolver.getUrlForArtifact(
+        repository.getUrl(),
+        artifact.getGroupId(),
+        artifact.getArtifactId(),
+        artifact.getClassifier(),
+        artifact.getVersion(),
+        packaging);
+  }
+
+  private void traverseRuleAndFill(final Rule rule, Set<String> scopes, ExclusionScope exclusions) {
+    deps.put(DepKey.from(rule), rule);
+    if (debugLogs) {
+      System.out.println(
+          "Traversing "
+              + rule.mavenGeneratedName()
+              + ". Currently, have "
+              + deps.size()
+              + " resolved deps.");
+    }
+    final ResolvedModel resolvedModel = resolveModel(rule.getArtifact());
+
+    if (resolvedModel.directArtifactPackaging == null && resolvedModel.repository != null) {
+      Model depModel = resolvedModel.model;
       if (depModel != null) {
         rule.setPackaging(depModel.getPackaging());
         rule.setLicenses(depModel.getLicenses());
-        rule.setRepository(depModelSource.getRepository().getUrl());
+        rule.setRepository(resolvedModel.repository.getUrl());
         traverseDeps(depModel, scopes, exclusions, rule);
       }
+    } else if (resolvedModel.directArtifactPackaging != null) {
+      rule.setPackaging(resolvedModel.directArtifactPackaging);
+      rule.setLicenses(Collections.emptyList());
+      rule.setRepository(resolvedModel.repository.getUrl());
     } else {
-      for (final Repository repository : repositories) {
-        for (final String packaging : Arrays.asList("jar", "aar")) {
-          final URL urlForArtifact =
-              DefaultModelResolver.getUrlForArtifact(
-                  repository.getUrl(),
-                  rule.groupId(),
-                  rule.artifactId(),
-                  rule.classifier(),
-                  rule.version(),
-                  packaging);
-          if (DefaultModelResolver.remoteFileExists(urlForArtifact)) {
-            if (debugLogs)
-              System.out.println(
-                  "Could not get a model for "
-                      + rule.mavenGeneratedName()
-                      + ". Using direct artifact "
-                      + urlForArtifact);
-            rule.setPackaging(packaging);
-            rule.setLicenses(Collections.emptyList());
-            rule.setRepository(repository.getUrl());
-            return;
-          }
-        }
-      }
-
       rule.setRepository("");
       System.out.println(
           "Could not get a model for "
@@ -172,7 +324,8 @@ public class MigrationToolingMavenResolver {
    * Resolves all dependencies from a given "model source," which could be either a URL or a local
    * file.
    */
-  private void traverseDeps(Model model, Set<String> scopes, Set<String> exclusions, Rule parent) {
+  private void traverseDeps(
+      Model model, Set<String> scopes, ExclusionScope exclusions, Rule parent) {
     if (model.getDependencyManagement() != null) {
       // Dependencies described in the DependencyManagement section of the pom override all
       // others,
@@ -195,29 +348,13 @@ public class MigrationToolingMavenResolver {
       Dependency dependency,
       Model model,
       Set<String> topLevelScopes,
-      Set<String> exclusions,
+      ExclusionScope exclusions,
       Rule parent) {
-    String scope = isEmpty(dependency.getScope()) ? JavaScopes.COMPILE : dependency.getScope();
-    // TODO (bazel-devel): Relabel the scope of transitive dependencies so that they match how
-    // maven relabels them as described here:
-    // https://maven.apache.org/guides/introduction/introduction-to-dependency-mechanism.html
-    if (!INHERITED_SCOPES.contains(scope) && !NON_INHERITED_SCOPES.contains(scope)) {
-      return;
-    }
-
-    if (dependency.isOptional()) {
-      return;
-    }
-    if (exclusions.contains(unversionedCoordinate(dependency))
-        || exclusions.contains(unversionedCoordinateGroup(dependency))) {
-      return;
-    }
-
-    if (blacklist.contains(unversionedCoordinate(dependency))
-        || blacklist.contains(unversionedCoordinateGroup(dependency))) {
+    if (isFilteredOut(dependency, exclusions)) {
       return;
     }
 
+    String scope = dependencyScope(dependency);
     Rule artifactRule;
     try {
       artifactRule =
@@ -228,10 +365,7 @@ public class MigrationToolingMavenResolver {
     }
     artifactRule.setScope(scope);
 
-    HashSet<String> localDepExclusions = Sets.newHashSet(exclusions);
-    dependency
-        .getExclusions()
-        .forEach(exclusion -> localDepExclusions.add(unversionedCoordinate(exclusion)));
+    final ExclusionScope localDepExclusions = exclusions.extend(dependency.getExclusions());
 
     final DepKey depKey = DepKey.from(artifactRule);
     if (deps.containsKey(depKey)) {
@@ -248,6 +382,57 @@ public class MigrationToolingMavenResolver {
     parent.addDependency(artifactRule.scope(), artifactRule);
   }
 
+  private static String dependencyScope(Dependency dependency) {
+    return isEmpty(dependency.getScope()) ? JavaScopes.COMPILE : dependency.getScope();
+  }
+
+  /** Should this dependency (and its sub-graph) be left out of the resolved graph. */
+  private boolean isFilteredOut(Dependency dependency, ExclusionScope exclusions) {
+    String scope = dependencyScope(dependency);
+    // TODO (bazel-devel): Relabel the scope of transitive dependencies so that they match how
+    // maven relabels them as described here:
+    // https://maven.apache.org/guides/introduction/introduction-to-dependency-mechanism.html
+    if (!INHERITED_SCOPES.contains(scope) && !NON_INHERITED_SCOPES.contains(scope)) {
+      return true;
+    }
+
+    if (dependency.isOptional()) {
+      return true;
+    }
+    if (exclusions.contains(unversionedCoordinate(dependency))
+        || exclusions.contains(dependency.getGroupId())) {
+      return true;
+    }
+
+    return blacklist.matchesGroupOrArtifact(dependency.getGroupId(), dependency.getArtifactId());
+  }
+
+  /**
+   * The outcome of looking up an artifact in the repositories: either a model (with the repository
+   * it was found at), a direct artifact with its packaging (when there is no model), or nothing.
+   */
+  private static class ResolvedModel {
+    private final Repository repository;
+    private final Model model;
+    private final String directArtifactPackaging;
+
+    private ResolvedModel(Repository repository, Model model, String directArtifactPackaging) {
+      this.repository = repository;
+      this.model = model;
+      this.directArtifactPackaging = directArtifactPackaging;
+    }
+  }
+
+  private static class PrefetchNode {
+    private final Artifact artifact;
+    private final ExclusionScope exclusions;
+
+    private PrefetchNode(Artifact artifact, ExclusionScope exclusions) {
+      this.artifact = artifact;
+      this.exclusions = exclusions;
+    }
+  }
+
   private static class DepKey {
     private final Rule rule;
     private final String key;
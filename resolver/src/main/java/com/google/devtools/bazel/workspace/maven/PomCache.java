@@ -0,0 +1,77 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A persistent, on-disk, cache of POM files. Entries are keyed by the repository URL and the
+ * artifact's GAV, so the same POM served by different repositories is stored separately.
+ *
+ * <p>Released POMs never change, so entries never expire. SNAPSHOT POMs are never cached.
+ */
+public class PomCache {
+
+  private final File cacheFolder;
+
+  public PomCache(File cacheFolder) {
+    this.cacheFolder = cacheFolder;
+  }
+
+  static boolean isCacheable(String version) {
+    return !version.endsWith("SNAPSHOT");
+  }
+
+  private static String repositoryFolderName(String repositoryUrl) {
+    return repositoryUrl.replaceFirst("^[a-zA-Z]+://", "").replaceAll("[^a-zA-Z0-9.-]", "_");
+  }
+
+  File getPomFile(String repositoryUrl, String groupId, String artifactId, String version) {
+    return cacheFolder
+        .toPath()
+        .resolve(repositoryFolderName(repositoryUrl))
+        .resolve(groupId.replace('.', '/'))
+        .resolve(artifactId)
+        .resolve(version)
+        .resolve(artifactId + "-" + version + ".pom")
+        .toFile();
+  }
+
+  /** Returns the cached POM file, or null if it was not cached before. */
+  public File getCachedPom(
+      String repositoryUrl, String groupId, String artifactId, String version) {
+    if (!isCacheable(version)) return null;
+
+    final File pomFile = getPomFile(repositoryUrl, groupId, artifactId, version);
+    return pomFile.isFile() ? pomFile : null;
+  }
+
+  /**
+   * Stores the given POM content in the cache.
+   *
+   * @return the cached POM file, or null if this POM can not be cached.
+   */
+  public File cachePom(
+      String repositoryUrl, String groupId, String artifactId, String version, InputStream content)
+      throws IOException {
+    if (!isCacheable(version)) return null;
+
+    final Path pomPath = getPomFile(repositoryUrl, groupId, artifactId, version).toPath();
+    Files.createDirectories(pomPath.getParent());
+    // writing to a temp file in the same folder, so the move will be atomic: concurrent
+    // readers (in this, or other, processes) will either see the full file, or nothing.
+    final Path tempFile = Files.createTempFile(pomPath.getParent(), "mabel_PomCache", ".pom");
+    try {
+      Files.copy(content, tempFile, REPLACE_EXISTING);
+      Files.move(tempFile, pomPath, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+    return pomPath.toFile();
+  }
+}
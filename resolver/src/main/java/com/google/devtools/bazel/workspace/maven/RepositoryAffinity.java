@@ -0,0 +1,132 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.google.common.base.Charsets;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.apache.maven.model.Repository;
+
+/**
+ * Learns which repository serves which groupId prefix. For example, after {@code androidx.core}
+ * was found in Google's repository, {@code androidx.appcompat} is likely to be there too.
+ *
+ * <p>The affinity is only a hint, which {@link RepositoryRouter} uses to skip probes: it never
+ * decides which repository an artifact is taken from, since what was learned depends on the
+ * machine and on the order things were resolved in. Optionally, the learned affinity is persisted
+ * to a file, so it is kept between runs.
+ */
+public class RepositoryAffinity {
+
+  @Nullable private final File storage;
+  private final Map<String, String> repositoryUrlByGroupPrefix = new ConcurrentHashMap<>();
+  private volatile boolean modified;
+
+  /** An in-memory affinity, which is not persisted. */
+  public RepositoryAffinity() {
+    this(null);
+  }
+
+  /**
+   * @param storage if not null, the affinity is loaded from (and saved to) this file.
+   */
+  public RepositoryAffinity(@Nullable File storage) {
+    this.storage = storage;
+    if (storage != null && storage.isFile()) {
+      final Properties properties = new Properties();
+      try (Reader reader = Files.newBufferedReader(storage.toPath(), Charsets.UTF_8)) {
+        properties.load(reader);
+      } catch (IOException | IllegalArgumentException e) {
+        // it is only a hint, starting from scratch.
+        System.out.println(
+            "Failed to load repository affinity from " + storage + ": " + e.getMessage());
+      }
+      for (String groupPrefix : properties.stringPropertyNames()) {
+        repositoryUrlByGroupPrefix.put(groupPrefix, properties.getProperty(groupPrefix));
+      }
+    }
+  }
+
+  /**
+   * Returns the groupId's prefixes, from the longest (the groupId itself) to the shortest. A
+   * top-level-domain alone (for example, {@code com} or {@code io}) is too broad to be a prefix.
+   */
+  static List<String> groupPrefixes(String groupId) {
+    final List<String> prefixes = new ArrayList<>();
+    prefixes.add(groupId);
+    final int firstDot = groupId.indexOf('.');
+    final int shortestPrefixEnd =
+        firstDot > 0 && firstDot <= 3 ? groupId.indexOf('.', firstDot + 1) : firstDot;
+    if (shortestPrefixEnd <= 0) return prefixes;
+
+    int end = groupId.lastIndexOf('.');
+    while (end >= shortestPrefixEnd) {
+      prefixes.add(groupId.substring(0, end));
+      end = groupId.lastIndexOf('.', end - 1);
+    }
+    return prefixes;
+  }
+
+  /** Records that the given group was found in the given repository. */
+  public void learn(String groupId, String repositoryUrl) {
+    final List<String> prefixes = groupPrefixes(groupId);
+    if (!repositoryUrl.equals(repositoryUrlByGroupPrefix.put(prefixes.get(0), repositoryUrl))) {
+      modified = true;
+    }
+    // broader prefixes keep what they learned first
+    for (String prefix : prefixes.subList(1, prefixes.size())) {
+      if (repositoryUrlByGroupPrefix.putIfAbsent(prefix, repositoryUrl) == null) {
+        modified = true;
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the repository, of the given ones, which served the closest prefix of the
+   * given group, or -1 if nothing was learned about it.
+   */
+  public int likelyRepositoryIndex(String groupId, List<Repository> repositories) {
+    for (String prefix : groupPrefixes(groupId)) {
+      final String repositoryUrl = repositoryUrlByGroupPrefix.get(prefix);
+      if (repositoryUrl == null) continue;
+      for (int index = 0; index < repositories.size(); index++) {
+        if (repositories.get(index).getUrl().equals(repositoryUrl)) return index;
+      }
+    }
+    return -1;
+  }
+
+  /** Writes the learned affinity to the storage file, if there is one and anything was learned. */
+  public synchronized void save() throws IOException {
+    if (storage == null || !modified) return;
+    modified = false;
+
+    final Properties properties = new Properties();
+    properties.putAll(repositoryUrlByGroupPrefix);
+    final Path storagePath = storage.getAbsoluteFile().toPath();
+    Files.createDirectories(storagePath.getParent());
+    // other processes may be using the same file: writing to a temp file and moving it
+    // into place, so readers will either see the full file, or the previous one.
+    final Path tempFile =
+        Files.createTempFile(storagePath.getParent(), "mabel_RepositoryAffinity", ".properties");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tempFile, Charsets.UTF_8)) {
+        properties.store(writer, "groupId prefix to repository URL");
+      }
+      Files.move(tempFile, storagePath, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+}
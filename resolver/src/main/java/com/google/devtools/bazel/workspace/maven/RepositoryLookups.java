@@ -0,0 +1,58 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * The outcome of every request made to the repositories while a single root is resolved: the
+ * content of each fetched file (or that it is missing), and whether each probed file exists. Hits
+ * and misses are kept alike, and nothing is evicted, so a URL is requested at most once per root,
+ * no matter how many resolvers of that root (concurrently) ask for it. It is kept only for the
+ * resolution of that root, so it does not need to be bounded like the process-wide caches.
+ */
+class RepositoryLookups {
+
+  private final Map<String, CompletableFuture<byte[]>> contents = new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<Boolean>> existence = new ConcurrentHashMap<>();
+
+  /**
+   * @param fetch fetches the content of a URL, returning null if it does not exist.
+   * @return the content of the URL, as fetched by the first call for it.
+   */
+  @Nullable
+  byte[] content(URL url, Function<URL, byte[]> fetch) {
+    return lookup(contents, url, fetch);
+  }
+
+  /**
+   * @param probe checks whether a URL exists.
+   * @return whether the URL exists, as probed by the first call for it.
+   */
+  boolean exists(URL url, Predicate<URL> probe) {
+    return lookup(existence, url, probe::test);
+  }
+
+  /** Requests the URL, unless another call did (or is doing) that already. */
+  private static <T> T lookup(
+      Map<String, CompletableFuture<T>> outcomes, URL url, Function<URL, T> request) {
+    final CompletableFuture<T> outcome = new CompletableFuture<>();
+    final CompletableFuture<T> requested = outcomes.putIfAbsent(url.toString(), outcome);
+    if (requested != null) {
+      return requested.join();
+    }
+    try {
+      outcome.complete(request.apply(url));
+    } catch (RuntimeException e) {
+      // not recorded, the next call will request it again
+      outcomes.remove(url.toString(), outcome);
+      outcome.completeExceptionally(e);
+      throw e;
+    }
+    return outcome.join();
+  }
+}
@@ -0,0 +1,125 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.maven.model.Repository;
+
+/**
+ * Probes repositories for an artifact. The artifact is always taken from the first declared
+ * repository which has it, so the result does not depend on the machine or on what was resolved
+ * before.
+ *
+ * <p>By default, the repositories are probed one after the other, in their declared order. When a
+ * probing executor is given, the repositories are probed concurrently instead. In that case, the
+ * {@link RepositoryAffinity} is used to skip probes: if the repository which is likely to have the
+ * artifact has it, the repositories declared after it are not probed at all.
+ */
+public class RepositoryRouter {
+
+  private final RepositoryAffinity affinity;
+  @Nullable private final ExecutorService probingExecutor;
+  private final boolean learning;
+
+  /** Serial probing, with an in-memory affinity. */
+  public RepositoryRouter() {
+    this(new RepositoryAffinity(), null);
+  }
+
+  /**
+   * @param probingExecutor if not null, repositories are probed concurrently on this executor.
+   */
+  public RepositoryRouter(RepositoryAffinity affinity, @Nullable ExecutorService probingExecutor) {
+    this(affinity, probingExecutor, true);
+  }
+
+  private RepositoryRouter(
+      RepositoryAffinity affinity, @Nullable ExecutorService probingExecutor, boolean learning) {
+    this.affinity = affinity;
+    this.probingExecutor = probingExecutor;
+    this.learning = learning;
+  }
+
+  public RepositoryAffinity getAffinity() {
+    return affinity;
+  }
+
+  /** Returns a router which probes like this one, but does not add to the affinity. */
+  public RepositoryRouter withoutLearning() {
+    return new RepositoryRouter(affinity, probingExecutor, false);
+  }
+
+  /**
+   * Probes the given repositories for an artifact of the given group.
+   *
+   * @param probe returns the artifact's result for a single repository, or null if that
+   *     repository does not have it.
+   * @return the result of the first declared repository which has the artifact, or null if none
+   *     has it.
+   */
+  @Nullable
+  public <T> T firstHit(
+      String groupId, Collection<Repository> repositories, Function<Repository, T> probe) {
+    final List<Repository> declared = new ArrayList<>(repositories);
+    if (probingExecutor == null || declared.size() < 2) {
+      for (Repository repository : declared) {
+        final T result = probe.apply(repository);
+        if (result != null) {
+          if (learning) affinity.learn(groupId, repository.getUrl());
+          return result;
+        }
+      }
+      return null;
+    }
+
+    // the repositories declared after the likely one are only needed if it does not have it
+    final int likelyIndex = affinity.likelyRepositoryIndex(groupId, declared);
+    final int firstRoundSize = likelyIndex < 0 ? declared.size() : likelyIndex + 1;
+    T result = firstDeclaredHit(groupId, declared.subList(0, firstRoundSize), probe);
+    if (result == null && firstRoundSize < declared.size()) {
+      result = firstDeclaredHit(groupId, declared.subList(firstRoundSize, declared.size()), probe);
+    }
+    return result;
+  }
+
+  @Nullable
+  private <T> T firstDeclaredHit(
+      String groupId, List<Repository> repositories, Function<Repository, T> probe) {
+    final List<Future<T>> probes = new ArrayList<>(repositories.size());
+    for (Repository repository : repositories) {
+      probes.add(probingExecutor.submit(() -> probe.apply(repository)));
+    }
+    try {
+      for (int index = 0; index < probes.size(); index++) {
+        final T result = getProbeResult(probes.get(index));
+        if (result != null) {
+          if (learning) affinity.learn(groupId, repositories.get(index).getUrl());
+          return result;
+        }
+      }
+      return null;
+    } finally {
+      // lower-priority probes are not needed anymore
+      probes.forEach(future -> future.cancel(false));
+    }
+  }
+
+  private static <T> T getProbeResult(Future<T> probe) {
+    try {
+      return probe.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while probing repositories", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
@@ -16,7 +16,10 @@ package com.google.devtools.bazel.workspace.maven;
 
 import static com.google.devtools.bazel.workspace.maven.ArtifactBuilder.InvalidArtifactCoordinateException;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.eclipse.aether.artifact.Artifact;
@@ -42,10 +45,13 @@ public class VersionResolver {
 
   private static final Pattern VERSION_SPEC_ITEM = Pattern.compile("([\\w.]+)");
   private final boolean debugLogs;
-  private final Aether aether;
+  private final VersionRangeLister versionRangeLister;
+  // the same range is usually seen many times in a single graph (and in a worker's lifetime)
+  private final Map<String, String> resolvedRanges = new ConcurrentHashMap<>();
 
-  private VersionResolver(Aether aether, boolean debugLogs) {
-    this.aether = aether;
+  @VisibleForTesting
+  VersionResolver(VersionRangeLister versionRangeLister, boolean debugLogs) {
+    this.versionRangeLister = versionRangeLister;
     this.debugLogs = debugLogs;
   }
 
@@ -63,60 +69,77 @@ public class VersionResolver {
 
   /** Creates a VersionResolver with the default Aether settings. */
   public static VersionResolver defaultResolver(boolean debugLogs) {
-    return new VersionResolver(Aether.defaultOption(), debugLogs);
+    return new VersionResolver(Aether.defaultOption()::requestVersionRange, debugLogs);
   }
 
   String resolveVersion(String groupId, String artifactId, String classifier, String versionSpec)
       throws InvalidArtifactCoordinateException {
 
     if (VERSION_SPEC_CONTAINER.matcher(versionSpec).matches()) {
-      List<String> versions;
-      try {
-        versions = requestVersionList(groupId, artifactId, classifier, versionSpec);
-      } catch (VersionRangeResolutionException e) {
-        String errorMessage =
-            messageForInvalidArtifact(groupId, artifactId, versionSpec, classifier, e.getMessage());
-        throw new InvalidArtifactCoordinateException(errorMessage, e);
-      }
-
-      if (versions == null || versions.isEmpty()) {
-        final Matcher versionItemMatcher = VERSION_SPEC_ITEM.matcher(versionSpec);
-        if (versionItemMatcher.find()) {
-          final String defaultVersion = versionItemMatcher.group(1);
-          if (debugLogs)
-            System.out.println(
-                "Failed to resolve version for spec "
-                    + versionSpec
-                    + ". Returning "
-                    + defaultVersion);
-          return defaultVersion;
-        } else {
-          if (debugLogs)
-            System.out.println(
-                "Failed to resolve version for spec "
-                    + versionSpec
-                    + " and could not identify range. Returning "
-                    + versionSpec);
-          return versionSpec;
-        }
-      }
-
-      if (debugLogs)
-        System.out.println(
-            "Found valid versions for spec " + versionSpec + ": " + String.join(",", versions));
+      final String rangeKey = groupId + ":" + artifactId + ":" + versionSpec;
+      final String resolved = resolvedRanges.get(rangeKey);
+      if (resolved != null) return resolved;
 
-      return versions.get(versions.size() - 1);
+      final String version = resolveVersionRange(groupId, artifactId, classifier, versionSpec);
+      resolvedRanges.put(rangeKey, version);
+      return version;
     } else {
       // well... not really a spec, just plain version
       return versionSpec;
     }
   }
 
+  private String resolveVersionRange(
+      String groupId, String artifactId, String classifier, String versionSpec)
+      throws InvalidArtifactCoordinateException {
+    List<String> versions;
+    try {
+      versions = requestVersionList(groupId, artifactId, classifier, versionSpec);
+    } catch (VersionRangeResolutionException e) {
+      String errorMessage =
+          messageForInvalidArtifact(groupId, artifactId, versionSpec, classifier, e.getMessage());
+      throw new InvalidArtifactCoordinateException(errorMessage, e);
+    }
+
+    if (versions == null || versions.isEmpty()) {
+      final Matcher versionItemMatcher = VERSION_SPEC_ITEM.matcher(versionSpec);
+      if (versionItemMatcher.find()) {
+        final String defaultVersion = versionItemMatcher.group(1);
+        if (debugLogs)
+          System.out.println(
+              "Failed to resolve version for spec "
+                  + versionSpec
+                  + ". Returning "
+                  + defaultVersion);
+        return defaultVersion;
+      } else {
+        if (debugLogs)
+          System.out.println(
+              "Failed to resolve version for spec "
+                  + versionSpec
+                  + " and could not identify range. Returning "
+                  + versionSpec);
+        return versionSpec;
+      }
+    }
+
+    if (debugLogs)
+      System.out.println(
+          "Found valid versions for spec " + versionSpec + ": " + String.join(",", versions));
+
+    return versions.get(versions.size() - 1);
+  }
+
   /** Given a set of maven coordinates, obtains a list of valid versions in ascending order. */
   private List<String> requestVersionList(
       String groupId, String artifactId, String classifier, String versionSpec)
       throws VersionRangeResolutionException {
     Artifact artifact = ArtifactBuilder.fromCoords(groupId, artifactId, classifier, versionSpec);
-    return aether.requestVersionRange(artifact);
+    return versionRangeLister.listVersions(artifact);
+  }
+
+  interface VersionRangeLister {
+    /** Returns the available versions of the given artifact, in ascending order. */
+    List<String> listVersions(Artifact artifact) throws VersionRangeResolutionException;
   }
 }
@@ -2,29 +2,74 @@ package com.google.devtools.bazel.workspace.maven.adapter;
 
 import com.google.common.base.Preconditions;
 import com.google.devtools.bazel.workspace.maven.DefaultModelResolver;
+import com.google.devtools.bazel.workspace.maven.LruModelCache;
 import com.google.devtools.bazel.workspace.maven.MigrationToolingMavenResolver;
+import com.google.devtools.bazel.workspace.maven.PomCache;
+import com.google.devtools.bazel.workspace.maven.RepositoryRouter;
 import com.google.devtools.bazel.workspace.maven.Rule;
 import com.google.devtools.bazel.workspace.maven.VersionResolver;
+import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nullable;
 import net.evendanan.bazel.mvn.api.GraphResolver;
 import net.evendanan.bazel.mvn.api.model.Resolution;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.NegativeLookupCache;
 import org.apache.maven.model.Repository;
 
+/**
+ * Resolves Maven graphs. A single instance may be used to resolve many root artifacts: the version
+ * resolver (and its Aether repository-system), the fetched POMs and the parsed parent POMs are
+ * shared by all roots. Each root is resolved with its own list of repositories, so repositories
+ * declared by the POMs of one root are not used by another.
+ */
 public class MigrationToolingGraphResolver implements GraphResolver {
 
   private final boolean debugLogs;
   private final String jdkHome;
+  private final int traversalThreads;
+  @Nullable private final PomCache pomCache;
+  private final HttpTransport transport;
+  private final VersionResolver versionResolver;
+  private final LruModelCache modelCache = new LruModelCache();
+  private final LruModelCache fetchedPoms = new LruModelCache();
+  private final RepositoryRouter repositoryRouter;
+  @Nullable private final NegativeLookupCache negativeLookupCache;
 
-  public MigrationToolingGraphResolver(boolean debugLogs, String jdkHome) {
+  /**
+   * @param traversalThreads how many threads fetch the POMs of each root. See {@link
+   *     MigrationToolingMavenResolver}.
+   * @param pomCache if not null, POMs will be read from (and stored into) this cache before going
+   *     to the network.
+   * @param repositoryRouter decides in which order the repositories are probed for each artifact.
+   *     Its learned affinity is saved after each root is resolved.
+   * @param negativeLookupCache if not null, artifacts which are known to be missing are not
+   *     requested again.
+   */
+  public MigrationToolingGraphResolver(
+      boolean debugLogs,
+      String jdkHome,
+      int traversalThreads,
+      @Nullable PomCache pomCache,
+      HttpTransport transport,
+      RepositoryRouter repositoryRouter,
+      @Nullable NegativeLookupCache negativeLookupCache) {
     this.debugLogs = debugLogs;
     this.jdkHome = jdkHome;
+    this.traversalThreads = traversalThreads;
+    this.pomCache = pomCache;
+    this.transport = transport;
+    this.repositoryRouter = repositoryRouter;
+    this.negativeLookupCache = negativeLookupCache;
+    this.versionResolver = VersionResolver.defaultResolver(debugLogs);
   }
 
   private static List<Repository> buildRepositories(Collection<String> repositories) {
-    ArrayList<Repository> repositoryList = new ArrayList<>(repositories.size());
+    // POMs may add repositories while they are being built, possibly concurrently.
+    List<Repository> repositoryList = new CopyOnWriteArrayList<>();
     for (String repositoryUrlString : repositories) {
       Preconditions.checkState(
           repositoryUrlString.endsWith("/"),
@@ -32,8 +77,11 @@ public class MigrationToolingGraphResolver implements GraphResolver {
           repositoryUrlString);
       final Repository repository = new Repository();
       URI repositoryUri = URI.create(repositoryUrlString);
-      repository.setId(repositoryUri.getHost());
-      repository.setName(repositoryUri.getHost());
+      // local (file://) repositories do not have a host
+      final String repositoryId =
+          repositoryUri.getHost() == null ? repositoryUrlString : repositoryUri.getHost();
+      repository.setId(repositoryId);
+      repository.setName(repositoryId);
       repository.setUrl(repositoryUrlString);
       repositoryList.add(repository);
     }
@@ -47,13 +95,19 @@ public class MigrationToolingGraphResolver implements GraphResolver {
       final Collection<String> repositoriesUrls,
       final Collection<String> excludes) {
     final List<Repository> repositories = buildRepositories(repositoriesUrls);
-    final VersionResolver versionResolver = VersionResolver.defaultResolver(debugLogs);
     MigrationToolingMavenResolver resolver =
         new MigrationToolingMavenResolver(
             repositories,
-            new DefaultModelResolver(repositories, versionResolver, jdkHome),
+            new DefaultModelResolver.Builder(repositories, versionResolver, jdkHome, transport)
+                .pomCache(pomCache)
+                .modelCache(modelCache)
+                .fetchedPoms(fetchedPoms)
+                .repositoryRouter(repositoryRouter)
+                .negativeLookupCache(negativeLookupCache)
+                .build(),
             versionResolver,
             excludes,
+            traversalThreads,
             debugLogs);
 
     final int packagingIndex = mavenCoordinate.indexOf('@');
@@ -67,6 +121,11 @@ public class MigrationToolingGraphResolver implements GraphResolver {
     if (packaging != null) {
       rule.setPackaging(packaging);
     }
+    try {
+      repositoryRouter.getAffinity().save();
+    } catch (IOException e) {
+      System.out.println("Failed to save the repository affinity: " + e.getMessage());
+    }
 
     return new RuleToDependency(debugLogs).from(rule);
   }
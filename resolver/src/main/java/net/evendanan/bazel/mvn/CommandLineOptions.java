@@ -10,6 +10,8 @@ import net.evendanan.bazel.mvn.api.model.ExportsGenerationType;
 import net.evendanan.bazel.mvn.api.model.TargetType;
 import net.evendanan.bazel.mvn.merger.PublicTargetsCategory;
 import net.evendanan.bazel.mvn.merger.VersionConflictResolution;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.NegativeLookupCache;
 
 @Parameters(separators = "=")
 public class CommandLineOptions {
@@ -97,6 +99,63 @@ public class CommandLineOptions {
       description = "Path to output JSON lockfile for bzlmod.")
   String lockfile_path = "";
 
+  @Parameter(
+      names = {"--incremental"},
+      description =
+          "Reuse the SHA256, processor classes and sources JAR of artifacts which did not change"
+              + " since the existing lockfile at --lockfile_path was written.",
+      arity = 1)
+  boolean incremental = false;
+
+  @Parameter(
+      names = {"--http_connect_timeout_seconds"},
+      description = "How long to wait for a connection to a repository to be established.")
+  int http_connect_timeout_seconds = HttpTransport.DEFAULT_CONNECT_TIMEOUT_SECONDS;
+
+  @Parameter(
+      names = {"--http_request_timeout_seconds"},
+      description = "How long to wait for a repository to respond to a single request.")
+  int http_request_timeout_seconds = HttpTransport.DEFAULT_REQUEST_TIMEOUT_SECONDS;
+
+  @Parameter(
+      names = {"--http_max_connections_per_host"},
+      description = "Maximum number of concurrent requests to a single repository host.")
+  int http_max_connections_per_host = HttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+  @Parameter(
+      names = {"--offline"},
+      description =
+          "Read artifacts only from local (file://) URLs, without any network access.",
+      arity = 1)
+  boolean offline = false;
+
+  @Parameter(
+      names = {"--target_construction_threads"},
+      description =
+          "Number of threads used to download, hash and inspect the artifacts while constructing"
+              + " their targets. 1 means a serial construction.")
+  int target_construction_threads = 1;
+
+  @Parameter(
+      names = {"--negative_cache_path"},
+      description =
+          "Where to remember sources JARs which were not found, so they are not requested again."
+              + " Empty means no cache.")
+  String negative_cache_path = "";
+
+  @Parameter(
+      names = {"--negative_cache_ttl_hours"},
+      description = "For how long a sources JAR which was not found is not requested again.")
+  int negative_cache_ttl_hours = NegativeLookupCache.DEFAULT_TTL_HOURS;
+
+  @Parameter(
+      names = {"--bypass_negative_cache"},
+      description =
+          "Request sources JARs which were not found before anyway. Fresh responses are still"
+              + " cached.",
+      arity = 1)
+  boolean bypass_negative_cache = false;
+
   /**
    * Jcommander defaults to splitting each parameter by comma. For example,
    * --a=group:artifact:[x1,x2] is parsed as two items 'group:artifact:[x1' and 'x2]', instead of
@@ -5,6 +5,7 @@ import static net.evendanan.bazel.mvn.merger.GraphUtils.dfsTraveller;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -12,12 +13,18 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -33,6 +40,9 @@ import net.evendanan.bazel.mvn.api.model.Resolution;
 import net.evendanan.bazel.mvn.api.model.ResolutionOutput;
 import net.evendanan.bazel.mvn.api.model.TargetType;
 import net.evendanan.bazel.mvn.api.serialization.Serialization;
+import net.evendanan.bazel.mvn.impl.JarInspectionCache;
+import net.evendanan.bazel.mvn.impl.LockfileBaseline;
+import net.evendanan.bazel.mvn.impl.RuleClassifiers;
 import net.evendanan.bazel.mvn.impl.TargetsBuilderForType;
 import net.evendanan.bazel.mvn.impl.TargetsBuilders;
 import net.evendanan.bazel.mvn.merger.ArtifactDownloader;
@@ -44,6 +54,9 @@ import net.evendanan.bazel.mvn.merger.PublicTargetsCategory;
 import net.evendanan.bazel.mvn.merger.SourcesJarLocator;
 import net.evendanan.bazel.mvn.merger.TargetCommenter;
 import net.evendanan.bazel.mvn.merger.TestOnlyMarker;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.NegativeLookupCache;
+import net.evendanan.http.RangedZipReader;
 import net.evendanan.timing.ProgressTimer;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -53,14 +66,30 @@ public class Merger {
 
   private final GraphMerger merger;
   private final RuleWriter lockfileWriter;
+  private final LockfileBaseline baseline;
 
-  private Merger(final CommandLineOptions options) throws IOException {
+  private Merger(final CommandLineOptions options, final DependencyTools dependencyTools)
+      throws IOException {
     merger = new DefaultMerger(options.version_conflict_resolver.createMerger());
 
+    // The previous lockfile, if there is one, is read before it is overwritten
+    if (options.incremental) {
+      File lockfileFile = new File(options.lockfile_path);
+      baseline = LockfileBaseline.read(lockfileFile, dependencyTools);
+      System.out.printf(
+          Locale.ROOT,
+          "Reusing the data of %d unchanged artifacts from %s%n",
+          baseline.size(),
+          lockfileFile.getAbsolutePath());
+    } else {
+      baseline = LockfileBaseline.empty();
+    }
+
     // Create lockfile writer if lockfile path is specified
     if (!options.lockfile_path.isEmpty()) {
       File lockfileFile = new File(options.lockfile_path);
-      lockfileWriter = new net.evendanan.bazel.mvn.impl.JsonLockfileWriter(lockfileFile);
+      lockfileWriter =
+          new net.evendanan.bazel.mvn.impl.JsonLockfileWriter(lockfileFile, options.fetch_srcjar);
     } else {
       lockfileWriter = null;
     }
@@ -84,6 +113,21 @@ public class Merger {
       optionParser.usage();
       return;
     }
+    if (options.incremental && options.lockfile_path.isEmpty()) {
+      System.err.println("--incremental requires --lockfile_path.");
+      optionParser.usage();
+      return;
+    }
+    if (options.target_construction_threads < 1) {
+      System.err.println("target_construction_threads must be at least 1!");
+      optionParser.usage();
+      return;
+    }
+    if (options.negative_cache_ttl_hours < 0) {
+      System.err.println("negative_cache_ttl_hours can not be negative!");
+      optionParser.usage();
+      return;
+    }
 
     final DependencyTools dependencyTools;
     if (options.rule_prefix.isEmpty()) {
@@ -92,26 +136,19 @@ public class Merger {
       dependencyTools = new DependencyToolsWithPrefix(options.rule_prefix);
     }
 
-    Merger driver = new Merger(options);
+    Merger driver = new Merger(options, dependencyTools);
     Collection<ResolutionOutput> resolutionOutputs = driver.readResolutions(options);
     Collection<Resolution> resolutions =
         resolutionOutputs.stream().map(ResolutionOutput::resolution).collect(Collectors.toList());
 
     System.out.print("Verifying resolved artifacts graphs...");
-    resolutions.forEach(
-        resolution -> {
-          GraphVerifications.checkResolutionSuccess(resolution);
-          GraphVerifications.checkAllGraphDependenciesAreResolved(resolution);
-          GraphVerifications.checkGraphDoesNotHaveDanglingDependencies(resolution);
-        });
+    GraphVerifications.throwIfInvalid(GraphVerifications.verifyResolutions(resolutions));
     System.out.println("✓");
 
     Collection<Dependency> dependencies = driver.mergeResolutions(resolutions);
 
     System.out.print("Verifying merged graph...");
-    GraphVerifications.checkNoRepeatingDependencies(dependencies);
-    GraphVerifications.checkAllDependenciesAreResolved(dependencies);
-    GraphVerifications.checkNoConflictingVersions(dependencies);
+    GraphVerifications.throwIfInvalid(GraphVerifications.verifyMergedGraph(dependencies));
     System.out.println("✓");
 
     final File artifactsFolder =
@@ -121,8 +158,15 @@ public class Merger {
           "Failed to create artifacts folder " + artifactsFolder.getAbsolutePath());
     }
     System.out.println("artifactsFolder: " + artifactsFolder.getAbsolutePath());
+    final HttpTransport transport =
+        options.offline
+            ? HttpTransport.offline()
+            : new HttpTransport(
+                Duration.ofSeconds(options.http_connect_timeout_seconds),
+                Duration.ofSeconds(options.http_request_timeout_seconds),
+                options.http_max_connections_per_host);
     final ArtifactDownloader artifactDownloader =
-        new ArtifactDownloader(artifactsFolder, dependencyTools);
+        new ArtifactDownloader(transport, artifactsFolder, dependencyTools);
 
     final Function<Dependency, URI> downloader =
         dependency1 -> {
@@ -132,10 +176,46 @@ public class Merger {
             throw new RuntimeException(e);
           }
         };
+    final Function<Dependency, String> sha256Provider =
+        dependency1 -> {
+          try {
+            return artifactDownloader.getSha256ForDependency(dependency1);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        };
+    // without SHA256s, artifacts are downloaded only to be inspected, which can be done remotely
+    final RuleClassifiers.JarInspector jarInspector =
+        new RuleClassifiers.JarInspector(
+            downloader,
+            driver.baseline,
+            options.calculate_sha ? null : new RangedZipReader(transport),
+            new JarInspectionCache(
+                new File(artifactsFolder, "inspections"),
+                options.calculate_sha ? sha256Provider : null));
 
     if (options.fetch_srcjar) {
       System.out.print("Locating sources JARs for resolved dependencies...");
-      dependencies = new SourcesJarLocator().fillSourcesAttribute(dependencies);
+      final SourcesJarLocator sourcesJarLocator;
+      if (options.negative_cache_path.isEmpty()) {
+        sourcesJarLocator = new SourcesJarLocator(transport);
+      } else {
+        sourcesJarLocator =
+            new SourcesJarLocator(
+                transport,
+                new NegativeLookupCache(
+                    new File(
+                        options.negative_cache_path.replace("~", System.getProperty("user.home"))),
+                    Duration.ofHours(options.negative_cache_ttl_hours),
+                    options.bypass_negative_cache));
+      }
+      dependencies =
+          sourcesJarLocator.fillSourcesAttribute(
+              dependencies,
+              dependency -> {
+                final LockfileBaseline.Artifact known = driver.baseline.find(dependency);
+                return known == null ? null : known.getSourcesUrl();
+              });
     } else {
       System.out.print("Clearing srcjar...");
       dependencies = ClearSrcJarAttribute.clearSrcJar(dependencies);
@@ -153,7 +233,13 @@ public class Merger {
     System.out.println("✓");
 
     driver.writeResults(
-        resolutionOutputs, dependencies, testOnlyDeps, downloader, options, dependencyTools);
+        resolutionOutputs,
+        dependencies,
+        testOnlyDeps,
+        jarInspector,
+        sha256Provider,
+        options,
+        dependencyTools);
 
     if (!options.output_pretty_dep_graph_filename.isEmpty()) {
       File prettyOutput = new File(options.output_pretty_dep_graph_filename);
@@ -261,7 +347,8 @@ public class Merger {
       Collection<ResolutionOutput> resolutions,
       Collection<Dependency> resolvedDependencies,
       final Predicate<MavenCoordinate> testOnlyDeps,
-      final Function<Dependency, URI> downloader,
+      final RuleClassifiers.JarInspector jarInspector,
+      final Function<Dependency, String> sha256Provider,
       final CommandLineOptions options,
       DependencyTools dependencyTools)
       throws Exception {
@@ -324,7 +411,7 @@ public class Merger {
                         r.targetType().equals(TargetType.inherit) ? options.type : r.targetType()));
     final Function<Dependency, TargetsBuilder> ruleMapper =
         buildRuleMapper(
-            downloader,
+            jarInspector,
             dep ->
                 targetTypeMap.getOrDefault(
                     dep,
@@ -333,26 +420,56 @@ public class Merger {
             rootDependencies,
             resolvedDependencies);
     final TargetsBuilder fileImporter =
-        new TargetsBuilders.HttpTargetsBuilder(options.calculate_sha, downloader);
+        new TargetsBuilders.HttpTargetsBuilder(options.calculate_sha, baseline, sha256Provider);
     ProgressTimer timer =
         new ProgressTimer(
             resolvedDependencies.size(),
             "Constructing Bazel targets",
             "%d out of %d (%.2f%%%s): %s...");
-    List<TargetsToWrite> targetsToWritePairs =
-        resolvedDependencies.stream()
-            .peek(d -> timer.taskDone(dependencyTools.mavenCoordinates(d)))
-            .map(
-                dependency ->
-                    Dependency.builder(dependency)
-                        .testOnly(testOnlyDeps.test(dependency.mavenCoordinate()))
-                        .build())
-            .map(
-                dependency ->
-                    new TargetsToWrite(
-                        fileImporter.buildTargets(dependency, dependencyTools),
-                        ruleMapper.apply(dependency).buildTargets(dependency, dependencyTools)))
-            .collect(Collectors.toList());
+    // constructing a dependency's targets downloads, hashes and inspects its artifact, so the
+    // dependencies are constructed in parallel, but their targets are collected in order.
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            options.target_construction_threads,
+            runnable -> {
+              final Thread thread = new Thread(runnable, "mabel-target-construction");
+              thread.setDaemon(true);
+              return thread;
+            });
+    final List<TargetsToWrite> targetsToWritePairs = new ArrayList<>(resolvedDependencies.size());
+    try {
+      final List<Future<TargetsToWrite>> pendingTargets =
+          resolvedDependencies.stream()
+              .map(
+                  dependency ->
+                      Dependency.builder(dependency)
+                          .testOnly(testOnlyDeps.test(dependency.mavenCoordinate()))
+                          .build())
+              .map(
+                  dependency ->
+                      executor.submit(
+                          () -> {
+                            final TargetsToWrite targetsToWrite =
+                                new TargetsToWrite(
+                                    fileImporter.buildTargets(dependency, dependencyTools),
+                                    ruleMapper
+                                        .apply(dependency)
+                                        .buildTargets(dependency, dependencyTools));
+                            timer.taskDone(dependencyTools.mavenCoordinates(dependency));
+                            return targetsToWrite;
+                          }))
+              .collect(Collectors.toList());
+      for (Future<TargetsToWrite> pending : pendingTargets) {
+        try {
+          targetsToWritePairs.add(pending.get());
+        } catch (ExecutionException e) {
+          Throwables.throwIfUnchecked(e.getCause());
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
 
     timer.finish();
 
@@ -389,11 +506,11 @@ public class Merger {
   }
 
   private Function<Dependency, TargetsBuilder> buildRuleMapper(
-      final Function<Dependency, URI> downloader,
+      final RuleClassifiers.JarInspector jarInspector,
       final Function<MavenCoordinate, TargetType> targetTypeProvider,
       final Set<MavenCoordinate> rootCoordinates,
       final Collection<Dependency> resolvedDependencies) {
-    TargetsBuilderForType typer = new TargetsBuilderForType(targetTypeProvider, downloader);
+    TargetsBuilderForType typer = new TargetsBuilderForType(targetTypeProvider, jarInspector);
     TargetCommenter commenter = new TargetCommenter(rootCoordinates, resolvedDependencies);
     return dependency -> commenter.createTargetBuilder(typer.generateBuilder(dependency));
   }
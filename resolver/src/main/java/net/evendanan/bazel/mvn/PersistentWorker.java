@@ -0,0 +1,96 @@
+package net.evendanan.bazel.mvn;
+
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implements the JSON flavour of Bazel's persistent-worker protocol: reads work-requests from the
+ * input, hands each one to a {@link RequestHandler} and writes a work-response to the output.
+ *
+ * <p>While a request is handled, {@link System#out} and {@link System#err} are captured into the
+ * response, since the output stream is reserved for the protocol.
+ *
+ * <p>See https://bazel.build/remote/creating#work-requests
+ */
+public class PersistentWorker {
+
+  /** The flag Bazel passes to an executable which should run as a persistent worker. */
+  public static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+
+  private final Gson gson = new Gson();
+  private final RequestHandler handler;
+
+  public PersistentWorker(RequestHandler handler) {
+    this.handler = handler;
+  }
+
+  public static boolean isPersistentWorker(String[] args) {
+    return Arrays.asList(args).contains(PERSISTENT_WORKER_FLAG);
+  }
+
+  /** Serves requests until the input is closed. */
+  public void run(InputStream input, OutputStream output) throws IOException {
+    final PrintStream originalOut = System.out;
+    final PrintStream originalErr = System.err;
+    final JsonReader reader = new JsonReader(new InputStreamReader(input, Charsets.UTF_8));
+    // requests are concatenated JSON objects
+    reader.setLenient(true);
+    final Writer writer = new OutputStreamWriter(output, Charsets.UTF_8);
+
+    while (reader.peek() != JsonToken.END_DOCUMENT) {
+      final WorkRequest request = gson.fromJson(reader, WorkRequest.class);
+      final ByteArrayOutputStream capturedOutput = new ByteArrayOutputStream();
+      final PrintStream capturingStream = new PrintStream(capturedOutput, true, "UTF-8");
+      int exitCode;
+      try {
+        System.setOut(capturingStream);
+        System.setErr(capturingStream);
+        exitCode = handler.handle(request.arguments.toArray(new String[0]));
+      } catch (Exception e) {
+        e.printStackTrace(capturingStream);
+        exitCode = 1;
+      } finally {
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+      }
+      capturingStream.flush();
+
+      final WorkResponse response = new WorkResponse();
+      response.requestId = request.requestId;
+      response.exitCode = exitCode;
+      response.output = new String(capturedOutput.toByteArray(), Charsets.UTF_8);
+      writer.write(gson.toJson(response));
+      writer.write('\n');
+      writer.flush();
+    }
+  }
+
+  public interface RequestHandler {
+    /** Handles a single request, and returns its exit-code. */
+    int handle(String[] args) throws Exception;
+  }
+
+  private static class WorkRequest {
+    List<String> arguments = new ArrayList<>();
+    int requestId;
+  }
+
+  private static class WorkResponse {
+    int exitCode;
+    String output;
+    int requestId;
+  }
+}
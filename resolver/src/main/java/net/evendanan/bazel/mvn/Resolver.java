@@ -4,32 +4,75 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
+import com.beust.jcommander.ParametersDelegate;
 import com.beust.jcommander.converters.IParameterSplitter;
 import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
+import com.google.devtools.bazel.workspace.maven.PomCache;
+import com.google.devtools.bazel.workspace.maven.RepositoryAffinity;
+import com.google.devtools.bazel.workspace.maven.RepositoryRouter;
 import com.google.devtools.bazel.workspace.maven.adapter.MigrationToolingGraphResolver;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
 import net.evendanan.bazel.mvn.api.GraphResolver;
 import net.evendanan.bazel.mvn.api.model.ExportsGenerationType;
 import net.evendanan.bazel.mvn.api.model.Resolution;
 import net.evendanan.bazel.mvn.api.model.ResolutionOutput;
 import net.evendanan.bazel.mvn.api.model.TargetType;
 import net.evendanan.bazel.mvn.api.serialization.Serialization;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.NegativeLookupCache;
 
 public class Resolver {
 
   private final GraphResolver resolver;
 
-  private Resolver(boolean debugLogs, String jdkHome) {
-    this.resolver = new MigrationToolingGraphResolver(debugLogs, jdkHome);
+  private Resolver(
+      boolean debugLogs,
+      String jdkHome,
+      int traversalThreads,
+      @Nullable PomCache pomCache,
+      HttpTransport transport,
+      RepositoryRouter repositoryRouter,
+      @Nullable NegativeLookupCache negativeLookupCache) {
+    this.resolver =
+        new MigrationToolingGraphResolver(
+            debugLogs,
+            jdkHome,
+            traversalThreads,
+            pomCache,
+            transport,
+            repositoryRouter,
+            negativeLookupCache);
   }
 
   public static void main(String[] args) throws Exception {
+    // resolvers, by their configuration. Kept between the requests of a persistent worker.
+    final Map<String, Resolver> drivers = new HashMap<>();
+    if (PersistentWorker.isPersistentWorker(args)) {
+      new PersistentWorker(requestArgs -> run(requestArgs, drivers)).run(System.in, System.out);
+    } else {
+      final int exitCode = run(args, drivers);
+      if (exitCode != 0) {
+        System.exit(exitCode);
+      }
+    }
+  }
+
+  private static int run(String[] args, Map<String, Resolver> drivers) throws Exception {
     Options options = new Options();
     JCommander optionParser = JCommander.newBuilder().addObject(options).build();
     try {
@@ -37,32 +80,166 @@ public class Resolver {
     } catch (ParameterException e) {
       System.err.println("Unable to parse options: " + e.getLocalizedMessage());
       optionParser.usage();
-      return;
+      return 1;
+    }
+    final List<RequestOptions> requests;
+    if (options.batch_file.isEmpty()) {
+      requests = Collections.singletonList(options.request);
+    } else {
+      try {
+        requests = readBatchFile(new File(options.batch_file));
+      } catch (ParameterException e) {
+        System.err.println("Unable to parse batch request: " + e.getLocalizedMessage());
+        optionParser.usage();
+        return 1;
+      }
+    }
+    for (RequestOptions request : requests) {
+      final String error = request.validationError();
+      if (error != null) {
+        System.err.println(error);
+        optionParser.usage();
+        return 1;
+      }
     }
-    if (Strings.isNullOrEmpty(options.artifact)) {
-      System.err.println("Maven coordinate was not provided");
+
+    if (options.offline) {
+      for (RequestOptions request : requests) {
+        for (String repository : request.repositories) {
+          if (!repository.startsWith("file:")) {
+            System.err.println(
+                "Only local (file://) repositories can be used offline, but "
+                    + request.artifact
+                    + " uses "
+                    + repository
+                    + "!");
+            optionParser.usage();
+            return 1;
+          }
+        }
+      }
+    }
+
+    if (options.traversal_threads < 1) {
+      System.err.println("traversal_threads must be at least 1!");
       optionParser.usage();
-      return;
+      return 1;
     }
-    if (options.repositories.isEmpty()) {
-      System.err.println("Repositories URLs were not provided!");
+
+    if (options.negative_cache_ttl_hours < 0) {
+      System.err.println("negative_cache_ttl_hours can not be negative!");
       optionParser.usage();
-      return;
+      return 1;
+    }
+
+    if (options.http_max_connections_per_host < 1) {
+      System.err.println("http_max_connections_per_host must be at least 1!");
+      optionParser.usage();
+      return 1;
+    }
+
+    if (!options.repository_affinity_path.isEmpty() && !options.parallel_repository_probing) {
+      // serial probing never reads the affinity
+      System.err.println("repository_affinity_path requires parallel_repository_probing!");
+      optionParser.usage();
+      return 1;
+    }
+
+    final Resolver driver =
+        drivers.computeIfAbsent(options.resolverConfiguration(), key -> createResolver(options));
+    for (RequestOptions request : requests) {
+      driver.writeResults(request, driver.generateFromArtifacts(request));
+    }
+    return 0;
+  }
+
+  private static Resolver createResolver(Options options) {
+    final PomCache pomCache;
+    if (options.pom_cache_path.isEmpty()) {
+      pomCache = null;
+    } else {
+      pomCache =
+          new PomCache(
+              new File(options.pom_cache_path.replace("~", System.getProperty("user.home"))));
+    }
+
+    final NegativeLookupCache negativeLookupCache;
+    if (options.negative_cache_path.isEmpty()) {
+      negativeLookupCache = null;
+    } else {
+      negativeLookupCache =
+          new NegativeLookupCache(
+              new File(options.negative_cache_path.replace("~", System.getProperty("user.home"))),
+              Duration.ofHours(options.negative_cache_ttl_hours),
+              options.bypass_negative_cache);
+    }
+
+    final RepositoryAffinity repositoryAffinity;
+    if (options.repository_affinity_path.isEmpty()) {
+      repositoryAffinity = new RepositoryAffinity();
+    } else {
+      repositoryAffinity =
+          new RepositoryAffinity(
+              new File(
+                  options.repository_affinity_path.replace("~", System.getProperty("user.home"))));
+    }
+    final ExecutorService probingExecutor;
+    if (options.parallel_repository_probing) {
+      probingExecutor =
+          Executors.newCachedThreadPool(
+              runnable -> {
+                final Thread thread = new Thread(runnable, "mabel-repository-probe");
+                // the resolver may live as long as the process, it should not keep it alive.
+                thread.setDaemon(true);
+                return thread;
+              });
+    } else {
+      probingExecutor = null;
     }
 
-    Resolver driver =
-        new Resolver(
-            options.debug_logs,
-            new File(options.jdk_home).getAbsoluteFile().getCanonicalFile().toPath().toString());
-    driver.writeResults(options, driver.generateFromArtifacts(options));
+    final String jdkHome;
+    try {
+      jdkHome = new File(options.jdk_home).getAbsoluteFile().getCanonicalFile().toPath().toString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return new Resolver(
+        options.debug_logs,
+        jdkHome,
+        options.traversal_threads,
+        pomCache,
+        options.offline
+            ? HttpTransport.offline()
+            : new HttpTransport(
+                Duration.ofSeconds(options.http_connect_timeout_seconds),
+                Duration.ofSeconds(options.http_request_timeout_seconds),
+                options.http_max_connections_per_host),
+        new RepositoryRouter(repositoryAffinity, probingExecutor),
+        negativeLookupCache);
   }
 
-  private Resolution generateFromArtifacts(Options options) {
-    return resolver.resolve(options.artifact, options.repositories, options.blacklist);
+  /**
+   * Reads the requests of a batch invocation. Each non-empty line holds the (tab separated)
+   * arguments of a single request.
+   */
+  private static List<RequestOptions> readBatchFile(File batchFile) throws IOException {
+    final List<RequestOptions> requests = new ArrayList<>();
+    for (String line : Files.readAllLines(batchFile.toPath(), Charsets.UTF_8)) {
+      if (line.trim().isEmpty()) continue;
+      final RequestOptions request = new RequestOptions();
+      JCommander.newBuilder().addObject(request).build().parse(line.split("\t"));
+      requests.add(request);
+    }
+    return requests;
   }
 
-  private void writeResults(Options options, Resolution resolution) throws Exception {
-    final File outputFile = new File(options.output_file);
+  private Resolution generateFromArtifacts(RequestOptions request) {
+    return resolver.resolve(request.artifact, request.repositories, request.blacklist);
+  }
+
+  private void writeResults(RequestOptions request, Resolution resolution) throws Exception {
+    final File outputFile = new File(request.output_file);
     final File parentFolder = outputFile.getParentFile();
     if (!parentFolder.isDirectory() && !parentFolder.mkdirs()) {
       throw new IOException(
@@ -73,33 +250,31 @@ public class Resolver {
       new Serialization()
           .serialize(
               ResolutionOutput.create(
-                  options.type, options.exportsGenerationType, options.test_only, resolution),
+                  request.type, request.exportsGenerationType, request.test_only, resolution),
               writer);
     }
   }
 
+  /** The arguments of a single resolution: which artifact to resolve, and where to write it. */
   @Parameters(separators = "=")
-  public static class Options {
+  public static class RequestOptions {
 
     @Parameter(
         names = {"--artifact", "-a"},
         splitter = NoSplitter.class,
-        description = "Maven artifact coordinate (e.g. groupId:artifactId:version).",
-        required = true)
+        description = "Maven artifact coordinate (e.g. groupId:artifactId:version).")
     String artifact;
 
     @Parameter(
         names = {"--type"},
         splitter = NoSplitter.class,
-        description = "Type of artifact: inherit, jar, aar, naive, auto, processor.",
-        required = true)
+        description = "Type of artifact: inherit, jar, aar, naive, auto, processor.")
     TargetType type;
 
     @Parameter(
         names = {"--exports_generation"},
         splitter = NoSplitter.class,
-        description = "Type of exports generation: inherit, all, requested_deps, none.",
-        required = true)
+        description = "Type of exports generation: inherit, all, requested_deps, none.")
     ExportsGenerationType exportsGenerationType;
 
     @Parameter(
@@ -117,16 +292,49 @@ public class Resolver {
     @Parameter(
         names = {"--repository"},
         splitter = NoSplitter.class,
-        description = "Maven repository url.",
-        required = true)
+        description = "Maven repository url.")
     List<String> repositories = new ArrayList<>();
 
     @Parameter(
         names = {"--output_file"},
-        description = "Path to output graph json file",
-        required = true)
+        description = "Path to output graph json file")
     String output_file = "";
 
+    /** Returns a description of what is missing from this request, or null if it is complete. */
+    @Nullable
+    String validationError() {
+      if (Strings.isNullOrEmpty(artifact)) {
+        return "Maven coordinate was not provided";
+      }
+      if (repositories.isEmpty()) {
+        return "Repositories URLs were not provided for " + artifact + "!";
+      }
+      if (type == null) {
+        return "Artifact type was not provided for " + artifact + "!";
+      }
+      if (exportsGenerationType == null) {
+        return "Exports generation was not provided for " + artifact + "!";
+      }
+      if (output_file.isEmpty()) {
+        return "Output file was not provided for " + artifact + "!";
+      }
+      return null;
+    }
+  }
+
+  @Parameters(separators = "=")
+  public static class Options {
+
+    @ParametersDelegate RequestOptions request = new RequestOptions();
+
+    @Parameter(
+        names = {"--batch_file"},
+        description =
+            "A file with many requests to resolve, one per line (tab separated arguments). When"
+                + " set, the request arguments are read from this file, and not from the command"
+                + " line.")
+    String batch_file = "";
+
     @Parameter(
         names = {"--jdk_home"},
         description = "Path to the local JDK",
@@ -138,6 +346,95 @@ public class Resolver {
         description = "Will print out debug logs.",
         arity = 1)
     boolean debug_logs = false;
+
+    @Parameter(
+        names = {"--traversal_threads"},
+        description =
+            "Number of threads used to fetch the transitive POMs. 1 means a serial traversal.")
+    int traversal_threads = 1;
+
+    @Parameter(
+        names = {"--pom_cache_path"},
+        description =
+            "Where to cache downloaded (released) POM files between runs. Empty means no cache.")
+    String pom_cache_path = "";
+
+    @Parameter(
+        names = {"--http_connect_timeout_seconds"},
+        description = "How long to wait for a connection to a repository to be established.")
+    int http_connect_timeout_seconds = HttpTransport.DEFAULT_CONNECT_TIMEOUT_SECONDS;
+
+    @Parameter(
+        names = {"--http_request_timeout_seconds"},
+        description = "How long to wait for a repository to respond to a single request.")
+    int http_request_timeout_seconds = HttpTransport.DEFAULT_REQUEST_TIMEOUT_SECONDS;
+
+    @Parameter(
+        names = {"--http_max_connections_per_host"},
+        description = "Maximum number of concurrent requests to a single repository host.")
+    int http_max_connections_per_host = HttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    @Parameter(
+        names = {"--offline"},
+        description =
+            "Resolve only from local (file://) repositories, without any network access.",
+        arity = 1)
+    boolean offline = false;
+
+    @Parameter(
+        names = {"--negative_cache_path"},
+        description =
+            "Where to remember artifacts which were not found, so they are not requested again."
+                + " Empty means no cache.")
+    String negative_cache_path = "";
+
+    @Parameter(
+        names = {"--negative_cache_ttl_hours"},
+        description = "For how long an artifact which was not found is not requested again.")
+    int negative_cache_ttl_hours = NegativeLookupCache.DEFAULT_TTL_HOURS;
+
+    @Parameter(
+        names = {"--bypass_negative_cache"},
+        description =
+            "Request artifacts which were not found before anyway. Fresh responses are still"
+                + " cached.",
+        arity = 1)
+    boolean bypass_negative_cache = false;
+
+    @Parameter(
+        names = {"--repository_affinity_path"},
+        description =
+            "Where to keep the learned groupId to repository affinity between runs. Requires"
+                + " --parallel_repository_probing. Empty means it is only kept in memory.")
+    String repository_affinity_path = "";
+
+    @Parameter(
+        names = {"--parallel_repository_probing"},
+        description =
+            "Probe all repositories concurrently for each artifact. The first declared"
+                + " repository which has the artifact is still the one used.",
+        arity = 1)
+    boolean parallel_repository_probing = false;
+
+    /** Options which resolve the same way may share a single resolver (and its caches). */
+    String resolverConfiguration() {
+      return String.format(
+          Locale.ROOT,
+          "%s|%b|%d|%s|%d|%d|%d|%s|%b|%s|%d|%b|%b",
+          jdk_home,
+          debug_logs,
+          traversal_threads,
+          pom_cache_path,
+          http_connect_timeout_seconds,
+          http_request_timeout_seconds,
+          http_max_connections_per_host,
+          repository_affinity_path,
+          parallel_repository_probing,
+          negative_cache_path,
+          negative_cache_ttl_hours,
+          bypass_negative_cache,
+          offline);
+    }
   }
 
   /**
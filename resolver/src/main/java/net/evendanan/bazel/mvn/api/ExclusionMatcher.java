@@ -0,0 +1,121 @@
+package net.evendanan.bazel.mvn.api;
+
+import java.util.Arrays;
+import java.util.Collection;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+
+/**
+ * A list of exclusion strings, compiled once into a character trie. Matching a coordinate walks
+ * the trie along the coordinate's characters, so it does not depend on the number of exclusions
+ * and does not allocate anything.
+ *
+ * <p>Two kinds of matching are supported:
+ *
+ * <ul>
+ *   <li>{@link #matchesPrefix(MavenCoordinate)} - any exclusion is a (string) prefix of {@code
+ *       groupId:artifactId:version}.
+ *   <li>{@link #matchesGroupOrArtifact(String, String)} - any exclusion equals {@code groupId} or
+ *       {@code groupId:artifactId}.
+ * </ul>
+ */
+public final class ExclusionMatcher {
+
+  private static final ExclusionMatcher EMPTY = new ExclusionMatcher(new Node());
+
+  private final Node root;
+
+  private ExclusionMatcher(Node root) {
+    this.root = root;
+  }
+
+  public static ExclusionMatcher compile(Collection<String> exclusions) {
+    if (exclusions.isEmpty()) return EMPTY;
+
+    final Node root = new Node();
+    for (String exclusion : exclusions) {
+      Node node = root;
+      for (int index = 0; index < exclusion.length(); index++) {
+        node = node.getOrAddChild(exclusion.charAt(index));
+      }
+      node.terminal = true;
+    }
+    return new ExclusionMatcher(root);
+  }
+
+  public boolean isEmpty() {
+    return root.keys.length == 0 && !root.terminal;
+  }
+
+  /** Is any of the exclusions a prefix of {@code groupId:artifactId:version}. */
+  public boolean matchesPrefix(MavenCoordinate mavenCoordinate) {
+    Node node = descendUntilTerminal(root, mavenCoordinate.groupId());
+    node = descendUntilTerminal(separator(node), mavenCoordinate.artifactId());
+    node = descendUntilTerminal(separator(node), mavenCoordinate.version());
+    return node != null && node.terminal;
+  }
+
+  /** Is any of the exclusions exactly {@code groupId}, or exactly {@code groupId:artifactId}. */
+  public boolean matchesGroupOrArtifact(String groupId, String artifactId) {
+    Node node = descend(root, groupId);
+    if (node == null) return false;
+    if (node.terminal) return true;
+
+    node = descend(node.child(':'), artifactId);
+    return node != null && node.terminal;
+  }
+
+  /**
+   * Follows {@code text} from {@code node}. Returns {@code null} if there is no such path, or a
+   * terminal node as soon as one is passed (an exclusion was a prefix of the text so far).
+   */
+  private static Node descendUntilTerminal(Node node, CharSequence text) {
+    for (int index = 0; node != null && index < text.length(); index++) {
+      if (node.terminal) return node;
+      node = node.child(text.charAt(index));
+    }
+    return node;
+  }
+
+  /** Steps over the ':' separator, unless an exclusion already matched. */
+  private static Node separator(Node node) {
+    if (node == null || node.terminal) return node;
+    return node.child(':');
+  }
+
+  private static Node descend(Node node, CharSequence text) {
+    for (int index = 0; node != null && index < text.length(); index++) {
+      node = node.child(text.charAt(index));
+    }
+    return node;
+  }
+
+  private static class Node {
+    // sorted, so lookups are a binary search. Fan-out is small, so arrays beat a map here.
+    private char[] keys = new char[0];
+    private Node[] children = new Node[0];
+    private boolean terminal;
+
+    private Node child(char key) {
+      final int index = Arrays.binarySearch(keys, key);
+      return index < 0 ? null : children[index];
+    }
+
+    private Node getOrAddChild(char key) {
+      final int index = Arrays.binarySearch(keys, key);
+      if (index >= 0) return children[index];
+
+      final int insertAt = -index - 1;
+      final char[] newKeys = new char[keys.length + 1];
+      final Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, insertAt);
+      System.arraycopy(children, 0, newChildren, 0, insertAt);
+      newKeys[insertAt] = key;
+      newChildren[insertAt] = new Node();
+      System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+      System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+      keys = newKeys;
+      children = newChildren;
+      return newChildren[insertAt];
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package net.evendanan.bazel.mvn.impl;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+
+/**
+ * A persistent, on-disk, cache of jar inspection results: the annotation processors declared by
+ * an artifact (none, for most artifacts). A released artifact does not change, so once it was
+ * inspected, it is never read again for classification.
+ *
+ * <p>Entries are keyed by the Maven coordinate and the SHA256 of the artifact, or, if the SHA256s
+ * are not calculated, its URL. Each entry is a small file, keyed by the hash of the entry's key, so
+ * several processes can share the same folder. SNAPSHOT artifacts may change under the same
+ * coordinate, so they are never cached.
+ */
+public class JarInspectionCache {
+
+  private final File cacheFolder;
+  @Nullable private final Function<Dependency, String> sha256Provider;
+
+  /**
+   * @param sha256Provider the SHA256 of a dependency's artifact, or null to identify artifacts by
+   *     their URL.
+   */
+  public JarInspectionCache(
+      File cacheFolder, @Nullable Function<Dependency, String> sha256Provider) {
+    this.cacheFolder = cacheFolder;
+    this.sha256Provider = sha256Provider;
+  }
+
+  private static String hash(String key) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Nullable
+  private String key(Dependency dependency) {
+    final MavenCoordinate mavenCoordinate = dependency.mavenCoordinate();
+    if (mavenCoordinate.version().contains("SNAPSHOT")) return null;
+
+    return String.join(
+        " ",
+        mavenCoordinate.toMavenString(),
+        mavenCoordinate.packaging(),
+        sha256Provider == null ? dependency.url() : sha256Provider.apply(dependency));
+  }
+
+  File getEntryFile(String key) {
+    final String hash = hash(key);
+    return cacheFolder.toPath().resolve(hash.substring(0, 2)).resolve(hash).toFile();
+  }
+
+  /**
+   * Returns the processor classes found when the dependency's artifact was inspected, or null if
+   * it was not inspected before.
+   */
+  @Nullable
+  public List<String> find(Dependency dependency) {
+    final String key = key(dependency);
+    if (key == null) return null;
+
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(getEntryFile(key).toPath(), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      System.out.println("Failed to read " + key + " from the inspection cache: " + e.getMessage());
+      return null;
+    }
+    // the first line is the key, guarding against collisions and partial writes
+    if (lines.isEmpty() || !lines.get(0).equals(key)) return null;
+    return Collections.unmodifiableList(new ArrayList<>(lines.subList(1, lines.size())));
+  }
+
+  /** Records the processor classes found in the dependency's artifact. */
+  public void store(Dependency dependency, List<String> processorClasses) {
+    final String key = key(dependency);
+    if (key == null) return;
+
+    final Path entry = getEntryFile(key).toPath();
+    try {
+      Files.createDirectories(entry.getParent());
+      final List<String> lines = new ArrayList<>(processorClasses.size() + 1);
+      lines.add(key);
+      lines.addAll(processorClasses);
+      // a reader never sees a partially written entry
+      final Path tempEntry = Files.createTempFile(entry.getParent(), hash(key), ".tmp");
+      Files.write(tempEntry, lines, StandardCharsets.UTF_8);
+      Files.move(tempEntry, entry, REPLACE_EXISTING);
+    } catch (IOException e) {
+      // it is only a cache.
+      System.out.println("Failed to store " + key + " in the inspection cache: " + e.getMessage());
+    }
+  }
+}
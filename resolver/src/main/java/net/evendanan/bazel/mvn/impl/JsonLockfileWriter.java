@@ -32,10 +32,20 @@ import net.evendanan.bazel.mvn.api.Target;
 public class JsonLockfileWriter implements RuleWriter {
 
   private final File outputFile;
+  private final boolean sourcesLocated;
   private final Gson gson;
 
   public JsonLockfileWriter(File outputFile) {
+    this(outputFile, false);
+  }
+
+  /**
+   * @param sourcesLocated were sources JARs looked for. If so, an artifact without sources in the
+   *     lockfile is known not to have any.
+   */
+  public JsonLockfileWriter(File outputFile, boolean sourcesLocated) {
     this.outputFile = outputFile;
+    this.sourcesLocated = sourcesLocated;
     this.gson = new GsonBuilder().setPrettyPrinting().create();
   }
 
@@ -65,6 +75,9 @@ public class JsonLockfileWriter implements RuleWriter {
 
     JsonObject root = new JsonObject();
     root.addProperty("version", "1.0");
+    if (sourcesLocated) {
+      root.addProperty("sources_located", true);
+    }
 
     JsonObject artifacts = new JsonObject();
     for (Map.Entry<String, ArtifactInfo> entry : artifactMap.entrySet()) {
@@ -0,0 +1,175 @@
+package net.evendanan.bazel.mvn.impl;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.evendanan.bazel.mvn.api.DependencyTools;
+import net.evendanan.bazel.mvn.api.model.Dependency;
+
+/**
+ * The artifacts' data from a lockfile previously written by {@link JsonLockfileWriter}. When
+ * re-generating the lockfile, an artifact which has the same Maven coordinate and URL as in the
+ * baseline does not need to be downloaded again to calculate its SHA256, inspected for annotation
+ * processors, or probed for a sources JAR: the previous results are reused. Data which the
+ * previous run did not calculate (for example, sources JARs when they were not looked for) is not
+ * known, and will be calculated from scratch.
+ *
+ * <p>SNAPSHOT artifacts may change under the same URL, so they are never reused.
+ */
+public class LockfileBaseline {
+
+  private final DependencyTools dependencyTools;
+  private final Map<String, Artifact> artifacts;
+
+  private LockfileBaseline(DependencyTools dependencyTools, Map<String, Artifact> artifacts) {
+    this.dependencyTools = dependencyTools;
+    this.artifacts = artifacts;
+  }
+
+  /** A baseline without any artifacts. */
+  public static LockfileBaseline empty() {
+    return new LockfileBaseline(new DependencyTools(), Collections.emptyMap());
+  }
+
+  /**
+   * Reads the baseline from the given lockfile. A missing, or unreadable, lockfile results in an
+   * empty baseline, so everything will be calculated from scratch.
+   *
+   * @param dependencyTools the same tools used when the lockfile was written.
+   */
+  public static LockfileBaseline read(File lockfile, DependencyTools dependencyTools) {
+    if (!lockfile.isFile()) return new LockfileBaseline(dependencyTools, Collections.emptyMap());
+
+    final Map<String, Artifact> artifacts = new HashMap<>();
+    try (Reader reader = Files.newBufferedReader(lockfile.toPath(), Charsets.UTF_8)) {
+      final JsonObject root = new JsonParser().parse(reader).getAsJsonObject();
+      final boolean sourcesLocated =
+          root.has("sources_located") && root.get("sources_located").getAsBoolean();
+      if (root.has("artifacts")) {
+        for (Map.Entry<String, JsonElement> entry :
+            root.getAsJsonObject("artifacts").entrySet()) {
+          final Artifact artifact =
+              Artifact.fromJson(entry.getValue().getAsJsonObject(), sourcesLocated);
+          if (artifact != null) {
+            artifacts.put(entry.getKey(), artifact);
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // it is only an optimization, starting from scratch.
+      System.out.println("Failed to read lockfile baseline " + lockfile + ": " + e.getMessage());
+      artifacts.clear();
+    }
+    return new LockfileBaseline(dependencyTools, artifacts);
+  }
+
+  public int size() {
+    return artifacts.size();
+  }
+
+  /**
+   * Returns the baseline data of the given dependency, or null if the dependency is new, was
+   * changed (a different URL), or is a SNAPSHOT.
+   */
+  @Nullable
+  public Artifact find(Dependency dependency) {
+    if (dependency.mavenCoordinate().version().contains("SNAPSHOT")) return null;
+
+    final Artifact artifact = artifacts.get(dependencyTools.mavenCoordinates(dependency));
+    if (artifact == null || !artifact.url.equals(dependency.url())) return null;
+    return artifact;
+  }
+
+  /** The data of a single artifact, as it was written to the lockfile. */
+  public static class Artifact {
+    private final String url;
+    @Nullable private final String sha256;
+    private final String targetType;
+    private final List<String> processorClasses;
+    @Nullable private final String sourcesUrl;
+
+    private Artifact(
+        String url,
+        @Nullable String sha256,
+        String targetType,
+        List<String> processorClasses,
+        @Nullable String sourcesUrl) {
+      this.url = url;
+      this.sha256 = sha256;
+      this.targetType = targetType;
+      this.processorClasses = processorClasses;
+      this.sourcesUrl = sourcesUrl;
+    }
+
+    /**
+     * @param sourcesLocated were sources JARs looked for when the lockfile was written. If not, an
+     *     artifact without sources may still have them.
+     */
+    @Nullable
+    private static Artifact fromJson(JsonObject json, boolean sourcesLocated) {
+      if (!json.has("url")) return null;
+
+      final List<String> processorClasses = new ArrayList<>();
+      if (json.has("processor_classes")) {
+        final JsonArray processorClassesArray = json.getAsJsonArray("processor_classes");
+        processorClassesArray.forEach(element -> processorClasses.add(element.getAsString()));
+      }
+      String sourcesUrl = sourcesLocated ? "" : null;
+      if (json.has("sources")) {
+        final JsonObject sources = json.getAsJsonObject("sources");
+        if (sources.has("url")) {
+          sourcesUrl = sources.get("url").getAsString();
+        }
+      }
+
+      return new Artifact(
+          json.get("url").getAsString(),
+          json.has("sha256") ? json.get("sha256").getAsString() : null,
+          json.has("target_type") ? json.get("target_type").getAsString() : "jar",
+          Collections.unmodifiableList(processorClasses),
+          sourcesUrl);
+    }
+
+    /** The SHA256 of the artifact, or null if it was not calculated. */
+    @Nullable
+    public String getSha256() {
+      return sha256;
+    }
+
+    /** One of {@code jar}, {@code aar} or {@code processor}. */
+    public String getTargetType() {
+      return targetType;
+    }
+
+    /**
+     * The annotation processors declared in the artifact, or null if it is not known: only an
+     * artifact written as a {@code processor} is known to have been inspected, since with other
+     * target types the artifact may not have been inspected at all.
+     */
+    @Nullable
+    public List<String> getProcessorClasses() {
+      return "processor".equals(targetType) ? processorClasses : null;
+    }
+
+    /**
+     * The URL of the sources JAR, an empty string if it does not have one, or null if it is not
+     * known (sources JARs were not looked for when the lockfile was written).
+     */
+    @Nullable
+    public String getSourcesUrl() {
+      return sourcesUrl;
+    }
+  }
+}
@@ -1,22 +1,30 @@
 package net.evendanan.bazel.mvn.impl;
 
 import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
 import net.evendanan.bazel.mvn.api.RuleClassifier;
 import net.evendanan.bazel.mvn.api.TargetsBuilder;
 import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.http.RangedZipReader;
 
 public class RuleClassifiers {
 
@@ -66,29 +74,71 @@ public class RuleClassifiers {
 
   public static class JarInspector {
 
+    private static final String PROCESSOR_SERVICES_ENTRY =
+        "META-INF/services/javax.annotation.processing.Processor";
+
     private final Function<Dependency, URI> downloader;
+    private final LockfileBaseline baseline;
+    @Nullable private final RangedZipReader remoteReader;
+    @Nullable private final JarInspectionCache cache;
 
-    public JarInspector(Function<Dependency, URI> downloader) {
+    /**
+     * @param baseline artifacts which did not change since the baseline are not downloaded nor
+     *     inspected.
+     * @param remoteReader if not null, remote artifacts are inspected with it, which reads only the
+     *     jar's directory and services entry. Artifacts are downloaded only if the server does not
+     *     serve ranges of them.
+     * @param cache if not null, artifacts which were inspected before, and are in it, are not read
+     *     again.
+     */
+    public JarInspector(
+        Function<Dependency, URI> downloader,
+        LockfileBaseline baseline,
+        @Nullable RangedZipReader remoteReader,
+        @Nullable JarInspectionCache cache) {
       this.downloader = downloader;
+      this.baseline = baseline;
+      this.remoteReader = remoteReader;
+      this.cache = cache;
+    }
+
+    private static boolean isProcessorServicesEntry(String entryName) {
+      return entryName.equalsIgnoreCase(PROCESSOR_SERVICES_ENTRY);
+    }
+
+    /**
+     * Only the central directory of the jar is read, and only the services entry is inflated, so
+     * the cost does not depend on the size of the rest of the entries.
+     */
+    private static List<TargetsBuilder> performLocalJarInspection(File jarFile) throws IOException {
+      final List<TargetsBuilder> detectedModules = new ArrayList<>();
+      try (ZipFile zipFile = new ZipFile(jarFile)) {
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          final ZipEntry entry = entries.nextElement();
+          if (isProcessorServicesEntry(entry.getName())) {
+            try (InputStream entryInputStream = zipFile.getInputStream(entry)) {
+              parseServicesProcessorFileContent(
+                      new String(ByteStreams.toByteArray(entryInputStream), Charsets.UTF_8))
+                  .ifPresent(detectedModules::add);
+            }
+          }
+        }
+      }
+
+      return detectedModules;
     }
 
+    /** Streams through the whole jar, for artifacts which are not local files. */
     private static List<TargetsBuilder> performRemoteJarInspection(InputStream inputStream)
         throws IOException {
       final List<TargetsBuilder> detectedModules = new ArrayList<>();
       try (JarInputStream zipInputStream = new JarInputStream(inputStream, false)) {
         JarEntry jarEntry = zipInputStream.getNextJarEntry();
         while (jarEntry != null) {
-          final String jarEntryName = jarEntry.getName();
-          if (jarEntryName.equalsIgnoreCase(
-              "META-INF/services/javax.annotation.processing.Processor")) {
-            StringBuilder contentBuilder = new StringBuilder();
-            final byte[] buffer = new byte[1024];
-            int read = 0;
-            while ((read = zipInputStream.read(buffer, 0, buffer.length)) >= 0) {
-              contentBuilder.append(new String(buffer, 0, read, Charsets.UTF_8));
-            }
-
-            parseServicesProcessorFileContent(contentBuilder.toString())
+          if (isProcessorServicesEntry(jarEntry.getName())) {
+            parseServicesProcessorFileContent(
+                    new String(ByteStreams.toByteArray(zipInputStream), Charsets.UTF_8))
                 .ifPresent(detectedModules::add);
           }
           zipInputStream.closeEntry();
@@ -117,12 +167,75 @@ public class RuleClassifiers {
       return Optional.empty();
     }
 
+    private static List<TargetsBuilder> processorBuilders(List<String> processorClasses) {
+      if (processorClasses.isEmpty()) {
+        return Collections.emptyList();
+      } else {
+        return Collections.singletonList(new TargetsBuilders.JavaPluginFormatter(processorClasses));
+      }
+    }
+
     public List<TargetsBuilder> findAllPossibleBuilders(final Dependency dependency) {
-      try (InputStream networkInputStream = downloader.apply(dependency).toURL().openStream()) {
-        return performRemoteJarInspection(networkInputStream);
+      final LockfileBaseline.Artifact known = baseline.find(dependency);
+      if (known != null && known.getProcessorClasses() != null) {
+        return processorBuilders(known.getProcessorClasses());
+      }
+      if (cache == null) {
+        final List<TargetsBuilder> detectedModules = inspect(dependency);
+        return detectedModules == null ? Collections.emptyList() : detectedModules;
+      }
+
+      final List<String> cachedProcessorClasses = cache.find(dependency);
+      if (cachedProcessorClasses != null) {
+        return processorBuilders(cachedProcessorClasses);
+      }
+      final List<TargetsBuilder> detectedModules = inspect(dependency);
+      if (detectedModules == null) {
+        // failures are not cached
+        return Collections.emptyList();
+      }
+      // inspection only detects processors
+      cache.store(
+          dependency,
+          detectedModules.stream()
+              .map(TargetsBuilders.JavaPluginFormatter.class::cast)
+              .flatMap(processor -> processor.getProcessorClasses().stream())
+              .collect(Collectors.toList()));
+      return detectedModules;
+    }
+
+    /** The builders of the processors declared in the artifact, or null if it can not be read. */
+    @Nullable
+    private List<TargetsBuilder> inspect(Dependency dependency) {
+      if (remoteReader != null && !dependency.url().isEmpty()) {
+        try {
+          final List<byte[]> servicesEntries =
+              remoteReader.readEntries(
+                  new URL(dependency.url()), JarInspector::isProcessorServicesEntry);
+          if (servicesEntries != null) {
+            final List<TargetsBuilder> detectedModules = new ArrayList<>();
+            for (byte[] servicesEntry : servicesEntries) {
+              parseServicesProcessorFileContent(new String(servicesEntry, Charsets.UTF_8))
+                  .ifPresent(detectedModules::add);
+            }
+            return detectedModules;
+          }
+        } catch (IOException e) {
+          // falling back to downloading the artifact
+        }
+      }
+
+      final URI artifact = downloader.apply(dependency);
+      try {
+        if ("file".equals(artifact.getScheme())) {
+          return performLocalJarInspection(new File(artifact));
+        }
+        try (InputStream networkInputStream = artifact.toURL().openStream()) {
+          return performRemoteJarInspection(networkInputStream);
+        }
       } catch (IOException e) {
         e.printStackTrace();
-        return Collections.emptyList();
+        return null;
       }
     }
   }
@@ -1,7 +1,6 @@
 package net.evendanan.bazel.mvn.impl;
 
 import com.google.common.annotations.VisibleForTesting;
-import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
@@ -14,13 +13,14 @@ import net.evendanan.bazel.mvn.api.model.TargetType;
 
 public class TargetsBuilderForType {
   private final Function<MavenCoordinate, TargetType> targetTypeProvider;
-  private final Function<Dependency, URI> downloader;
+  private final RuleClassifiers.JarInspector jarInspector;
 
+  /** All the jar inspections are done by the given inspector. */
   public TargetsBuilderForType(
       Function<MavenCoordinate, TargetType> targetTypeProvider,
-      Function<Dependency, URI> downloader) {
+      RuleClassifiers.JarInspector jarInspector) {
     this.targetTypeProvider = targetTypeProvider;
-    this.downloader = downloader;
+    this.jarInspector = jarInspector;
   }
 
   public TargetsBuilder generateBuilder(Dependency dependency) {
@@ -41,9 +41,9 @@ public class TargetsBuilderForType {
       case naive:
         return new NaiveBuilder();
       case processor:
-        return new ProcessorBuilder(downloader);
+        return new ProcessorBuilder(jarInspector);
       case auto:
-        return new AutoBuilder(downloader);
+        return new AutoBuilder(jarInspector);
       default:
         throw new IllegalArgumentException(
             "Dependency: "
@@ -58,8 +58,8 @@ public class TargetsBuilderForType {
 
     private final RuleClassifiers.JarInspector jarInspector;
 
-    public ProcessorBuilder(Function<Dependency, URI> downloader) {
-      jarInspector = new RuleClassifiers.JarInspector(downloader);
+    public ProcessorBuilder(RuleClassifiers.JarInspector jarInspector) {
+      this.jarInspector = jarInspector;
     }
 
     @Override
@@ -88,8 +88,8 @@ public class TargetsBuilderForType {
 
     private final RuleClassifiers.JarInspector jarInspector;
 
-    public AutoBuilder(Function<Dependency, URI> downloader) {
-      jarInspector = new RuleClassifiers.JarInspector(downloader);
+    public AutoBuilder(RuleClassifiers.JarInspector jarInspector) {
+      this.jarInspector = jarInspector;
     }
 
     @Override
@@ -2,9 +2,6 @@ package net.evendanan.bazel.mvn.impl;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
-import java.io.InputStream;
-import java.net.URI;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -178,15 +175,21 @@ public class TargetsBuilders {
   }
 
   public static class HttpTargetsBuilder implements TargetsBuilder {
-    private static final char[] hexArray = "0123456789abcdef".toCharArray();
     private final boolean calculateSha;
-    private final byte[] readBuffer;
-    private final Function<Dependency, URI> downloader;
-
-    public HttpTargetsBuilder(boolean calculateSha, Function<Dependency, URI> downloader) {
+    private final LockfileBaseline baseline;
+    private final Function<Dependency, String> sha256Provider;
+
+    /**
+     * The SHA256 of artifacts is taken from {@code sha256Provider}, which may know it without
+     * reading the artifact again.
+     */
+    public HttpTargetsBuilder(
+        boolean calculateSha,
+        LockfileBaseline baseline,
+        Function<Dependency, String> sha256Provider) {
       this.calculateSha = calculateSha;
-      this.readBuffer = calculateSha ? new byte[4096] : new byte[0];
-      this.downloader = downloader;
+      this.baseline = baseline;
+      this.sha256Provider = sha256Provider;
     }
 
     @Override
@@ -202,27 +205,11 @@ public class TargetsBuilders {
               .addList("urls", Collections.singleton(dependency.url()))
               .addString("downloaded_file_path", getFilenameFromUrl(dependency.url()));
 
-      if (calculateSha && !dependency.mavenCoordinate().version().contains("SNAPSHOT")) {
-        try (InputStream inputStream = downloader.apply(dependency).toURL().openStream()) {
-          final MessageDigest digest = MessageDigest.getInstance("SHA-256");
-
-          int bytesCount;
-          while ((bytesCount = inputStream.read(readBuffer)) != -1) {
-            digest.update(readBuffer, 0, bytesCount);
-          }
-
-          byte[] digestBytes = digest.digest();
-          char[] hexChars = new char[digestBytes.length * 2];
-          for (int digestByteIndex = 0; digestByteIndex < digestBytes.length; digestByteIndex++) {
-            int v = digestBytes[digestByteIndex] & 0xFF;
-            hexChars[digestByteIndex * 2] = hexArray[v >>> 4];
-            hexChars[digestByteIndex * 2 + 1] = hexArray[v & 0x0F];
-          }
-          final String hexStringValue = new String(hexChars);
-          jarTarget.addString("sha256", hexStringValue);
-        } catch (Exception e) {
-          throw new RuntimeException(e);
-        }
+      final LockfileBaseline.Artifact known = baseline.find(dependency);
+      if (calculateSha && known != null && known.getSha256() != null) {
+        jarTarget.addString("sha256", known.getSha256());
+      } else if (calculateSha && !dependency.mavenCoordinate().version().contains("SNAPSHOT")) {
+        jarTarget.addString("sha256", sha256Provider.apply(dependency));
       }
       if (dependency.sourcesUrl().isEmpty()) {
         return Collections.singletonList(jarTarget);
@@ -3,7 +3,12 @@ package net.evendanan.bazel.mvn.merger;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,8 +17,10 @@ import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import javax.annotation.Nullable;
 import net.evendanan.bazel.mvn.api.DependencyTools;
 import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.http.HttpTransport;
 
 public class ArtifactDownloader {
 
@@ -21,8 +28,9 @@ public class ArtifactDownloader {
   private final File mArtifactsFolder;
   private final DependencyTools mDependencyTools;
 
-  public ArtifactDownloader(File artifactsFolder, DependencyTools dependencyTools) {
-    this(URL::openStream, artifactsFolder, dependencyTools);
+  public ArtifactDownloader(
+      HttpTransport transport, File artifactsFolder, DependencyTools dependencyTools) {
+    this(transport::openStream, artifactsFolder, dependencyTools);
   }
 
   @VisibleForTesting
@@ -34,18 +42,48 @@ public class ArtifactDownloader {
   }
 
   public URI getLocalUriForDependency(Dependency dependency) throws IOException {
+    return getLocalFileForDependency(dependency).toURI();
+  }
+
+  /**
+   * The SHA256 of the dependency's artifact, downloading it if needed. The digest is calculated
+   * while the artifact is downloaded and is kept in a {@code .sha256} sidecar file next to it, so
+   * the artifact is not read again as long as its size and last-modified time are the ones the
+   * sidecar was written for.
+   */
+  public String getSha256ForDependency(Dependency dependency) throws IOException {
+    final File localPath = getLocalFileForDependency(dependency);
+    final String recordedSha256 = readSha256Sidecar(localPath);
+    if (recordedSha256 != null) {
+      return recordedSha256;
+    }
+
+    // downloaded before sidecars were written, or changed since
+    final HashingInputStream hashingInputStream =
+        new HashingInputStream(Hashing.sha256(), new FileInputStream(localPath));
+    try (final InputStream inputStream = hashingInputStream) {
+      ByteStreams.exhaust(inputStream);
+    }
+    final String sha256 = hashingInputStream.hash().toString();
+    writeSha256Sidecar(localPath, sha256);
+    return sha256;
+  }
+
+  private File getLocalFileForDependency(Dependency dependency) throws IOException {
     final File localPath =
         new File(mArtifactsFolder, mDependencyTools.repositoryRuleName(dependency));
     // first, is the file exists locally already?
     if (localPath.exists() && localPath.isFile()) {
-      return localPath.toURI();
+      return localPath;
     }
 
-    // second, download to unique temp file
+    // second, download to unique temp file, calculating its digest on the way
     final File tempDownloadFile =
         File.createTempFile("mabel_ArtifactDownloader", localPath.getName());
-    try (final ReadableByteChannel readableByteChannel =
-        Channels.newChannel(mConnectionOpener.openInputStream(new URL(dependency.url())))) {
+    final HashingInputStream hashingInputStream =
+        new HashingInputStream(
+            Hashing.sha256(), mConnectionOpener.openInputStream(new URL(dependency.url())));
+    try (final ReadableByteChannel readableByteChannel = Channels.newChannel(hashingInputStream)) {
       try (final FileOutputStream tempOutput = new FileOutputStream(tempDownloadFile, false)) {
         tempOutput.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
       }
@@ -53,9 +91,46 @@ public class ArtifactDownloader {
 
     // third, rename the temp file to localPath
     Files.move(tempDownloadFile.toPath(), localPath.toPath(), REPLACE_EXISTING);
+    writeSha256Sidecar(localPath, hashingInputStream.hash().toString());
 
     // done
-    return localPath.toURI();
+    return localPath;
+  }
+
+  @VisibleForTesting
+  static File sha256Sidecar(File localPath) {
+    return new File(localPath.getParentFile(), localPath.getName() + ".sha256");
+  }
+
+  /**
+   * The digest recorded for the artifact, or null if there is none, or if the artifact's size or
+   * last-modified time changed since it was recorded.
+   */
+  @Nullable
+  private static String readSha256Sidecar(File localPath) throws IOException {
+    final File sidecar = sha256Sidecar(localPath);
+    if (!sidecar.isFile()) {
+      return null;
+    }
+    // <sha256> <size> <last-modified>
+    final String[] fields =
+        new String(Files.readAllBytes(sidecar.toPath()), Charsets.UTF_8).trim().split(" ");
+    if (fields.length != 3
+        || !fields[1].equals(Long.toString(localPath.length()))
+        || !fields[2].equals(Long.toString(localPath.lastModified()))) {
+      return null;
+    }
+    return fields[0];
+  }
+
+  private static void writeSha256Sidecar(File localPath, String sha256) throws IOException {
+    final File sidecar = sha256Sidecar(localPath);
+    final File tempSidecarFile = File.createTempFile("mabel_ArtifactDownloader", sidecar.getName());
+    Files.write(
+        tempSidecarFile.toPath(),
+        (sha256 + " " + localPath.length() + " " + localPath.lastModified())
+            .getBytes(Charsets.UTF_8));
+    Files.move(tempSidecarFile.toPath(), sidecar.toPath(), REPLACE_EXISTING);
   }
 
   interface ConnectionOpener {
@@ -0,0 +1,374 @@
+package net.evendanan.bazel.mvn.merger;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+import net.evendanan.bazel.mvn.api.model.Resolution;
+
+/**
+ * A compact, index-based, form of a dependency graph, used by the merge pipeline. Every distinct
+ * Maven coordinate is interned into an int node id, and every distinct {@code groupId:artifactId}
+ * into an int key id. Edges are kept as primitive int arrays (dependencies, exports and
+ * runtime-dependencies) and the rest of a node's attributes are kept as the {@link Dependency} it
+ * was defined with, so no {@link Dependency} is rebuilt until the final graph is materialized with
+ * {@link #toDependency(Dependency, int, IntUnaryOperator)}.
+ *
+ * <p>Nodes which are only referenced by edges, and were never defined, do not have attributes.
+ *
+ * <p>This class is not thread-safe.
+ */
+final class CompactGraph {
+
+  private static final int[] NO_NODES = new int[0];
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final boolean replaceDefinitions;
+  private final Map<MavenCoordinate, Integer> nodeIds = new HashMap<>();
+  // groupId -> artifactId -> key id. Nested, so looking up a key does not allocate.
+  private final Map<String, Map<String, Integer>> keyIds = new HashMap<>();
+  private int nodesCount;
+  private int keysCount;
+
+  // per-node columns
+  private MavenCoordinate[] coordinates = new MavenCoordinate[INITIAL_CAPACITY];
+  private int[] keys = new int[INITIAL_CAPACITY];
+  private Dependency[] attributes = new Dependency[INITIAL_CAPACITY];
+  private int[][] dependencies = new int[INITIAL_CAPACITY][];
+  private int[][] exports = new int[INITIAL_CAPACITY][];
+  private int[][] runtimeDependencies = new int[INITIAL_CAPACITY][];
+  private int[][] children = new int[INITIAL_CAPACITY][];
+
+  private int[] definitionOrder = new int[INITIAL_CAPACITY];
+  private int definitionsCount;
+  private int[] roots = NO_NODES;
+
+  // used to drop repeated edges without allocating a set
+  private int[] edgeStamps = NO_NODES;
+  private int edgeStamp;
+
+  private CompactGraph(boolean replaceDefinitions) {
+    this.replaceDefinitions = replaceDefinitions;
+  }
+
+  /**
+   * The graph of all the resolutions. A coordinate defined by several resolutions gets the last
+   * definition.
+   */
+  static CompactGraph ofResolutions(Collection<Resolution> resolutions) {
+    final CompactGraph graph = new CompactGraph(true);
+    final int[] roots = new int[resolutions.size()];
+    int rootIndex = 0;
+    for (Resolution resolution : resolutions) {
+      roots[rootIndex++] = graph.internNode(resolution.rootDependency());
+      resolution.allResolvedDependencies().forEach(graph::define);
+    }
+    graph.roots = roots;
+    return graph;
+  }
+
+  /**
+   * The graph of a single resolution, rooted at its root. A coordinate defined more than once gets
+   * the first definition.
+   */
+  static CompactGraph ofResolution(Resolution resolution) {
+    final CompactGraph graph = new CompactGraph(false);
+    graph.roots = new int[] {graph.internNode(resolution.rootDependency())};
+    resolution.allResolvedDependencies().forEach(graph::define);
+    return graph;
+  }
+
+  /**
+   * The graph of the given dependencies, without roots. A coordinate defined more than once gets
+   * the first definition.
+   */
+  static CompactGraph ofDependencies(Collection<Dependency> dependencies) {
+    final CompactGraph graph = new CompactGraph(false);
+    dependencies.forEach(graph::define);
+    return graph;
+  }
+
+  private void define(Dependency dependency) {
+    final int node = internNode(dependency.mavenCoordinate());
+    if (attributes[node] == null) {
+      definitionOrder = ensureCapacity(definitionOrder, definitionsCount + 1);
+      definitionOrder[definitionsCount++] = node;
+    } else if (!replaceDefinitions) {
+      return;
+    }
+
+    // interning may grow the columns, so it must happen before any of them is written to
+    final int[] nodeDependencies = internNodes(dependency.dependencies());
+    final int[] nodeExports = internNodes(dependency.exports());
+    final int[] nodeRuntimeDependencies = internNodes(dependency.runtimeDependencies());
+    attributes[node] = dependency;
+    dependencies[node] = nodeDependencies;
+    exports[node] = nodeExports;
+    runtimeDependencies[node] = nodeRuntimeDependencies;
+    children[node] = null;
+  }
+
+  private int[] internNodes(Collection<MavenCoordinate> mavenCoordinates) {
+    if (mavenCoordinates.isEmpty()) return NO_NODES;
+
+    final int[] nodes = new int[mavenCoordinates.size()];
+    int index = 0;
+    for (MavenCoordinate mavenCoordinate : mavenCoordinates) {
+      nodes[index++] = internNode(mavenCoordinate);
+    }
+    return nodes;
+  }
+
+  private int internNode(MavenCoordinate mavenCoordinate) {
+    final Integer existing = nodeIds.get(mavenCoordinate);
+    if (existing != null) return existing;
+
+    final int node = nodesCount++;
+    if (node == coordinates.length) {
+      final int capacity = coordinates.length * 2;
+      coordinates = Arrays.copyOf(coordinates, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+      attributes = Arrays.copyOf(attributes, capacity);
+      dependencies = Arrays.copyOf(dependencies, capacity);
+      exports = Arrays.copyOf(exports, capacity);
+      runtimeDependencies = Arrays.copyOf(runtimeDependencies, capacity);
+      children = Arrays.copyOf(children, capacity);
+    }
+    nodeIds.put(mavenCoordinate, node);
+    coordinates[node] = mavenCoordinate;
+    keys[node] =
+        keyIds
+            .computeIfAbsent(mavenCoordinate.groupId(), groupId -> new HashMap<>())
+            .computeIfAbsent(mavenCoordinate.artifactId(), artifactId -> keysCount++);
+    dependencies[node] = NO_NODES;
+    exports[node] = NO_NODES;
+    runtimeDependencies[node] = NO_NODES;
+    return node;
+  }
+
+  private static int[] ensureCapacity(int[] array, int capacity) {
+    return capacity <= array.length ? array : Arrays.copyOf(array, array.length * 2);
+  }
+
+  int nodesCount() {
+    return nodesCount;
+  }
+
+  int keysCount() {
+    return keysCount;
+  }
+
+  /** The node id of the given coordinate, or -1 if it is not in this graph. */
+  int nodeId(MavenCoordinate mavenCoordinate) {
+    final Integer node = nodeIds.get(mavenCoordinate);
+    return node == null ? -1 : node;
+  }
+
+  /** The key id of the given {@code groupId:artifactId}, or -1 if it is not in this graph. */
+  int keyId(MavenCoordinate mavenCoordinate) {
+    final Map<String, Integer> artifacts = keyIds.get(mavenCoordinate.groupId());
+    if (artifacts == null) return -1;
+    final Integer key = artifacts.get(mavenCoordinate.artifactId());
+    return key == null ? -1 : key;
+  }
+
+  MavenCoordinate coordinate(int node) {
+    return coordinates[node];
+  }
+
+  int key(int node) {
+    return keys[node];
+  }
+
+  boolean isDefined(int node) {
+    return attributes[node] != null;
+  }
+
+  /** The dependency the node was defined with. */
+  Dependency attributes(int node) {
+    return Preconditions.checkNotNull(
+        attributes[node], "Can not find mapping for %s", coordinates[node]);
+  }
+
+  int[] dependencies(int node) {
+    return dependencies[node];
+  }
+
+  int[] exports(int node) {
+    return exports[node];
+  }
+
+  int[] runtimeDependencies(int node) {
+    return runtimeDependencies[node];
+  }
+
+  /**
+   * The node's dependencies, exports and runtime-dependencies (in that order, without
+   * repetitions).
+   */
+  int[] children(int node) {
+    int[] nodeChildren = children[node];
+    if (nodeChildren == null) {
+      nextEdgeStamp();
+      final int[] nodeDependencies = dependencies[node];
+      final int[] nodeExports = exports[node];
+      final int[] nodeRuntimeDependencies = runtimeDependencies[node];
+      nodeChildren =
+          new int[nodeDependencies.length + nodeExports.length + nodeRuntimeDependencies.length];
+      int count = addDistinct(nodeDependencies, nodeChildren, 0);
+      count = addDistinct(nodeExports, nodeChildren, count);
+      count = addDistinct(nodeRuntimeDependencies, nodeChildren, count);
+      if (count < nodeChildren.length) nodeChildren = Arrays.copyOf(nodeChildren, count);
+      children[node] = nodeChildren;
+    }
+    return nodeChildren;
+  }
+
+  private int addDistinct(int[] edges, int[] target, int count) {
+    for (int edge : edges) {
+      if (edgeStamps[edge] != edgeStamp) {
+        edgeStamps[edge] = edgeStamp;
+        target[count++] = edge;
+      }
+    }
+    return count;
+  }
+
+  /** The defined nodes, in the order they were first defined. */
+  int[] definitionOrder() {
+    return Arrays.copyOf(definitionOrder, definitionsCount);
+  }
+
+  int[] roots() {
+    return roots.clone();
+  }
+
+  /**
+   * Visits, depth-first, the nodes reachable from each root. A node is visited once per root, the
+   * first time it is reached, with its depth in the traversal tree (the root is at level 1), so
+   * every root is traveled in O(V+E) no matter how many paths lead to a node. That depth is not
+   * necessarily the node's minimal depth, see {@link #minimalDepths()}. Edges which close a cycle
+   * are not followed.
+   */
+  void dfs(NodeVisitor visitor) {
+    dfs(visitor, (node, ancestor) -> {});
+  }
+
+  /**
+   * Like {@link #dfs(NodeVisitor)}, and also calls {@code cycleVisitor} with every edge which
+   * closes a cycle (from a node to one of its ancestors in the traversal of the current root).
+   */
+  void dfs(NodeVisitor visitor, EdgeVisitor cycleVisitor) {
+    final int[] visitedStamps = new int[nodesCount];
+    final boolean[] onPath = new boolean[nodesCount];
+    // not recursive, so deep graphs will not overflow the stack
+    final int[] pathNodes = new int[nodesCount];
+    final int[] pathNextChild = new int[nodesCount];
+    for (int rootIndex = 0; rootIndex < roots.length; rootIndex++) {
+      final int visitedStamp = rootIndex + 1;
+      final int root = roots[rootIndex];
+      visitedStamps[root] = visitedStamp;
+      visitor.visit(root, 1);
+      int depth = 0;
+      pathNodes[depth] = root;
+      pathNextChild[depth] = 0;
+      onPath[root] = true;
+      depth++;
+
+      while (depth > 0) {
+        final int current = pathNodes[depth - 1];
+        final int[] currentChildren = children(current);
+        if (pathNextChild[depth - 1] < currentChildren.length) {
+          final int child = currentChildren[pathNextChild[depth - 1]++];
+          if (onPath[child]) {
+            cycleVisitor.visit(current, child);
+          } else if (visitedStamps[child] != visitedStamp) {
+            visitedStamps[child] = visitedStamp;
+            visitor.visit(child, depth + 1);
+            pathNodes[depth] = child;
+            pathNextChild[depth] = 0;
+            onPath[child] = true;
+            depth++;
+          }
+        } else {
+          onPath[current] = false;
+          depth--;
+        }
+      }
+    }
+  }
+
+  /**
+   * The minimal depth of every node reachable from the roots (a root is at level 1), calculated
+   * breadth-first. Nodes which are not reachable from any root are at level 0.
+   */
+  int[] minimalDepths() {
+    final int[] depths = new int[nodesCount];
+    final int[] queue = new int[nodesCount];
+    int head = 0;
+    int tail = 0;
+    for (int root : roots) {
+      if (depths[root] == 0) {
+        depths[root] = 1;
+        queue[tail++] = root;
+      }
+    }
+    while (head < tail) {
+      final int current = queue[head++];
+      for (int child : children(current)) {
+        if (depths[child] == 0) {
+          depths[child] = depths[current] + 1;
+          queue[tail++] = child;
+        }
+      }
+    }
+    return depths;
+  }
+
+  /**
+   * Builds a {@link Dependency} with the given attributes and the edges of the given node. Each
+   * edge's target is mapped with {@code edgeTarget} (for example, to a pinned version), and
+   * repeated targets are dropped.
+   */
+  Dependency toDependency(Dependency nodeAttributes, int node, IntUnaryOperator edgeTarget) {
+    return Dependency.builder(nodeAttributes)
+        .dependencies(toCoordinates(dependencies[node], edgeTarget))
+        .exports(toCoordinates(exports[node], edgeTarget))
+        .runtimeDependencies(toCoordinates(runtimeDependencies[node], edgeTarget))
+        .build();
+  }
+
+  private List<MavenCoordinate> toCoordinates(int[] edges, IntUnaryOperator edgeTarget) {
+    nextEdgeStamp();
+    final List<MavenCoordinate> mavenCoordinates = new ArrayList<>(edges.length);
+    for (int edge : edges) {
+      final int target = edgeTarget.applyAsInt(edge);
+      if (edgeStamps[target] != edgeStamp) {
+        edgeStamps[target] = edgeStamp;
+        mavenCoordinates.add(coordinates[target]);
+      }
+    }
+    return mavenCoordinates;
+  }
+
+  private void nextEdgeStamp() {
+    if (edgeStamps.length < nodesCount) edgeStamps = new int[coordinates.length];
+    edgeStamp++;
+  }
+
+  @FunctionalInterface
+  interface NodeVisitor {
+    void visit(int node, int level);
+  }
+
+  @FunctionalInterface
+  interface EdgeVisitor {
+    void visit(int from, int to);
+  }
+}
@@ -2,7 +2,7 @@ package net.evendanan.bazel.mvn.merger;
 
 import java.util.Collection;
 import java.util.stream.Collectors;
-import net.evendanan.bazel.mvn.api.DependencyTools;
+import net.evendanan.bazel.mvn.api.ExclusionMatcher;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 
@@ -10,15 +10,17 @@ public class ExcludesFilter {
 
   static Collection<Dependency> filterDependencies(
       final Collection<Dependency> dependencies, final Collection<String> excludes) {
+    return filterDependencies(dependencies, ExclusionMatcher.compile(excludes));
+  }
+
+  /**
+   * Removes every dependency whose {@code groupId:artifactId:version} starts with any of the
+   * excludes, and removes such dependencies from the remaining dependencies' edges.
+   */
+  static Collection<Dependency> filterDependencies(
+      final Collection<Dependency> dependencies, final ExclusionMatcher excludes) {
     return dependencies.stream()
-        .filter(
-            dependency ->
-                excludes.stream()
-                    .noneMatch(
-                        exclude ->
-                            DependencyTools.DEFAULT
-                                .mavenCoordinates(dependency)
-                                .startsWith(exclude)))
+        .filter(dependency -> !excludes.matchesPrefix(dependency.mavenCoordinate()))
         .map(
             dependency ->
                 Dependency.builder(dependency)
@@ -31,16 +33,9 @@ public class ExcludesFilter {
   }
 
   private static Collection<MavenCoordinate> filterMavenDependencies(
-      final Collection<MavenCoordinate> dependencies, final Collection<String> excludes) {
+      final Collection<MavenCoordinate> dependencies, final ExclusionMatcher excludes) {
     return dependencies.stream()
-        .filter(
-            dependency ->
-                excludes.stream()
-                    .noneMatch(
-                        exclude ->
-                            DependencyTools.DEFAULT
-                                .mavenCoordinates(dependency)
-                                .startsWith(exclude)))
+        .filter(dependency -> !excludes.matchesPrefix(dependency))
         .collect(Collectors.toList());
   }
 }
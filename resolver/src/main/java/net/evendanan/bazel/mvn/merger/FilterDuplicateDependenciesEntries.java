@@ -2,43 +2,36 @@ package net.evendanan.bazel.mvn.merger;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
-import javax.annotation.Nonnull;
-import net.evendanan.bazel.mvn.api.DependencyTools;
+import java.util.function.IntUnaryOperator;
 import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 
 public class FilterDuplicateDependenciesEntries {
 
-  private static Set<Dependency> filterDuplicateEntries(
-      Collection<Dependency> dependencies, MemoizeDependency memoization) {
-    Set<String> pinnedDeps = new HashSet<>();
-    return dependencies.stream()
-        .filter(dep -> pinnedDeps.add(DependencyTools.DEFAULT.mavenCoordinates(dep)))
-        .map(memoization::map)
-        .collect(Collectors.toSet());
-  }
-
+  /**
+   * Keeps the first dependency of every {@code groupId:artifactId:version}, and drops repeated
+   * entries from the edges of the kept dependencies.
+   */
   public static Set<Dependency> filterDuplicateDependencies(
       final Collection<Dependency> dependencies) {
-    return filterDuplicateEntries(dependencies, new MemoizeDependency());
-  }
-
-  private static class MemoizeDependency extends GraphMemoizator<Dependency> {
-    @Nonnull
-    @Override
-    protected Dependency calculate(@Nonnull final Dependency original) {
-      return Dependency.builder(original)
-          .dependencies(original.dependencies().stream().distinct().collect(Collectors.toList()))
-          .exports(original.exports().stream().distinct().collect(Collectors.toList()))
-          .runtimeDependencies(
-              original.runtimeDependencies().stream().distinct().collect(Collectors.toList()))
-          .build();
-    }
-
-    @Override
-    protected String getKeyForObject(final Dependency dependency) {
-      return DependencyTools.DEFAULT.mavenCoordinates(dependency);
+    final CompactGraph graph = CompactGraph.ofDependencies(dependencies);
+    // the packaging is not part of the identity of an entry
+    final Set<MavenCoordinate> pinnedDeps = new HashSet<>();
+    final Set<Dependency> filtered = new LinkedHashSet<>();
+    for (int node : graph.definitionOrder()) {
+      final MavenCoordinate mavenCoordinate = graph.coordinate(node);
+      final MavenCoordinate entry =
+          MavenCoordinate.create(
+              mavenCoordinate.groupId(),
+              mavenCoordinate.artifactId(),
+              mavenCoordinate.version(),
+              "");
+      if (pinnedDeps.add(entry)) {
+        filtered.add(graph.toDependency(graph.attributes(node), node, IntUnaryOperator.identity()));
+      }
     }
+    return filtered;
   }
 }
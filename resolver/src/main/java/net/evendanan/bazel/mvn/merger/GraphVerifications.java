@@ -2,129 +2,144 @@ package net.evendanan.bazel.mvn.merger;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import net.evendanan.bazel.mvn.api.DependencyTools;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 import net.evendanan.bazel.mvn.api.model.Resolution;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Triple;
 
 public final class GraphVerifications {
   private GraphVerifications() {}
 
-  public static void checkNoConflictingVersions(final Collection<Dependency> dependencies) {
-    final Function<Dependency, String> dependencyKey =
-        dependency ->
-            String.format(
-                Locale.US,
-                "%s:%s",
-                dependency.mavenCoordinate().groupId(),
-                dependency.mavenCoordinate().artifactId());
-    final Map<String, String> pinnedVersions = new HashMap<>();
-
-    dependencies.forEach(
-        dependency -> {
-          final String pinnedVersion =
-              pinnedVersions.putIfAbsent(
-                  dependencyKey.apply(dependency), dependency.mavenCoordinate().version());
-          if (pinnedVersion != null
-              && !pinnedVersion.equals(dependency.mavenCoordinate().version())) {
-            throw new InvalidGraphException(
-                "NoConflictingVersions",
-                dependency.mavenCoordinate(),
-                "Pinned to "
-                    + pinnedVersion
-                    + " but needed "
-                    + dependency.mavenCoordinate().version());
-          }
-        });
-  }
-
-  public static void checkAllGraphDependenciesAreResolved(Resolution resolution) {
-    Set<MavenCoordinate> resolved = new HashSet<>();
-    resolution.allResolvedDependencies().forEach(dep -> resolved.add(dep.mavenCoordinate()));
-
-    GraphUtils.dfsTraveller(
-        Collections.singleton(resolution),
-        (dependency, level) -> {
-          if (!resolved.contains(dependency.mavenCoordinate()))
-            throw new GraphVerifications.InvalidGraphException(
-                "AllGraphDependenciesAreResolved", dependency.mavenCoordinate());
-        });
+  /**
+   * Verifies each resolution, in parallel, using {@link #verifyResolution}.
+   *
+   * @return all the violations, in the order of the resolutions.
+   */
+  public static List<InvalidGraphException> verifyResolutions(Collection<Resolution> resolutions) {
+    return resolutions.parallelStream()
+        .map(GraphVerifications::verifyResolution)
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
   }
 
-  public static void checkGraphDoesNotHaveDanglingDependencies(Resolution resolution) {
-    Set<MavenCoordinate> resolved = new HashSet<>();
-    resolution.allResolvedDependencies().forEach(dep -> resolved.add(dep.mavenCoordinate()));
-
-    GraphUtils.dfsTraveller(
-        Collections.singleton(resolution),
-        (dependency, level) -> resolved.remove(dependency.mavenCoordinate()));
+  /**
+   * Verifies, in a single traversal, that the resolution's root was resolved successfully, that
+   * all the dependencies reachable from the root were resolved, and that all the resolved
+   * dependencies are reachable from the root.
+   *
+   * @return all the violations, or an empty list if the resolution is valid.
+   */
+  public static List<InvalidGraphException> verifyResolution(Resolution resolution) {
+    final List<InvalidGraphException> violations = new ArrayList<>();
+    final Map<MavenCoordinate, Dependency> index = new LinkedHashMap<>();
+    resolution.allResolvedDependencies().forEach(d -> index.putIfAbsent(d.mavenCoordinate(), d));
+
+    final MavenCoordinate root = resolution.rootDependency();
+    final Dependency rootDependency = index.get(root);
+    if (rootDependency == null || StringUtils.isBlank(rootDependency.url())) {
+      violations.add(new InvalidGraphException("Failed to resolve requested coordinate", root));
+    }
+    if (rootDependency == null) {
+      violations.add(new InvalidGraphException("AllGraphDependenciesAreResolved", root));
+      return violations;
+    }
 
-    if (!resolved.isEmpty()) {
-      throw new GraphVerifications.InvalidGraphException(
-          "GraphDoesNotHaveDanglingDependencies", new ArrayList<>(resolved).get(0));
+    final Set<MavenCoordinate> visited = new HashSet<>();
+    final Deque<Dependency> toVisit = new ArrayDeque<>();
+    visited.add(root);
+    toVisit.push(rootDependency);
+    while (!toVisit.isEmpty()) {
+      final Dependency dependency = toVisit.pop();
+      Stream.concat(
+              Stream.concat(dependency.dependencies().stream(), dependency.exports().stream()),
+              dependency.runtimeDependencies().stream())
+          .filter(visited::add)
+          .forEach(
+              child -> {
+                final Dependency childDependency = index.get(child);
+                if (childDependency == null) {
+                  violations.add(
+                      new InvalidGraphException("AllGraphDependenciesAreResolved", child));
+                } else {
+                  toVisit.push(childDependency);
+                }
+              });
     }
-  }
 
-  public static void checkAllDependenciesAreResolved(Collection<Dependency> dependencies) {
-    Set<MavenCoordinate> resolved = new HashSet<>();
-    dependencies.forEach(dep -> resolved.add(dep.mavenCoordinate()));
-
-    Optional<MavenCoordinate> first =
-        dependencies.stream()
-            .map(
-                dependency ->
-                    Triple.of(
-                        dependency.dependencies().stream(),
-                        dependency.exports().stream(),
-                        dependency.runtimeDependencies().stream()))
-            .flatMap(
-                triple ->
-                    Stream.concat(
-                        Stream.concat(triple.getLeft(), triple.getMiddle()), triple.getRight()))
-            .filter(mvn -> !resolved.contains(mvn))
-            .findFirst();
-
-    first.ifPresent(
-        mvn -> {
-          throw new GraphVerifications.InvalidGraphException("AllDependenciesAreResolved", mvn);
-        });
+    index.keySet().stream()
+        .filter(mvn -> !visited.contains(mvn))
+        .forEach(
+            mvn ->
+                violations.add(
+                    new InvalidGraphException("GraphDoesNotHaveDanglingDependencies", mvn)));
+    return violations;
   }
 
-  public static void checkNoRepeatingDependencies(Collection<Dependency> dependencies) {
-    Set<MavenCoordinate> seen = new HashSet<>();
+  /**
+   * Verifies, in a single pass, that the merged graph does not have repeating dependencies nor
+   * conflicting versions, and that all the dependencies it refers to were resolved.
+   *
+   * @return all the violations, or an empty list if the graph is valid.
+   */
+  public static List<InvalidGraphException> verifyMergedGraph(Collection<Dependency> dependencies) {
+    final List<InvalidGraphException> violations = new ArrayList<>();
+    final Set<MavenCoordinate> resolved = new HashSet<>();
+    final Map<String, String> pinnedVersions = new HashMap<>();
+    final Set<MavenCoordinate> referenced = new LinkedHashSet<>();
+
+    for (Dependency dependency : dependencies) {
+      final MavenCoordinate mavenCoordinate = dependency.mavenCoordinate();
+      if (!resolved.add(mavenCoordinate)) {
+        violations.add(new InvalidGraphException("NoRepeatingDependencies", mavenCoordinate));
+      }
+      final String pinnedVersion =
+          pinnedVersions.putIfAbsent(
+              mavenCoordinate.groupId() + ":" + mavenCoordinate.artifactId(),
+              mavenCoordinate.version());
+      if (pinnedVersion != null && !pinnedVersion.equals(mavenCoordinate.version())) {
+        violations.add(
+            new InvalidGraphException(
+                "NoConflictingVersions",
+                mavenCoordinate,
+                "Pinned to " + pinnedVersion + " but needed " + mavenCoordinate.version()));
+      }
+      referenced.addAll(dependency.dependencies());
+      referenced.addAll(dependency.exports());
+      referenced.addAll(dependency.runtimeDependencies());
+    }
 
-    dependencies.forEach(
-        resolved -> {
-          if (!seen.add(resolved.mavenCoordinate())) {
-            throw new GraphVerifications.InvalidGraphException(
-                "NoRepeatingDependencies", resolved.mavenCoordinate());
-          }
-        });
+    referenced.stream()
+        .filter(mvn -> !resolved.contains(mvn))
+        .forEach(
+            mvn -> violations.add(new InvalidGraphException("AllDependenciesAreResolved", mvn)));
+    return violations;
   }
 
-  public static void checkResolutionSuccess(Resolution resolution) {
-    Dependency resolvedRoot =
-        resolution.allResolvedDependencies().stream()
-            .filter(d -> d.mavenCoordinate().equals(resolution.rootDependency()))
-            .filter(d -> !StringUtils.isBlank(d.url()))
-            .findFirst()
-            .orElseThrow(
-                () ->
-                    new InvalidGraphException(
-                        "Failed to resolve requested coordinate", resolution.rootDependency()));
+  /**
+   * Throws the first violation, if there are any. The rest of the violations are added to it as
+   * suppressed exceptions, so all of them are reported.
+   */
+  public static void throwIfInvalid(List<InvalidGraphException> violations) {
+    if (violations.isEmpty()) return;
+
+    final InvalidGraphException first = violations.get(0);
+    violations.subList(1, violations.size()).forEach(first::addSuppressed);
+    throw first;
   }
 
   public static class InvalidGraphException extends RuntimeException {
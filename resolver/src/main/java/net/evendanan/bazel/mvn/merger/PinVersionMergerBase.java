@@ -1,12 +1,10 @@
 package net.evendanan.bazel.mvn.merger;
 
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
 import net.evendanan.bazel.mvn.api.GraphMerger;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
@@ -15,44 +13,46 @@ import net.evendanan.bazel.mvn.api.model.Resolution;
 public abstract class PinVersionMergerBase implements GraphMerger {
 
   static String dependencyKey(MavenCoordinate mavenCoordinate) {
-    return String.format(
-        Locale.ROOT, "%s:%s", mavenCoordinate.groupId(), mavenCoordinate.artifactId());
+    return mavenCoordinate.groupId() + ":" + mavenCoordinate.artifactId();
   }
 
   @Override
   public Collection<Dependency> mergeGraphs(final Collection<Resolution> resolutions) {
-    Map<String, Dependency> pinnedVersions = new HashMap<>();
-
-    GraphUtils.dfsTraveller(
-        resolutions,
-        (dependency, level) ->
-            pinnedVersions.compute(
-                dependencyKey(dependency.mavenCoordinate()),
-                (key, previousDependency) -> pickDependency(previousDependency, dependency)));
-
-    Function<Collection<MavenCoordinate>, Collection<MavenCoordinate>> convertDependencies =
-        dependencies ->
-            dependencies.stream()
-                .map(
-                    mvn ->
-                        Preconditions.checkNotNull(pinnedVersions.get(dependencyKey(mvn)))
-                            .mavenCoordinate())
-                .distinct()
-                .collect(Collectors.toList());
-
-    return resolutions.stream()
-        .map(Resolution::allResolvedDependencies)
-        .flatMap(Collection::stream)
-        .map(original -> pinnedVersions.get(dependencyKey(original.mavenCoordinate())))
-        .map(
-            original ->
-                Dependency.builder(original)
-                    .dependencies(convertDependencies.apply(original.dependencies()))
-                    .exports(convertDependencies.apply(original.exports()))
-                    .runtimeDependencies(convertDependencies.apply(original.runtimeDependencies()))
-                    .build())
-        .distinct()
-        .collect(Collectors.toList());
+    final CompactGraph graph = CompactGraph.ofResolutions(resolutions);
+    // indexed by key-id (groupId:artifactId)
+    final Dependency[] pinnedVersions = new Dependency[graph.keysCount()];
+
+    graph.dfs(
+        (node, level) -> {
+          final int key = graph.key(node);
+          pinnedVersions[key] = pickDependency(pinnedVersions[key], graph.attributes(node));
+        });
+
+    final int[] pinnedNodes = new int[pinnedVersions.length];
+    for (int key = 0; key < pinnedVersions.length; key++) {
+      pinnedNodes[key] =
+          pinnedVersions[key] == null ? -1 : graph.nodeId(pinnedVersions[key].mavenCoordinate());
+    }
+    final IntUnaryOperator toPinnedNode =
+        node -> {
+          final int key = graph.key(node);
+          Preconditions.checkNotNull(
+              pinnedVersions[key], "Can not find a pinned version for %s", graph.coordinate(node));
+          return pinnedNodes[key];
+        };
+
+    final boolean[] merged = new boolean[pinnedVersions.length];
+    final List<Dependency> mergedDependencies = new ArrayList<>();
+    for (int node : graph.definitionOrder()) {
+      final int key = graph.key(node);
+      if (merged[key]) continue;
+      merged[key] = true;
+
+      mergedDependencies.add(
+          graph.toDependency(
+              Preconditions.checkNotNull(pinnedVersions[key]), pinnedNodes[key], toPinnedNode));
+    }
+    return mergedDependencies;
   }
 
   protected abstract Dependency pickDependency(
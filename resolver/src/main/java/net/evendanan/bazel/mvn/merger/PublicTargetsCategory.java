@@ -1,12 +1,9 @@
 package net.evendanan.bazel.mvn.merger;
 
-import java.util.ArrayDeque;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import net.evendanan.bazel.mvn.api.Target;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
@@ -35,18 +32,18 @@ public class PublicTargetsCategory {
     requested_deps
   }
 
-  private static class RequestedDeps implements Function<Target, Target> {
+  /** Makes public only the targets of the given Maven coordinates (which were public before). */
+  private abstract static class PublicCoordinates implements Function<Target, Target> {
 
-    private final Set<String> mRootMvn;
+    private final Set<String> mPublicMvn = new HashSet<>();
 
-    RequestedDeps(Collection<MavenCoordinate> rootDependencies) {
-      mRootMvn =
-          rootDependencies.stream().map(MavenCoordinate::toMavenString).collect(Collectors.toSet());
+    protected void addPublic(MavenCoordinate mavenCoordinate) {
+      mPublicMvn.add(mavenCoordinate.toMavenString());
     }
 
     @Override
     public Target apply(Target target) {
-      if (target.isPublic() && mRootMvn.contains(target.getMavenCoordinates())) {
+      if (target.isPublic() && mPublicMvn.contains(target.getMavenCoordinates())) {
         target.setPublicVisibility();
       } else {
         target.setPrivateVisibility();
@@ -55,35 +52,46 @@ public class PublicTargetsCategory {
     }
   }
 
-  private static class RecursiveExports implements Function<Target, Target> {
-    private final Set<String> mExported = new HashSet<>();
+  private static class RequestedDeps extends PublicCoordinates {
+
+    RequestedDeps(Collection<MavenCoordinate> rootDependencies) {
+      rootDependencies.forEach(this::addPublic);
+    }
+  }
+
+  private static class RecursiveExports extends PublicCoordinates {
 
     RecursiveExports(
         Collection<MavenCoordinate> rootDependencies, Collection<Dependency> resolvedDependencies) {
-      Deque<MavenCoordinate> coordinatesToLookFor = new ArrayDeque<>(rootDependencies);
-      while (!coordinatesToLookFor.isEmpty()) {
-        MavenCoordinate mavenCoordinate = coordinatesToLookFor.pop();
-        mExported.add(mavenCoordinate.toMavenString());
-        Dependency dependency =
-            resolvedDependencies.stream()
-                .filter(d -> d.mavenCoordinate().equals(mavenCoordinate))
-                .findFirst()
-                .orElseThrow(
-                    () ->
-                        new IllegalStateException(
-                            "Failed to a resolved-dependency for " + mavenCoordinate));
-        coordinatesToLookFor.addAll(dependency.exports());
+      final CompactGraph graph = CompactGraph.ofDependencies(resolvedDependencies);
+      final boolean[] visited = new boolean[graph.nodesCount()];
+      final int[] nodesToLookFor = new int[graph.nodesCount()];
+      int nodesToLookForCount = 0;
+      for (MavenCoordinate root : rootDependencies) {
+        final int node = graph.nodeId(root);
+        if (node < 0) {
+          throw new IllegalStateException("Failed to a resolved-dependency for " + root);
+        }
+        if (!visited[node]) {
+          visited[node] = true;
+          nodesToLookFor[nodesToLookForCount++] = node;
+        }
       }
-    }
 
-    @Override
-    public Target apply(Target target) {
-      if (target.isPublic() && mExported.contains(target.getMavenCoordinates())) {
-        target.setPublicVisibility();
-      } else {
-        target.setPrivateVisibility();
+      while (nodesToLookForCount > 0) {
+        final int node = nodesToLookFor[--nodesToLookForCount];
+        addPublic(graph.coordinate(node));
+        if (!graph.isDefined(node)) {
+          throw new IllegalStateException(
+              "Failed to a resolved-dependency for " + graph.coordinate(node));
+        }
+        for (int export : graph.exports(node)) {
+          if (!visited[export]) {
+            visited[export] = true;
+            nodesToLookFor[nodesToLookForCount++] = export;
+          }
+        }
       }
-      return target;
     }
   }
 }
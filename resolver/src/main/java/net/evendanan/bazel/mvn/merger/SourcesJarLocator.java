@@ -2,31 +2,39 @@ package net.evendanan.bazel.mvn.merger;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import net.evendanan.bazel.mvn.api.DependencyTools;
 import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.NegativeLookupCache;
 
 public class SourcesJarLocator {
 
   private static final String SOURCES_CLASSIFIER = "sources";
 
-  private final ConnectionFactory mConnectionFactory;
+  private final HeadRequester mHeadRequester;
   private final Map<String, String> mURLCache = new HashMap<>();
 
-  public SourcesJarLocator() {
-    this(url -> (HttpURLConnection) url.openConnection());
+  public SourcesJarLocator(final HttpTransport transport) {
+    this(transport::head);
+  }
+
+  /** Sources JARs which are known to be missing (in the negative cache) are not requested. */
+  public SourcesJarLocator(
+      final HttpTransport transport, final NegativeLookupCache negativeLookupCache) {
+    this(url -> negativeLookupCache.head(url, transport::head));
   }
 
   @VisibleForTesting
-  SourcesJarLocator(final ConnectionFactory opener) {
-    mConnectionFactory = opener;
+  SourcesJarLocator(final HeadRequester headRequester) {
+    mHeadRequester = headRequester;
   }
 
   private static Collection<Dependency> fillSourcesAttribute(
@@ -35,7 +43,16 @@ public class SourcesJarLocator {
   }
 
   public Collection<Dependency> fillSourcesAttribute(Collection<Dependency> dependencies) {
-    return fillSourcesAttribute(dependencies, new DependencyMemoizator());
+    return fillSourcesAttribute(dependencies, dependency -> null);
+  }
+
+  /**
+   * @param knownSourcesUrl returns the already known sources URL of a dependency (empty if it has
+   *     none), or null if it is not known and should be located.
+   */
+  public Collection<Dependency> fillSourcesAttribute(
+      Collection<Dependency> dependencies, Function<Dependency, String> knownSourcesUrl) {
+    return fillSourcesAttribute(dependencies, new DependencyMemoizator(knownSourcesUrl));
   }
 
   private String uriWithClassifier(final String uri) {
@@ -56,9 +73,7 @@ public class SourcesJarLocator {
             String.format(
                 Locale.US, "%s-%s.jar", url.substring(0, extStartIndex), SOURCES_CLASSIFIER);
         final URL classifiedUrl = new URL(urlWithClassifier);
-        HttpURLConnection con = mConnectionFactory.openUrlConnection(classifiedUrl);
-        con.setRequestMethod("HEAD");
-        final int responseCode = con.getResponseCode();
+        final int responseCode = mHeadRequester.requestHead(classifiedUrl);
         if (responseCode >= 200 && responseCode < 300) {
           return classifiedUrl.toString();
         } else {
@@ -72,18 +87,27 @@ public class SourcesJarLocator {
     }
   }
 
-  interface ConnectionFactory {
-    HttpURLConnection openUrlConnection(URL url) throws IOException;
+  interface HeadRequester {
+    /** Issues a HEAD request to the given URL, and returns the response code. */
+    int requestHead(URL url) throws IOException;
   }
 
   private class DependencyMemoizator extends GraphMemoizator<Dependency> {
 
     private final DependencyTools mDependencyTools = new DependencyTools();
+    private final Function<Dependency, String> mKnownSourcesUrl;
+
+    private DependencyMemoizator(Function<Dependency, String> knownSourcesUrl) {
+      mKnownSourcesUrl = knownSourcesUrl;
+    }
 
     @Nonnull
     @Override
     protected Dependency calculate(@Nonnull final Dependency original) {
-      return Dependency.builder(original).sourcesUrl(uriWithClassifier(original.url())).build();
+      final String knownSourcesUrl = mKnownSourcesUrl.apply(original);
+      return Dependency.builder(original)
+          .sourcesUrl(knownSourcesUrl != null ? knownSourcesUrl : uriWithClassifier(original.url()))
+          .build();
     }
 
     @Override
@@ -1,11 +1,10 @@
 package net.evendanan.bazel.mvn.merger;
 
 import java.util.Collection;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 import net.evendanan.bazel.mvn.api.model.Resolution;
 
@@ -19,48 +18,114 @@ public class TestOnlyMarker {
             .map(TestOnlyMarker::strippedDownCoord)
             .collect(Collectors.toSet());
 
-    resolutions.forEach(
-        resolution -> {
-          if (isTestOnlySubTree(
-                  marked, resolution.allResolvedDependencies(), resolution.rootDependency())
-              && !initialTestOnlyMap.contains(resolution.rootDependency())) {
-            throw new GraphVerifications.InvalidGraphException(
-                "TestOnlyMarker",
-                resolution.rootDependency(),
-                "Dependency has test-only dependencies but is not a test-only artifact!");
-          }
-        });
-    return c -> marked.contains(strippedDownCoord(c));
-  }
+    for (Resolution resolution : resolutions) {
+      // each resolution is traveled with its own definitions, since they may differ between
+      // resolutions (for example, by the root's exclusions)
+      final CompactGraph graph = CompactGraph.ofResolution(resolution);
+      // test-only is marked per groupId:artifactId, so it is indexed by key-id
+      final boolean[] resolutionMarked = new boolean[graph.keysCount()];
+      for (int node = 0; node < graph.nodesCount(); node++) {
+        if (marked.contains(strippedDownCoord(graph.coordinate(node)))) {
+          resolutionMarked[graph.key(node)] = true;
+        }
+      }
 
-  private static boolean isTestOnlySubTree(
-      Set<MavenCoordinate> marked,
-      Collection<Dependency> allResolvedDependencies,
-      MavenCoordinate current) {
-    final Dependency dependency =
-        allResolvedDependencies.stream()
-            .filter(d -> d.mavenCoordinate().equals(current))
-            .findFirst()
-            .get();
-    /*NOTE: we have to go over the entire list, so the subtrees will be marked as wall*/
-    final AtomicBoolean foundTestOnly = new AtomicBoolean(false);
-    dependency
-        .dependencies()
-        .forEach(
-            child -> {
-              if (isTestOnlySubTree(marked, allResolvedDependencies, child))
-                foundTestOnly.set(true);
-            });
-
-    if (foundTestOnly.get()) {
-      marked.add(strippedDownCoord(current));
-      return true;
-    } else {
-      return marked.contains(strippedDownCoord(current));
+      final boolean testOnlyRoot =
+          new SubTreeMarker(graph, resolutionMarked).isTestOnlySubTree(graph.roots()[0]);
+      for (int node = 0; node < graph.nodesCount(); node++) {
+        if (resolutionMarked[graph.key(node)]) {
+          marked.add(strippedDownCoord(graph.coordinate(node)));
+        }
+      }
+      if (testOnlyRoot && !initialTestOnlyMap.contains(resolution.rootDependency())) {
+        throw new GraphVerifications.InvalidGraphException(
+            "TestOnlyMarker",
+            resolution.rootDependency(),
+            "Dependency has test-only dependencies but is not a test-only artifact!");
+      }
     }
+    return c -> marked.contains(strippedDownCoord(c));
   }
 
   private static MavenCoordinate strippedDownCoord(MavenCoordinate coordinate) {
     return MavenCoordinate.create(coordinate.groupId(), coordinate.artifactId(), "", "");
   }
+
+  /**
+   * A dependency is test-only if it was marked as such, or if any of its dependencies is
+   * test-only. In the latter case, it is also marked. Each dependency of the resolution is
+   * calculated once, in post-order, no matter how many paths lead to it.
+   */
+  private static class SubTreeMarker {
+    private final CompactGraph graph;
+    private final boolean[] marked;
+    private final boolean[] calculated;
+    private final boolean[] testOnlySubTrees;
+    private final boolean[] onPath;
+    // not recursive, so deep graphs will not overflow the stack
+    private final int[] pathNodes;
+    private final int[] pathNextChild;
+    private final boolean[] pathFoundTestOnly;
+
+    private SubTreeMarker(CompactGraph graph, boolean[] marked) {
+      this.graph = graph;
+      this.marked = marked;
+      final int nodesCount = graph.nodesCount();
+      this.calculated = new boolean[nodesCount];
+      this.testOnlySubTrees = new boolean[nodesCount];
+      this.onPath = new boolean[nodesCount];
+      this.pathNodes = new int[nodesCount];
+      this.pathNextChild = new int[nodesCount];
+      this.pathFoundTestOnly = new boolean[nodesCount];
+    }
+
+    private boolean isTestOnlySubTree(int root) {
+      int depth = 0;
+      push(root, depth++);
+
+      boolean lastResult = false;
+      while (depth > 0) {
+        final int current = pathNodes[depth - 1];
+        final int[] children = graph.dependencies(current);
+        if (pathNextChild[depth - 1] < children.length) {
+          final int child = children[pathNextChild[depth - 1]++];
+          if (calculated[child]) {
+            // another version of the child's key may have been marked since it was calculated
+            pathFoundTestOnly[depth - 1] |= testOnlySubTrees[child] || marked[graph.key(child)];
+          } else if (onPath[child]) {
+            // a cycle: the child's sub-tree is still being calculated
+            pathFoundTestOnly[depth - 1] |= marked[graph.key(child)];
+          } else {
+            push(child, depth++);
+          }
+        } else {
+          depth--;
+          onPath[current] = false;
+          /*NOTE: we have to go over the entire list, so the subtrees will be marked as well*/
+          if (pathFoundTestOnly[depth]) {
+            marked[graph.key(current)] = true;
+            lastResult = true;
+          } else {
+            lastResult = marked[graph.key(current)];
+          }
+          calculated[current] = true;
+          testOnlySubTrees[current] = lastResult;
+          if (depth > 0) {
+            pathFoundTestOnly[depth - 1] |= lastResult;
+          }
+        }
+      }
+      return lastResult;
+    }
+
+    private void push(int node, int depth) {
+      if (!graph.isDefined(node)) {
+        throw new NoSuchElementException("Can not find mapping for " + graph.coordinate(node));
+      }
+      pathNodes[depth] = node;
+      pathNextChild[depth] = 0;
+      pathFoundTestOnly[depth] = false;
+      onPath[node] = true;
+    }
+  }
 }
@@ -1,12 +1,24 @@
 package net.evendanan.bazel.mvn.merger;
 
 import java.util.Comparator;
+import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares Maven version strings, segment by segment. A segment's number is compared first, then
+ * its qualifier: a release (no qualifier) is later than any qualifier, except SNAPSHOT, which is
+ * later than anything. Otherwise, qualifiers are compared lexicographically.
+ *
+ * <p>Each distinct version string is parsed once into a {@link VersionKey}, which is kept for the
+ * lifetime of this comparator.
+ */
 public class VersionComparator implements Comparator<String> {
-  private final Pattern mSubVersionPattern = Pattern.compile("(\\d+)[-]*(.*)");
+  private final Map<String, VersionKey> mVersionKeys = new ConcurrentHashMap<>();
+
+  VersionKey getVersionKey(String version) {
+    return mVersionKeys.computeIfAbsent(version, VersionKey::parse);
+  }
 
   @Override
   public int compare(String version1, String version2) {
@@ -21,45 +33,17 @@ public class VersionComparator implements Comparator<String> {
     if (version1 == null || version1.equals("")) return -1;
     if (version2 == null || version2.equals("")) return 1;
 
-    final String[] version1Split = version1.split("\\.", -1);
-    final String[] version2Split = version2.split("\\.", -1);
+    final VersionKey key1 = getVersionKey(version1);
+    final VersionKey key2 = getVersionKey(version2);
 
-    final int minIndex = Math.min(version1Split.length, version2Split.length);
+    final int minIndex = Math.min(key1.segmentsCount(), key2.segmentsCount());
     for (int splitIndex = 0; splitIndex < minIndex; splitIndex++) {
-      final int subDiff = subVersionDiff(version1Split[splitIndex], version2Split[splitIndex]);
+      final int subDiff = VersionKey.compareSegment(key1, key2, splitIndex);
       if (subDiff != 0) return subDiff;
     }
 
     // all minimum sub versions are equal. Longest version wins in this case.
     // 2.3 < 2.3.1
-    return version1Split.length < version2Split.length ? -1 : 1;
-  }
-
-  private int subVersionDiff(String subVersion1, String subVersion2) {
-    Matcher matcher1 = mSubVersionPattern.matcher(subVersion1);
-    Matcher matcher2 = mSubVersionPattern.matcher(subVersion2);
-
-    if (matcher1.find() && matcher2.find()) {
-      final int number1 = Integer.parseInt(matcher1.group(1));
-      final int number2 = Integer.parseInt(matcher2.group(1));
-      if (number1 > number2) return 1;
-      if (number1 < number2) return -1;
-
-      String lexi1 = matcher1.group(2);
-      String lexi2 = matcher2.group(2);
-      if (lexi1.equals(lexi2)) return 0;
-      // if either has no text part, then it's the final version
-      if (lexi1.equals("")) return 1;
-      if (lexi2.equals("")) return -1;
-
-      // SNAPSHOT is really powerful.
-      if (lexi1.equals("SNAPSHOT")) return 1;
-      if (lexi2.equals("SNAPSHOT")) return -1;
-
-      // just lexicographical diff.
-      return Integer.compare(lexi1.compareTo(lexi2), 0);
-    }
-
-    return 0;
+    return key1.segmentsCount() < key2.segmentsCount() ? -1 : 1;
   }
 }
@@ -0,0 +1,92 @@
+package net.evendanan.bazel.mvn.merger;
+
+/**
+ * A parsed, immutable, version string. Each dot-separated segment is parsed once into its number
+ * (the first run of digits in the segment) and its qualifier (whatever follows that number,
+ * without leading dashes), so comparing two keys does not allocate anything.
+ *
+ * <p>The comparison rules are described in {@link VersionComparator}.
+ */
+final class VersionKey {
+
+  // false if the segment does not have any digits. Such a segment is equal to any other segment.
+  private final boolean[] hasNumber;
+  private final long[] numbers;
+  private final String[] qualifiers;
+
+  private VersionKey(boolean[] hasNumber, long[] numbers, String[] qualifiers) {
+    this.hasNumber = hasNumber;
+    this.numbers = numbers;
+    this.qualifiers = qualifiers;
+  }
+
+  static VersionKey parse(String version) {
+    int segmentsCount = 1;
+    for (int index = 0; index < version.length(); index++) {
+      if (version.charAt(index) == '.') segmentsCount++;
+    }
+
+    final boolean[] hasNumber = new boolean[segmentsCount];
+    final long[] numbers = new long[segmentsCount];
+    final String[] qualifiers = new String[segmentsCount];
+    int segmentStart = 0;
+    for (int segment = 0; segment < segmentsCount; segment++) {
+      int segmentEnd = version.indexOf('.', segmentStart);
+      if (segmentEnd < 0) segmentEnd = version.length();
+
+      int digitsStart = segmentStart;
+      while (digitsStart < segmentEnd && !isDigit(version.charAt(digitsStart))) digitsStart++;
+      if (digitsStart < segmentEnd) {
+        hasNumber[segment] = true;
+        int digitsEnd = digitsStart;
+        long number = 0;
+        while (digitsEnd < segmentEnd && isDigit(version.charAt(digitsEnd))) {
+          // saturating, so huge numbers (timestamps, for example) do not overflow
+          final int digit = version.charAt(digitsEnd) - '0';
+          number = number > (Long.MAX_VALUE - digit) / 10 ? Long.MAX_VALUE : number * 10 + digit;
+          digitsEnd++;
+        }
+        numbers[segment] = number;
+
+        int qualifierStart = digitsEnd;
+        while (qualifierStart < segmentEnd && version.charAt(qualifierStart) == '-') {
+          qualifierStart++;
+        }
+        qualifiers[segment] = version.substring(qualifierStart, segmentEnd);
+      }
+      segmentStart = segmentEnd + 1;
+    }
+
+    return new VersionKey(hasNumber, numbers, qualifiers);
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  int segmentsCount() {
+    return numbers.length;
+  }
+
+  /** Compares the segment at the given index of both keys. Both must have that segment. */
+  static int compareSegment(VersionKey key1, VersionKey key2, int segment) {
+    if (!key1.hasNumber[segment] || !key2.hasNumber[segment]) return 0;
+
+    final int numbersDiff = Long.compare(key1.numbers[segment], key2.numbers[segment]);
+    if (numbersDiff != 0) return numbersDiff;
+
+    final String qualifier1 = key1.qualifiers[segment];
+    final String qualifier2 = key2.qualifiers[segment];
+    if (qualifier1.equals(qualifier2)) return 0;
+    // if either has no text part, then it's the final version
+    if (qualifier1.isEmpty()) return 1;
+    if (qualifier2.isEmpty()) return -1;
+
+    // SNAPSHOT is really powerful.
+    if (qualifier1.equals("SNAPSHOT")) return 1;
+    if (qualifier2.equals("SNAPSHOT")) return -1;
+
+    // just lexicographical diff.
+    return Integer.compare(qualifier1.compareTo(qualifier2), 0);
+  }
+}
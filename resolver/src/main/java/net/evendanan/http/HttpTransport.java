@@ -0,0 +1,429 @@
+package net.evendanan.http;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * A single HTTP client shared by everything that talks to remote repositories. All requests go
+ * through one pooled {@link HttpClient}, so connections (and their TLS sessions) are reused and
+ * HTTP/2 is negotiated where the server supports it. The number of concurrent requests to a single
+ * host is capped, so parallel callers do not overwhelm a repository.
+ *
+ * <p>{@code file://} URLs are read straight from the disk (with plain existence checks and
+ * memory-mapped reads), and other URLs which are not http(s) are opened with {@link
+ * URL#openStream()}. An {@link #offline()} transport reads only those, and never touches the
+ * network.
+ */
+public class HttpTransport {
+
+  public static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 30;
+  public static final int DEFAULT_REQUEST_TIMEOUT_SECONDS = 60;
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+
+  // bytes <first>-<last>/<total>
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+  // null when offline
+  @Nullable private final HttpClient httpClient;
+  private final Duration requestTimeout;
+  private final int maxConnectionsPerHost;
+  private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+  public HttpTransport() {
+    this(
+        Duration.ofSeconds(DEFAULT_CONNECT_TIMEOUT_SECONDS),
+        Duration.ofSeconds(DEFAULT_REQUEST_TIMEOUT_SECONDS),
+        DEFAULT_MAX_CONNECTIONS_PER_HOST);
+  }
+
+  /**
+   * @param connectTimeout how long to wait for a connection to be established.
+   * @param requestTimeout how long to wait for the response headers of a single request.
+   * @param maxConnectionsPerHost how many requests may be in flight to a single host at once.
+   */
+  public HttpTransport(
+      Duration connectTimeout, Duration requestTimeout, int maxConnectionsPerHost) {
+    this(
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .proxy(ProxySelector.getDefault())
+            .connectTimeout(connectTimeout)
+            .build(),
+        requestTimeout,
+        maxConnectionsPerHost);
+  }
+
+  private HttpTransport(
+      @Nullable HttpClient httpClient, Duration requestTimeout, int maxConnectionsPerHost) {
+    if (maxConnectionsPerHost < 1) {
+      throw new IllegalArgumentException("maxConnectionsPerHost must be at least 1");
+    }
+    this.httpClient = httpClient;
+    this.requestTimeout = requestTimeout;
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+  /**
+   * A transport which does not have a network stack at all: local URLs (for example, a {@code
+   * file://} repository) are read as usual, and any http(s) request fails with an {@link
+   * IOException}.
+   */
+  public static HttpTransport offline() {
+    return new HttpTransport(
+        (HttpClient) null,
+        Duration.ofSeconds(DEFAULT_REQUEST_TIMEOUT_SECONDS),
+        DEFAULT_MAX_CONNECTIONS_PER_HOST);
+  }
+
+  private static boolean isHttp(URL url) {
+    final String protocol = url.getProtocol().toLowerCase(Locale.ROOT);
+    return protocol.equals("http") || protocol.equals("https");
+  }
+
+  /** Returns true if the URL points to a local file, which is read without any network I/O. */
+  public static boolean isLocalFile(URL url) {
+    return url.getProtocol().equalsIgnoreCase("file");
+  }
+
+  private static Path toPath(URL url) throws IOException {
+    try {
+      return Paths.get(url.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException("Invalid file URL " + url, e);
+    }
+  }
+
+  private HttpClient httpClient(URL url) throws IOException {
+    if (httpClient == null) {
+      throw new IOException("Offline: will not fetch " + url);
+    }
+    return httpClient;
+  }
+
+  private static boolean isSuccessful(int statusCode) {
+    return statusCode >= 200 && statusCode < 300;
+  }
+
+  private static URI toUri(URL url) throws IOException {
+    try {
+      return url.toURI();
+    } catch (URISyntaxException e) {
+      throw new IOException("Invalid URL " + url, e);
+    }
+  }
+
+  /**
+   * Issues a HEAD request to the given URL.
+   *
+   * @return the response status code. For non-http URLs, 200 if the resource can be opened, and 404
+   *     otherwise.
+   */
+  public int head(URL url) throws IOException {
+    if (isLocalFile(url)) {
+      return Files.isRegularFile(toPath(url)) ? 200 : 404;
+    }
+    if (!isHttp(url)) {
+      try (InputStream ignored = url.openStream()) {
+        return 200;
+      } catch (FileNotFoundException e) {
+        return 404;
+      }
+    }
+
+    final HttpRequest request =
+        newRequest(url).method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+    return send(url, request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+  /**
+   * Fetches the content of the given URL with a single GET request.
+   *
+   * @return the content, or null if the server does not have this file (404 response).
+   * @throws IOException if the server responded with any other non-2xx status.
+   */
+  @Nullable
+  public byte[] get(URL url) throws IOException {
+    if (isLocalFile(url)) {
+      return readLocalFile(toPath(url));
+    }
+    if (!isHttp(url)) {
+      try (InputStream inputStream = url.openStream()) {
+        return inputStream.readAllBytes();
+      } catch (FileNotFoundException e) {
+        return null;
+      }
+    }
+
+    final HttpResponse<byte[]> response =
+        send(url, newRequest(url).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+    final int statusCode = response.statusCode();
+    if (statusCode == 404) {
+      return null;
+    } else if (!isSuccessful(statusCode)) {
+      throw new IOException(
+          String.format(
+              Locale.ROOT, "Server returned HTTP response code: %d for URL: %s", statusCode, url));
+    }
+    return response.body();
+  }
+
+  /**
+   * Opens a stream to the content of the given URL. The per-host permit is held until the returned
+   * stream is closed.
+   *
+   * @throws FileNotFoundException if the server responded with 404.
+   * @throws IOException if the server responded with any other non-2xx status.
+   */
+  public InputStream openStream(URL url) throws IOException {
+    if (isLocalFile(url)) {
+      try {
+        return Files.newInputStream(toPath(url));
+      } catch (NoSuchFileException e) {
+        throw new FileNotFoundException(url.toString());
+      }
+    }
+    if (!isHttp(url)) {
+      return url.openStream();
+    }
+
+    final Semaphore permits = acquirePermit(url);
+    final AtomicBoolean released = new AtomicBoolean(false);
+    final Runnable releasePermit =
+        () -> {
+          if (released.compareAndSet(false, true)) permits.release();
+        };
+    try {
+      final HttpResponse<InputStream> response =
+          httpClient(url)
+              .send(newRequest(url).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+      final int statusCode = response.statusCode();
+      if (!isSuccessful(statusCode)) {
+        response.body().close();
+        if (statusCode == 404) {
+          throw new FileNotFoundException(url.toString());
+        } else {
+          throw new IOException(
+              String.format(
+                  Locale.ROOT,
+                  "Server returned HTTP response code: %d for URL: %s",
+                  statusCode,
+                  url));
+        }
+      }
+      return new FilterInputStream(response.body()) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            releasePermit.run();
+          }
+        }
+      };
+    } catch (InterruptedException e) {
+      releasePermit.run();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching " + url);
+    } catch (IOException | RuntimeException e) {
+      releasePermit.run();
+      throw e;
+    }
+  }
+
+  /**
+   * Fetches {@code length} bytes of the content of the given URL, starting at {@code offset}, with
+   * a single ranged GET request.
+   *
+   * @return the range, or null if the server does not serve ranges of this file (or does not have
+   *     it at all). In that case, the response body is not read.
+   */
+  @Nullable
+  public Range getRange(URL url, long offset, int length) throws IOException {
+    if (offset < 0 || length < 1) {
+      throw new IllegalArgumentException("Invalid range " + offset + "+" + length);
+    }
+    return getRange(url, offset, length, "bytes=" + offset + "-" + (offset + length - 1));
+  }
+
+  /**
+   * Fetches the last {@code length} bytes of the content of the given URL (or all of it, if it is
+   * shorter), with a single ranged GET request.
+   *
+   * @return the range, or null if the server does not serve ranges of this file (or does not have
+   *     it at all). In that case, the response body is not read.
+   */
+  @Nullable
+  public Range getSuffixRange(URL url, int length) throws IOException {
+    if (length < 1) {
+      throw new IllegalArgumentException("Invalid suffix range " + length);
+    }
+    return getRange(url, -1, length, "bytes=-" + length);
+  }
+
+  // offset is -1 for a suffix range
+  @Nullable
+  private Range getRange(URL url, long offset, int length, String rangeHeader) throws IOException {
+    if (isLocalFile(url)) {
+      return readLocalFileRange(toPath(url), offset, length);
+    }
+    if (!isHttp(url)) {
+      return null;
+    }
+
+    final HttpRequest request = newRequest(url).header("Range", rangeHeader).GET().build();
+    final HttpClient client = httpClient(url);
+    // like openStream, the permit is held until the body was read
+    final Semaphore permits = acquirePermit(url);
+    try {
+      final HttpResponse<InputStream> response =
+          client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+      try (InputStream body = response.body()) {
+        return readRange(url, response, body, offset, length);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching " + url);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Nullable
+  private static Range readRange(
+      URL url, HttpResponse<?> response, InputStream body, long offset, int length)
+      throws IOException {
+    // anything but a partial response (for example, the whole file) is not read
+    if (response.statusCode() != 206) {
+      return null;
+    }
+    final Matcher contentRange =
+        CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+    if (!contentRange.matches()) {
+      return null;
+    }
+    final long first = Long.parseLong(contentRange.group(1));
+    final long last = Long.parseLong(contentRange.group(2));
+    if (last - first + 1 > length || (offset >= 0 && first != offset)) {
+      return null;
+    }
+    final byte[] content = body.readNBytes((int) (last - first + 1));
+    if (content.length != last - first + 1) {
+      throw new IOException("Partial response of " + url + " ended prematurely");
+    }
+    return new Range(first, Long.parseLong(contentRange.group(3)), content);
+  }
+
+  @Nullable
+  private static Range readLocalFileRange(Path path, long offset, int length) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      final long first = offset < 0 ? Math.max(0, size - length) : offset;
+      final ByteBuffer content =
+          ByteBuffer.allocate((int) Math.max(0, Math.min(length, size - first)));
+      while (content.hasRemaining()) {
+        if (channel.read(content, first + content.position()) < 0) {
+          throw new IOException("File " + path + " ended prematurely");
+        }
+      }
+      return new Range(first, size, content.array());
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /** Reads the file's content. Returns null if it does not exist. */
+  @Nullable
+  private static byte[] readLocalFile(Path path) throws IOException {
+    try {
+      return Files.readAllBytes(path);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  private HttpRequest.Builder newRequest(URL url) throws IOException {
+    return HttpRequest.newBuilder(toUri(url)).timeout(requestTimeout);
+  }
+
+  private <T> HttpResponse<T> send(
+      URL url, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+    final HttpClient client = httpClient(url);
+    final Semaphore permits = acquirePermit(url);
+    try {
+      return client.send(request, bodyHandler);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching " + url);
+    } finally {
+      permits.release();
+    }
+  }
+
+  private Semaphore acquirePermit(URL url) throws IOException {
+    final Semaphore permits =
+        hostPermits.computeIfAbsent(
+            url.getAuthority().toLowerCase(Locale.ROOT),
+            host -> new Semaphore(maxConnectionsPerHost));
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to fetch " + url);
+    }
+    return permits;
+  }
+
+  /** A part of the content of a URL. */
+  public static final class Range {
+    private final long offset;
+    private final long totalLength;
+    private final byte[] content;
+
+    private Range(long offset, long totalLength, byte[] content) {
+      this.offset = offset;
+      this.totalLength = totalLength;
+      this.content = content;
+    }
+
+    /** The position of the first byte of this range in the content. */
+    public long offset() {
+      return offset;
+    }
+
+    /** The length of the whole content. */
+    public long totalLength() {
+      return totalLength;
+    }
+
+    public byte[] content() {
+      return content;
+    }
+  }
+}
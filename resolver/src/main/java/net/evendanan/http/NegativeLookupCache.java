@@ -0,0 +1,142 @@
+package net.evendanan.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent, on-disk, cache of resources which are known to be missing (their server responded
+ * with 404). Asking for a known-missing resource again, before the entry expires, does not do any
+ * network I/O.
+ *
+ * <p>Each entry is a small marker file, keyed by the hash of the URL. The marker's modification
+ * time is when the resource was found missing, so several processes can share the same folder.
+ */
+public class NegativeLookupCache {
+
+  public static final int DEFAULT_TTL_HOURS = 24;
+
+  private final File cacheFolder;
+  private final long ttlMillis;
+  private final boolean bypass;
+
+  /**
+   * @param ttl for how long a resource is considered missing, before asking for it again.
+   * @param bypass if true, the cached entries are ignored (but fresh responses are still stored).
+   */
+  public NegativeLookupCache(File cacheFolder, Duration ttl, boolean bypass) {
+    this.cacheFolder = cacheFolder;
+    this.ttlMillis = ttl.toMillis();
+    this.bypass = bypass;
+  }
+
+  private static String hash(URL url) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of()
+          .formatHex(digest.digest(url.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  File getMarkerFile(URL url) {
+    final String hash = hash(url);
+    return cacheFolder.toPath().resolve(hash.substring(0, 2)).resolve(hash).toFile();
+  }
+
+  /** Returns true if the resource was found missing recently (within the TTL). */
+  public boolean isKnownMissing(URL url) {
+    if (bypass) return false;
+
+    final File marker = getMarkerFile(url);
+    // lastModified is zero if the file does not exist
+    final long missingSince = marker.lastModified();
+    return missingSince > 0 && System.currentTimeMillis() - missingSince < ttlMillis;
+  }
+
+  /** Records that the resource is missing, now. */
+  public void markMissing(URL url) {
+    final Path marker = getMarkerFile(url).toPath();
+    try {
+      Files.createDirectories(marker.getParent());
+      // the content is only there for debugging
+      Files.write(marker, url.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      // it is only a cache.
+      System.out.println("Failed to store " + url + " in the negative cache: " + e.getMessage());
+    }
+  }
+
+  /** Forgets that the resource was missing. */
+  public void markFound(URL url) {
+    try {
+      Files.deleteIfExists(getMarkerFile(url).toPath());
+    } catch (IOException e) {
+      System.out.println("Failed to remove " + url + " from the negative cache: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Issues a HEAD request, unless the resource is known to be missing, and records the response.
+   *
+   * <p>Local files are not cached, since checking them is as cheap as checking the cache.
+   *
+   * @return the response code. 404 if the resource is known to be missing.
+   */
+  public int head(URL url, HeadRequester requester) throws IOException {
+    if (HttpTransport.isLocalFile(url)) return requester.head(url);
+    if (isKnownMissing(url)) return 404;
+
+    final int responseCode = requester.head(url);
+    if (responseCode == 404) {
+      markMissing(url);
+    } else if (bypass && responseCode >= 200 && responseCode < 300) {
+      markFound(url);
+    }
+    return responseCode;
+  }
+
+  /**
+   * Issues a GET request, unless the resource is known to be missing, and records a missing
+   * resource.
+   *
+   * <p>Local files are not cached, since checking them is as cheap as checking the cache.
+   *
+   * @return the content, or null if the resource is missing (or known to be missing).
+   */
+  @Nullable
+  public byte[] get(URL url, GetRequester requester) throws IOException {
+    if (HttpTransport.isLocalFile(url)) return requester.get(url);
+    if (isKnownMissing(url)) return null;
+
+    final byte[] content = requester.get(url);
+    if (content == null) {
+      markMissing(url);
+    } else if (bypass) {
+      markFound(url);
+    }
+    return content;
+  }
+
+  public interface HeadRequester {
+    /** Issues a HEAD request to the given URL, and returns the response code. */
+    int head(URL url) throws IOException;
+  }
+
+  public interface GetRequester {
+    /**
+     * Issues a GET request to the given URL, and returns the content, or null if it is missing.
+     */
+    @Nullable
+    byte[] get(URL url) throws IOException;
+  }
+}
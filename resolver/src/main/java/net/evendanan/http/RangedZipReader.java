@@ -0,0 +1,207 @@
+package net.evendanan.http;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * Reads entries of a remote zip (jar, aar) without downloading all of it. The end-of-central-
+ * directory record is fetched with a suffix range request, then the central directory, and then
+ * only the byte ranges of the requested entries.
+ *
+ * <p>Only plain zip archives are supported: ZIP64 archives, and entries which are neither stored
+ * nor deflated, are not read, and callers should fall back to downloading the whole file.
+ */
+public class RangedZipReader {
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int CENTRAL_DIRECTORY_ENTRY_SIGNATURE = 0x02014b50;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final int CENTRAL_DIRECTORY_ENTRY_SIZE = 46;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  // the local extra field is usually the same as the central one, but may be padded
+  private static final int LOCAL_EXTRA_SLACK = 256;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private final HttpTransport transport;
+
+  public RangedZipReader(HttpTransport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * Reads the uncompressed content of every entry whose name matches {@code entryNameMatcher}, in
+   * the order of the central directory.
+   *
+   * @return the contents, or null if the server does not serve ranges of this file, or if the
+   *     archive can not be read this way.
+   */
+  @Nullable
+  public List<byte[]> readEntries(URL url, Predicate<String> entryNameMatcher) throws IOException {
+    final HttpTransport.Range tail =
+        transport.getSuffixRange(url, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+    if (tail == null) return null;
+
+    final ByteBuffer tailBuffer = littleEndian(tail.content());
+    final int endOfCentralDirectory = findEndOfCentralDirectory(tailBuffer);
+    if (endOfCentralDirectory < 0) return null;
+    final int entriesCount = unsignedShort(tailBuffer, endOfCentralDirectory + 10);
+    final long centralDirectorySize = unsignedInt(tailBuffer, endOfCentralDirectory + 12);
+    final long centralDirectoryOffset = unsignedInt(tailBuffer, endOfCentralDirectory + 16);
+    if (entriesCount == 0xFFFF
+        || centralDirectorySize == 0xFFFFFFFFL
+        || centralDirectoryOffset == 0xFFFFFFFFL
+        || centralDirectorySize > Integer.MAX_VALUE) {
+      // ZIP64
+      return null;
+    }
+
+    final ByteBuffer centralDirectory;
+    if (centralDirectoryOffset >= tail.offset()) {
+      // small archives: the central directory was fetched with the tail
+      final int start = (int) (centralDirectoryOffset - tail.offset());
+      if (start + centralDirectorySize > endOfCentralDirectory) return null;
+      centralDirectory =
+          littleEndian(
+              Arrays.copyOfRange(tail.content(), start, start + (int) centralDirectorySize));
+    } else {
+      final byte[] content = readRange(url, centralDirectoryOffset, (int) centralDirectorySize);
+      if (content == null) return null;
+      centralDirectory = littleEndian(content);
+    }
+
+    final List<byte[]> entries = new ArrayList<>();
+    int position = 0;
+    for (int entryIndex = 0; entryIndex < entriesCount; entryIndex++) {
+      if (position + CENTRAL_DIRECTORY_ENTRY_SIZE > centralDirectory.limit()
+          || centralDirectory.getInt(position) != CENTRAL_DIRECTORY_ENTRY_SIGNATURE) {
+        return null;
+      }
+      final int method = unsignedShort(centralDirectory, position + 10);
+      final long compressedSize = unsignedInt(centralDirectory, position + 20);
+      final long uncompressedSize = unsignedInt(centralDirectory, position + 24);
+      final int nameLength = unsignedShort(centralDirectory, position + 28);
+      final int extraLength = unsignedShort(centralDirectory, position + 30);
+      final int commentLength = unsignedShort(centralDirectory, position + 32);
+      final long localHeaderOffset = unsignedInt(centralDirectory, position + 42);
+      if (position + CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength > centralDirectory.limit()) {
+        return null;
+      }
+      final String name =
+          new String(
+              centralDirectory.array(),
+              position + CENTRAL_DIRECTORY_ENTRY_SIZE,
+              nameLength,
+              StandardCharsets.UTF_8);
+
+      if (entryNameMatcher.test(name)) {
+        if ((method != STORED && method != DEFLATED)
+            || compressedSize > Integer.MAX_VALUE
+            || uncompressedSize > Integer.MAX_VALUE) {
+          return null;
+        }
+        final byte[] compressed =
+            readEntryData(url, localHeaderOffset, nameLength + extraLength, (int) compressedSize);
+        if (compressed == null) return null;
+        final byte[] content =
+            method == STORED ? compressed : inflate(compressed, (int) uncompressedSize);
+        if (content == null) return null;
+        entries.add(content);
+      }
+
+      position += CENTRAL_DIRECTORY_ENTRY_SIZE + nameLength + extraLength + commentLength;
+    }
+    return entries;
+  }
+
+  /** The compressed data of the entry at the given local-header, or null if it can not be read. */
+  @Nullable
+  private byte[] readEntryData(
+      URL url, long localHeaderOffset, int expectedVariableLength, int compressedSize)
+      throws IOException {
+    // usually, a single request covers the local header and the data
+    final byte[] local =
+        readRange(
+            url,
+            localHeaderOffset,
+            LOCAL_HEADER_SIZE + expectedVariableLength + LOCAL_EXTRA_SLACK + compressedSize);
+    if (local == null || local.length < LOCAL_HEADER_SIZE) return null;
+    final ByteBuffer localHeader = littleEndian(local);
+    if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) return null;
+
+    final int dataOffset =
+        LOCAL_HEADER_SIZE + unsignedShort(localHeader, 26) + unsignedShort(localHeader, 28);
+    if (dataOffset + compressedSize <= local.length) {
+      return Arrays.copyOfRange(local, dataOffset, dataOffset + compressedSize);
+    }
+    final byte[] data = readRange(url, localHeaderOffset + dataOffset, compressedSize);
+    return data == null || data.length != compressedSize ? null : data;
+  }
+
+  /**
+   * The bytes at the given range, or null if ranges are not served. The range is cut at the end
+   * of the file.
+   */
+  @Nullable
+  private byte[] readRange(URL url, long offset, int length) throws IOException {
+    if (length == 0) return new byte[0];
+    final HttpTransport.Range range = transport.getRange(url, offset, length);
+    return range == null ? null : range.content();
+  }
+
+  @Nullable
+  private static byte[] inflate(byte[] compressed, int uncompressedSize) {
+    final Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed);
+      final byte[] content = new byte[uncompressedSize];
+      int inflated = 0;
+      while (inflated < uncompressedSize && !inflater.finished()) {
+        final int count = inflater.inflate(content, inflated, uncompressedSize - inflated);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+        inflated += count;
+      }
+      return inflated == uncompressedSize ? content : null;
+    } catch (DataFormatException e) {
+      return null;
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /** The position of the end-of-central-directory record, searching from the end. */
+  private static int findEndOfCentralDirectory(ByteBuffer tail) {
+    for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--) {
+      if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+          && position + END_OF_CENTRAL_DIRECTORY_SIZE + unsignedShort(tail, position + 20)
+              == tail.limit()) {
+        return position;
+      }
+    }
+    return -1;
+  }
+
+  private static ByteBuffer littleEndian(byte[] content) {
+    return ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static int unsignedShort(ByteBuffer buffer, int position) {
+    return buffer.getShort(position) & 0xFFFF;
+  }
+
+  private static long unsignedInt(ByteBuffer buffer, int position) {
+    return buffer.getInt(position) & 0xFFFFFFFFL;
+  }
+}
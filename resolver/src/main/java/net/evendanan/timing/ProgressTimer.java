@@ -2,6 +2,7 @@ package net.evendanan.timing;
 
 import java.util.Locale;
 
+/** Reports the progress of a set of tasks. Tasks may be done, and reported, on any thread. */
 public class ProgressTimer {
   private final TaskTiming timer = new TaskTiming();
   private final String title;
@@ -13,7 +14,7 @@ public class ProgressTimer {
     this.timer.start(tasksCount);
   }
 
-  public void taskDone(String taskName) {
+  public synchronized void taskDone(String taskName) {
     final TimingData timingData = timer.taskDone();
     final String estimatedTimeLeft;
     if (timingData.doneTasks >= 3) {
@@ -32,7 +33,7 @@ public class ProgressTimer {
         taskName);
   }
 
-  public void finish() {
+  public synchronized void finish() {
     TimingData finish = timer.finish();
     report("Finished. %s", TaskTiming.humanReadableTime(finish.totalTime - finish.startTime));
   }
@@ -0,0 +1,325 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.NegativeLookupCache;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultModelResolverTest {
+
+  private static final String POM_CONTENT =
+      "<project><modelVersion>4.0.0</modelVersion><groupId>net.evendanan</groupId>"
+          + "<artifactId>dep1</artifactId><version>1.0</version></project>";
+
+  private HttpServer mServer;
+  private final Map<String, String> mServedFiles = new HashMap<>();
+  private final List<String> mRequests = Collections.synchronizedList(new ArrayList<>());
+
+  @Before
+  public void setup() throws Exception {
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    mServer.createContext(
+        "/",
+        exchange -> {
+          final String path = exchange.getRequestURI().getPath();
+          mRequests.add(exchange.getRequestMethod() + " " + path);
+          final String content = mServedFiles.get(path);
+          if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+          } else if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+          } else {
+            final byte[] bytes = content.getBytes(Charsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+              body.write(bytes);
+            }
+          }
+          exchange.close();
+        });
+    mServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    mServer.stop(0);
+  }
+
+  private Repository createRepository(String name) {
+    final Repository repository = new Repository();
+    repository.setId(name);
+    repository.setName(name);
+    repository.setUrl(
+        "http://127.0.0.1:" + mServer.getAddress().getPort() + "/" + name + "/");
+    return repository;
+  }
+
+  private DefaultModelResolver createResolver(Repository... repositories) {
+    return newResolverBuilder(repositories).build();
+  }
+
+  private static DefaultModelResolver.Builder newResolverBuilder(Repository... repositories) {
+    return new DefaultModelResolver.Builder(
+        new ArrayList<>(Arrays.asList(repositories)),
+        VersionResolver.defaultResolver(false),
+        System.getProperty("java.home"),
+        new HttpTransport());
+  }
+
+  @Test
+  public void testFetchesPomWithSingleGet() throws Exception {
+    mServedFiles.put("/repo1/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    final Repository repository = createRepository("repo1");
+
+    final DefaultModelResolver.RepoModelSource modelSource =
+        createResolver(repository).resolveModel("net.evendanan", "dep1", "", "1.0");
+
+    Assert.assertSame(repository, modelSource.getRepository());
+    try (InputStream inputStream = modelSource.getModelSource().getInputStream()) {
+      Assert.assertEquals(
+          POM_CONTENT, new String(ByteStreams.toByteArray(inputStream), Charsets.UTF_8));
+    }
+    Assert.assertEquals(
+        Collections.singletonList("GET /repo1/net/evendanan/dep1/1.0/dep1-1.0.pom"), mRequests);
+  }
+
+  @Test
+  public void testSkipsRepositoryThatDoesNotHaveThePom() throws Exception {
+    mServedFiles.put("/repo2/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    final Repository repository2 = createRepository("repo2");
+
+    final DefaultModelResolver.RepoModelSource modelSource =
+        createResolver(createRepository("repo1"), repository2)
+            .resolveModel("net.evendanan", "dep1", "", "1.0");
+
+    Assert.assertSame(repository2, modelSource.getRepository());
+    Assert.assertEquals(
+        Arrays.asList(
+            "GET /repo1/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "GET /repo2/net/evendanan/dep1/1.0/dep1-1.0.pom"),
+        mRequests);
+  }
+
+  @Test
+  public void testProbesRepositoriesInDeclaredOrderRegardlessOfAffinity() throws Exception {
+    mServedFiles.put("/repo2/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    mServedFiles.put("/repo1/net/evendanan/dep2/1.0/dep2-1.0.pom", POM_CONTENT);
+    mServedFiles.put("/repo2/net/evendanan/dep2/1.0/dep2-1.0.pom", POM_CONTENT);
+    final DefaultModelResolver resolver =
+        createResolver(createRepository("repo1"), createRepository("repo2"));
+
+    resolver.resolveModel("net.evendanan", "dep1", "", "1.0");
+    resolver.resolveModel("net.evendanan", "dep2", "", "1.0");
+
+    Assert.assertEquals(
+        Arrays.asList(
+            "GET /repo1/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "GET /repo2/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "GET /repo1/net/evendanan/dep2/1.0/dep2-1.0.pom"),
+        mRequests);
+  }
+
+  @Test
+  public void testReusesResolvedModelSource() throws Exception {
+    mServedFiles.put("/repo1/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    final DefaultModelResolver resolver = createResolver(createRepository("repo1"));
+
+    resolver.resolveModel("net.evendanan", "dep1", "", "1.0");
+    resolver.resolveModel("net.evendanan", "dep1", "", "1.0");
+
+    Assert.assertEquals(1, mRequests.size());
+  }
+
+  @Test
+  public void testEffectiveModelBuiltFromBufferedSource() throws Exception {
+    mServedFiles.put("/repo1/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    final DefaultModelResolver resolver = createResolver(createRepository("repo1"));
+
+    final DefaultModelResolver.RepoModelSource modelSource =
+        resolver.resolveModel("net.evendanan", "dep1", "", "1.0");
+
+    Assert.assertEquals(
+        "dep1", resolver.getEffectiveModel(modelSource.getModelSource()).getArtifactId());
+    Assert.assertEquals(1, mRequests.size());
+  }
+
+  @Test
+  public void testSharedModelCacheReusesParsedParent() throws Exception {
+    mServedFiles.put(
+        "/repo1/net/evendanan/parent/1.0/parent-1.0.pom",
+        "<project><modelVersion>4.0.0</modelVersion><groupId>net.evendanan</groupId>"
+            + "<artifactId>parent</artifactId><version>1.0</version><packaging>pom</packaging>"
+            + "<properties><from.parent>yes</from.parent></properties></project>");
+    for (String child : Arrays.asList("child1", "child2")) {
+      mServedFiles.put(
+          "/repo1/net/evendanan/" + child + "/1.0/" + child + "-1.0.pom",
+          "<project><modelVersion>4.0.0</modelVersion><parent><groupId>net.evendanan</groupId>"
+              + "<artifactId>parent</artifactId><version>1.0</version></parent>"
+              + "<artifactId>"
+              + child
+              + "</artifactId></project>");
+    }
+    final LruModelCache modelCache = new LruModelCache();
+
+    for (String child : Arrays.asList("child1", "child2")) {
+      // a new resolver for each child, so only the model-cache is shared
+      final DefaultModelResolver resolver =
+          newResolverBuilder(createRepository("repo1")).modelCache(modelCache).build();
+      final DefaultModelResolver.RepoModelSource modelSource =
+          resolver.resolveModel("net.evendanan", child, "", "1.0");
+
+      Assert.assertEquals(
+          "yes",
+          resolver
+              .getEffectiveModel(modelSource.getModelSource())
+              .getProperties()
+              .getProperty("from.parent"));
+    }
+
+    Assert.assertTrue(modelCache.size() > 0);
+    Assert.assertEquals(
+        1,
+        mRequests.stream()
+            .filter(request -> request.equals("GET /repo1/net/evendanan/parent/1.0/parent-1.0.pom"))
+            .count());
+  }
+
+  @Test
+  public void testSharedFetchedPomsDoNotKeepSnapshots() throws Exception {
+    mServedFiles.put("/repo1/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    mServedFiles.put("/repo1/net/evendanan/dep1/1.1-SNAPSHOT/dep1-1.1-SNAPSHOT.pom", "first");
+    final LruModelCache fetchedPoms = new LruModelCache();
+
+    final List<String> snapshotContents = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      // a new resolver for each request, as a persistent worker would create
+      final DefaultModelResolver resolver =
+          newResolverBuilder(createRepository("repo1")).fetchedPoms(fetchedPoms).build();
+      resolver.resolveModel("net.evendanan", "dep1", "", "1.0");
+      try (InputStream inputStream =
+          resolver
+              .resolveModel("net.evendanan", "dep1", "", "1.1-SNAPSHOT")
+              .getModelSource()
+              .getInputStream()) {
+        snapshotContents.add(new String(ByteStreams.toByteArray(inputStream), Charsets.UTF_8));
+      }
+      mServedFiles.put("/repo1/net/evendanan/dep1/1.1-SNAPSHOT/dep1-1.1-SNAPSHOT.pom", "second");
+    }
+
+    Assert.assertEquals(Arrays.asList("first", "second"), snapshotContents);
+    Assert.assertEquals(
+        Arrays.asList(
+            "GET /repo1/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "GET /repo1/net/evendanan/dep1/1.1-SNAPSHOT/dep1-1.1-SNAPSHOT.pom",
+            "GET /repo1/net/evendanan/dep1/1.1-SNAPSHOT/dep1-1.1-SNAPSHOT.pom"),
+        mRequests);
+  }
+
+  @Test
+  public void testRemoteFileExistsSkipsKnownMissingFiles() throws Exception {
+    mServedFiles.put("/repo1/net/evendanan/dep1/1.0/dep1-1.0.jar", "jar");
+    final Repository repository = createRepository("repo1");
+    final NegativeLookupCache negativeLookupCache =
+        new NegativeLookupCache(
+            Files.createTempDirectory("DefaultModelResolverTest").toFile(),
+            Duration.ofHours(1),
+            false);
+    final URL jar =
+        DefaultModelResolver.getUrlForArtifact(
+            repository.getUrl(), "net.evendanan", "dep1", "", "1.0", "jar");
+    final URL aar =
+        DefaultModelResolver.getUrlForArtifact(
+            repository.getUrl(), "net.evendanan", "dep1", "", "1.0", "aar");
+
+    for (int i = 0; i < 2; i++) {
+      // a new resolver for each request, so only the negative cache is shared
+      final DefaultModelResolver resolver =
+          newResolverBuilder(repository).negativeLookupCache(negativeLookupCache).build();
+      Assert.assertTrue(resolver.remoteFileExists(jar));
+      Assert.assertFalse(resolver.remoteFileExists(aar));
+    }
+
+    Assert.assertEquals(
+        Arrays.asList(
+            "HEAD /repo1/net/evendanan/dep1/1.0/dep1-1.0.jar",
+            "HEAD /repo1/net/evendanan/dep1/1.0/dep1-1.0.aar",
+            "HEAD /repo1/net/evendanan/dep1/1.0/dep1-1.0.jar"),
+        mRequests);
+  }
+
+  @Test
+  public void testDoesNotRequestKnownMissingPomsAgain() throws Exception {
+    mServedFiles.put("/repo2/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    final NegativeLookupCache negativeLookupCache =
+        new NegativeLookupCache(
+            Files.createTempDirectory("DefaultModelResolverTest").toFile(),
+            Duration.ofHours(1),
+            false);
+
+    for (int i = 0; i < 2; i++) {
+      final DefaultModelResolver resolver =
+          newResolverBuilder(createRepository("repo1"), createRepository("repo2"))
+              .negativeLookupCache(negativeLookupCache)
+              .build();
+      Assert.assertEquals(
+          createRepository("repo2").getUrl(),
+          resolver.resolveModel("net.evendanan", "dep1", "", "1.0").getRepository().getUrl());
+    }
+
+    Assert.assertEquals(
+        Arrays.asList(
+            "GET /repo1/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "GET /repo2/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "GET /repo2/net/evendanan/dep1/1.0/dep1-1.0.pom"),
+        mRequests);
+  }
+
+  @Test
+  public void testReadOnlyCopySharesRequestedUrls() throws Exception {
+    mServedFiles.put("/repo2/net/evendanan/dep1/1.0/dep1-1.0.pom", POM_CONTENT);
+    mServedFiles.put("/repo2/net/evendanan/dep2/1.0/dep2-1.0.jar", "jar");
+    final Repository repository2 = createRepository("repo2");
+    final DefaultModelResolver resolver = createResolver(createRepository("repo1"), repository2);
+    final URL jar =
+        DefaultModelResolver.getUrlForArtifact(
+            repository2.getUrl(), "net.evendanan", "dep2", "", "1.0", "jar");
+
+    resolver.readOnlyCopy().resolveModel("net.evendanan", "dep1", "", "1.0");
+    Assert.assertTrue(resolver.readOnlyCopy().remoteFileExists(jar));
+    Assert.assertSame(
+        repository2, resolver.resolveModel("net.evendanan", "dep1", "", "1.0").getRepository());
+    Assert.assertTrue(resolver.remoteFileExists(jar));
+
+    // the miss in repo1 is not requested again either
+    Assert.assertEquals(
+        Arrays.asList(
+            "GET /repo1/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "GET /repo2/net/evendanan/dep1/1.0/dep1-1.0.pom",
+            "HEAD /repo2/net/evendanan/dep2/1.0/dep2-1.0.jar"),
+        mRequests);
+  }
+
+  @Test(expected = UnresolvableModelException.class)
+  public void testThrowsWhenNoRepositoryHasThePom() throws Exception {
+    createResolver(createRepository("repo1")).resolveModel("net.evendanan", "dep1", "", "1.0");
+  }
+}
@@ -0,0 +1,83 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.maven.model.Exclusion;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExclusionScopeTest {
+
+  private static Exclusion exclusion(String groupId, String artifactId) {
+    final Exclusion exclusion = new Exclusion();
+    exclusion.setGroupId(groupId);
+    exclusion.setArtifactId(artifactId);
+    return exclusion;
+  }
+
+  @Test
+  public void testEmpty() {
+    Assert.assertFalse(ExclusionScope.EMPTY.contains("com.google.guava:guava"));
+    Assert.assertEquals(0, ExclusionScope.EMPTY.chainLength());
+    Assert.assertSame(ExclusionScope.EMPTY, ExclusionScope.EMPTY.extend(Collections.emptyList()));
+  }
+
+  @Test
+  public void testExtendDoesNotChangeParent() {
+    final ExclusionScope parent =
+        ExclusionScope.EMPTY.extend(
+            Collections.singletonList(exclusion("com.google.guava", "guava")));
+    final ExclusionScope child =
+        parent.extend(Collections.singletonList(exclusion("org.apache", "commons")));
+
+    Assert.assertTrue(parent.contains("com.google.guava:guava"));
+    Assert.assertFalse(parent.contains("org.apache:commons"));
+    Assert.assertTrue(child.contains("com.google.guava:guava"));
+    Assert.assertTrue(child.contains("org.apache:commons"));
+    Assert.assertFalse(child.contains("org.apache"));
+    Assert.assertEquals(1, parent.chainLength());
+    Assert.assertEquals(2, child.chainLength());
+  }
+
+  @Test
+  public void testSiblingsDoNotSeeEachOther() {
+    final ExclusionScope parent =
+        ExclusionScope.EMPTY.extend(Collections.singletonList(exclusion("a", "a")));
+    final ExclusionScope left = parent.extend(Collections.singletonList(exclusion("b", "b")));
+    final ExclusionScope right = parent.extend(Collections.singletonList(exclusion("c", "c")));
+
+    Assert.assertTrue(left.contains("b:b"));
+    Assert.assertFalse(left.contains("c:c"));
+    Assert.assertTrue(right.contains("c:c"));
+    Assert.assertFalse(right.contains("b:b"));
+  }
+
+  @Test
+  public void testKnownExclusionsDoNotAddLinks() {
+    final ExclusionScope scope =
+        ExclusionScope.EMPTY.extend(Arrays.asList(exclusion("a", "a"), exclusion("b", "b")));
+
+    Assert.assertSame(scope, scope.extend(Collections.emptyList()));
+    Assert.assertSame(scope, scope.extend(Collections.singletonList(exclusion("a", "a"))));
+    Assert.assertSame(scope, scope.extend(Arrays.asList(exclusion("b", "b"), exclusion("a", "a"))));
+
+    final ExclusionScope extended =
+        scope.extend(Arrays.asList(exclusion("a", "a"), exclusion("c", "c")));
+    Assert.assertNotSame(scope, extended);
+    Assert.assertEquals(2, extended.chainLength());
+    Assert.assertTrue(extended.contains("c:c"));
+  }
+
+  @Test(timeout = 5000)
+  public void testDeepChain() {
+    ExclusionScope scope = ExclusionScope.EMPTY;
+    for (int depth = 0; depth < 2000; depth++) {
+      scope = scope.extend(Collections.singletonList(exclusion("group" + depth, "artifact")));
+    }
+
+    Assert.assertEquals(2000, scope.chainLength());
+    Assert.assertTrue(scope.contains("group0:artifact"));
+    Assert.assertTrue(scope.contains("group1999:artifact"));
+    Assert.assertFalse(scope.contains("group2000:artifact"));
+  }
+}
@@ -0,0 +1,44 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LruModelCacheTest {
+
+  @Test
+  public void testPutAndGet() {
+    final LruModelCache underTest = new LruModelCache();
+    final Object data = new Object();
+
+    underTest.put("net.evendanan", "dep1", "1.0", "raw", data);
+
+    Assert.assertSame(data, underTest.get("net.evendanan", "dep1", "1.0", "raw"));
+    Assert.assertNull(underTest.get("net.evendanan", "dep1", "1.0", "import"));
+    Assert.assertNull(underTest.get("net.evendanan", "dep1", "1.1", "raw"));
+    Assert.assertNull(underTest.get("net.evendanan", "dep2", "1.0", "raw"));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    final LruModelCache underTest = new LruModelCache(2);
+    final Object data1 = new Object();
+    final Object data2 = new Object();
+    final Object data3 = new Object();
+
+    underTest.put("net.evendanan", "dep1", "1.0", "raw", data1);
+    underTest.put("net.evendanan", "dep2", "1.0", "raw", data2);
+    // touching dep1, so dep2 is the least-recently-used
+    Assert.assertSame(data1, underTest.get("net.evendanan", "dep1", "1.0", "raw"));
+    underTest.put("net.evendanan", "dep3", "1.0", "raw", data3);
+
+    Assert.assertEquals(2, underTest.size());
+    Assert.assertSame(data1, underTest.get("net.evendanan", "dep1", "1.0", "raw"));
+    Assert.assertNull(underTest.get("net.evendanan", "dep2", "1.0", "raw"));
+    Assert.assertSame(data3, underTest.get("net.evendanan", "dep3", "1.0", "raw"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNonPositiveSize() {
+    new LruModelCache(0);
+  }
+}
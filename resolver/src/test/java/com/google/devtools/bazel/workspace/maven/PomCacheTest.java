@@ -0,0 +1,98 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import com.google.common.base.Charsets;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PomCacheTest {
+
+  private static final String REPO = "https://repo1.maven.org/maven2/";
+  private static final String POM_CONTENT = "<project></project>";
+
+  @Rule public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+  private PomCache mUnderTest;
+
+  @Before
+  public void setup() throws Exception {
+    mUnderTest = new PomCache(mTempFolder.newFolder("poms"));
+  }
+
+  private File cache(String repository, String version) throws Exception {
+    return mUnderTest.cachePom(
+        repository,
+        "net.evendanan",
+        "dep1",
+        version,
+        new ByteArrayInputStream(POM_CONTENT.getBytes(Charsets.UTF_8)));
+  }
+
+  @Test
+  public void testReturnsNullWhenNotCached() {
+    Assert.assertNull(mUnderTest.getCachedPom(REPO, "net.evendanan", "dep1", "1.0"));
+  }
+
+  @Test
+  public void testReturnsCachedPom() throws Exception {
+    final File cached = cache(REPO, "1.0");
+
+    Assert.assertNotNull(cached);
+    Assert.assertEquals(cached, mUnderTest.getCachedPom(REPO, "net.evendanan", "dep1", "1.0"));
+    Assert.assertEquals(
+        POM_CONTENT, new String(Files.readAllBytes(cached.toPath()), Charsets.UTF_8));
+    Assert.assertEquals("dep1-1.0.pom", cached.getName());
+  }
+
+  @Test
+  public void testKeyedByRepositoryAndVersion() throws Exception {
+    cache(REPO, "1.0");
+
+    Assert.assertNull(mUnderTest.getCachedPom(REPO, "net.evendanan", "dep1", "1.1"));
+    Assert.assertNull(mUnderTest.getCachedPom(REPO, "net.evendanan", "dep2", "1.0"));
+    Assert.assertNull(mUnderTest.getCachedPom(REPO, "net", "dep1", "1.0"));
+    Assert.assertNull(
+        mUnderTest.getCachedPom("https://maven.google.com/", "net.evendanan", "dep1", "1.0"));
+  }
+
+  @Test
+  public void testDoesNotCacheSnapshots() throws Exception {
+    Assert.assertNull(cache(REPO, "1.0-SNAPSHOT"));
+    Assert.assertNull(mUnderTest.getCachedPom(REPO, "net.evendanan", "dep1", "1.0-SNAPSHOT"));
+  }
+
+  @Test
+  public void testOverridesPreviousEntry() throws Exception {
+    cache(REPO, "1.0");
+    final File cached =
+        mUnderTest.cachePom(
+            REPO,
+            "net.evendanan",
+            "dep1",
+            "1.0",
+            new ByteArrayInputStream("<project/>".getBytes(Charsets.UTF_8)));
+
+    Assert.assertEquals(
+        "<project/>", new String(Files.readAllBytes(cached.toPath()), Charsets.UTF_8));
+  }
+
+  @Test
+  public void testCachedModelSourceReportsRemoteLocation() throws Exception {
+    final File cached = cache(REPO, "1.0");
+    final URL pomUrl =
+        DefaultModelResolver.getUrlForArtifact(REPO, "net.evendanan", "dep1", "", "1.0", "pom");
+    final CachedModelSource2 modelSource = new CachedModelSource2(cached, pomUrl);
+
+    Assert.assertEquals(
+        "https://repo1.maven.org/maven2/net/evendanan/dep1/1.0/dep1-1.0.pom",
+        modelSource.getLocation());
+    Assert.assertEquals(pomUrl.toURI(), modelSource.getLocationURI());
+    Assert.assertNull(modelSource.getRelatedSource("../pom.xml"));
+  }
+}
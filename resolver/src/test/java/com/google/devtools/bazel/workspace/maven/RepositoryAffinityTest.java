@@ -0,0 +1,99 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.maven.model.Repository;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RepositoryAffinityTest {
+
+  private static final List<Repository> REPOSITORIES =
+      Arrays.asList(repository("https://google/"), repository("https://central/"));
+
+  private static Repository repository(String url) {
+    final Repository repository = new Repository();
+    repository.setUrl(url);
+    return repository;
+  }
+
+  @Test
+  public void testGroupPrefixes() {
+    Assert.assertEquals(
+        Arrays.asList("androidx.core", "androidx"),
+        RepositoryAffinity.groupPrefixes("androidx.core"));
+    Assert.assertEquals(
+        Arrays.asList("com.google.android.material", "com.google.android", "com.google"),
+        RepositoryAffinity.groupPrefixes("com.google.android.material"));
+    Assert.assertEquals(
+        Collections.singletonList("io.grpc"), RepositoryAffinity.groupPrefixes("io.grpc"));
+    Assert.assertEquals(
+        Collections.singletonList("junit"), RepositoryAffinity.groupPrefixes("junit"));
+  }
+
+  @Test
+  public void testNoLikelyRepositoryWhenNothingWasLearned() {
+    final RepositoryAffinity underTest = new RepositoryAffinity();
+
+    Assert.assertEquals(-1, underTest.likelyRepositoryIndex("com.google.guava", REPOSITORIES));
+  }
+
+  @Test
+  public void testLikelyRepositoryServedTheGroupPrefix() {
+    final RepositoryAffinity underTest = new RepositoryAffinity();
+    underTest.learn("org.apache.commons", "https://central/");
+    underTest.learn("androidx.core", "https://google/");
+
+    Assert.assertEquals(1, underTest.likelyRepositoryIndex("org.apache.commons", REPOSITORIES));
+    // same prefix
+    Assert.assertEquals(1, underTest.likelyRepositoryIndex("org.apache.maven", REPOSITORIES));
+    Assert.assertEquals(0, underTest.likelyRepositoryIndex("androidx.appcompat", REPOSITORIES));
+    // top-level-domain alone is not a prefix
+    Assert.assertEquals(-1, underTest.likelyRepositoryIndex("org.junit", REPOSITORIES));
+  }
+
+  @Test
+  public void testClosestPrefixWins() {
+    final RepositoryAffinity underTest = new RepositoryAffinity();
+    underTest.learn("com.google.android.material", "https://google/");
+    underTest.learn("com.google.guava", "https://central/");
+
+    Assert.assertEquals(1, underTest.likelyRepositoryIndex("com.google.guava", REPOSITORIES));
+    Assert.assertEquals(0, underTest.likelyRepositoryIndex("com.google.android.gms", REPOSITORIES));
+  }
+
+  @Test
+  public void testIgnoresUnknownRepositories() {
+    final RepositoryAffinity underTest = new RepositoryAffinity();
+    underTest.learn("org.apache.commons", "https://other/");
+
+    Assert.assertEquals(-1, underTest.likelyRepositoryIndex("org.apache.commons", REPOSITORIES));
+  }
+
+  @Test
+  public void testPersistsBetweenInstances() throws Exception {
+    final File storage =
+        new File(Files.createTempDirectory("RepositoryAffinityTest").toFile(), "sub/affinity");
+    final RepositoryAffinity first = new RepositoryAffinity(storage);
+    first.learn("org.apache.commons", "https://central/");
+    first.save();
+
+    Assert.assertTrue(storage.isFile());
+    Assert.assertEquals(
+        1,
+        new RepositoryAffinity(storage).likelyRepositoryIndex("org.apache.commons", REPOSITORIES));
+  }
+
+  @Test
+  public void testDoesNotWriteWhenNothingWasLearned() throws Exception {
+    final File storage =
+        new File(Files.createTempDirectory("RepositoryAffinityTest").toFile(), "affinity");
+
+    new RepositoryAffinity(storage).save();
+
+    Assert.assertFalse(storage.exists());
+  }
+}
@@ -0,0 +1,189 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.model.Repository;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepositoryRouterTest {
+
+  private final Repository mGoogle = repository("https://google/");
+  private final Repository mCentral = repository("https://central/");
+  private final List<Repository> mRepositories = Arrays.asList(mGoogle, mCentral);
+  private final List<String> mProbed = Collections.synchronizedList(new ArrayList<>());
+  private ExecutorService mExecutor;
+
+  private static Repository repository(String url) {
+    final Repository repository = new Repository();
+    repository.setUrl(url);
+    return repository;
+  }
+
+  @Before
+  public void setup() {
+    mExecutor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    mExecutor.shutdownNow();
+  }
+
+  private String probeCentralOnly(Repository repository) {
+    mProbed.add(repository.getUrl());
+    return repository == mCentral ? "found" : null;
+  }
+
+  @Test
+  public void testSerialProbingLearnsAffinity() {
+    final RepositoryRouter underTest = new RepositoryRouter();
+
+    Assert.assertEquals(
+        "found", underTest.firstHit("org.apache.commons", mRepositories, this::probeCentralOnly));
+    Assert.assertEquals(Arrays.asList("https://google/", "https://central/"), mProbed);
+    Assert.assertEquals(
+        1, underTest.getAffinity().likelyRepositoryIndex("org.apache.maven", mRepositories));
+  }
+
+  @Test
+  public void testWithoutLearningDoesNotLearnAffinity() {
+    final RepositoryRouter underTest = new RepositoryRouter().withoutLearning();
+
+    Assert.assertEquals(
+        "found", underTest.firstHit("org.apache.commons", mRepositories, this::probeCentralOnly));
+    Assert.assertEquals(
+        -1, underTest.getAffinity().likelyRepositoryIndex("org.apache.maven", mRepositories));
+  }
+
+  @Test
+  public void testSerialProbingKeepsDeclaredOrder() {
+    final RepositoryRouter underTest = new RepositoryRouter();
+    underTest.getAffinity().learn("org.apache.commons", mCentral.getUrl());
+
+    Assert.assertEquals(
+        "https://google/",
+        underTest.firstHit(
+            "org.apache.maven",
+            mRepositories,
+            repository -> {
+              mProbed.add(repository.getUrl());
+              return repository.getUrl();
+            }));
+    Assert.assertEquals(Collections.singletonList("https://google/"), mProbed);
+  }
+
+  @Test
+  public void testParallelProbingIgnoresAffinityForTheResult() {
+    final RepositoryRouter underTest = new RepositoryRouter(new RepositoryAffinity(), mExecutor);
+    underTest.getAffinity().learn("org.apache.commons", mCentral.getUrl());
+
+    Assert.assertEquals(
+        "https://google/",
+        underTest.firstHit("org.apache.maven", mRepositories, Repository::getUrl));
+  }
+
+  @Test
+  public void testParallelProbingSkipsRepositoriesDeclaredAfterTheLikelyOne() {
+    final Repository jitpack = repository("https://jitpack/");
+    final List<Repository> repositories = Arrays.asList(mGoogle, mCentral, jitpack);
+    final RepositoryRouter underTest = new RepositoryRouter(new RepositoryAffinity(), mExecutor);
+    underTest.getAffinity().learn("org.apache.commons", mCentral.getUrl());
+
+    Assert.assertEquals(
+        "found", underTest.firstHit("org.apache.maven", repositories, this::probeCentralOnly));
+    Assert.assertEquals(2, mProbed.size());
+    Assert.assertFalse(mProbed.contains("https://jitpack/"));
+
+    // the likely repository does not have it, so the rest are probed too
+    mProbed.clear();
+    Assert.assertNull(underTest.firstHit("org.apache.maven", repositories, this::probeNothing));
+    Assert.assertEquals(3, mProbed.size());
+  }
+
+  private String probeNothing(Repository repository) {
+    mProbed.add(repository.getUrl());
+    return null;
+  }
+
+  @Test
+  public void testReturnsNullWhenNoRepositoryHasIt() {
+    final RepositoryRouter underTest = new RepositoryRouter();
+
+    Assert.assertNull(underTest.firstHit("org.apache.commons", mRepositories, repository -> null));
+    Assert.assertNull(
+        new RepositoryRouter(new RepositoryAffinity(), mExecutor)
+            .firstHit("org.apache.commons", mRepositories, repository -> null));
+  }
+
+  @Test
+  public void testParallelProbingPrefersDeclaredOrder() throws Exception {
+    final RepositoryRouter underTest = new RepositoryRouter(new RepositoryAffinity(), mExecutor);
+    final CountDownLatch centralAnswered = new CountDownLatch(1);
+
+    final String result =
+        underTest.firstHit(
+            "com.google.guava",
+            mRepositories,
+            repository -> {
+              if (repository == mCentral) {
+                centralAnswered.countDown();
+                return "from-central";
+              }
+              try {
+                // the first declared repository answers last
+                Assert.assertTrue(centralAnswered.await(10, TimeUnit.SECONDS));
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              return "from-google";
+            });
+
+    Assert.assertEquals("from-google", result);
+  }
+
+  @Test
+  public void testParallelProbingProbesAllRepositoriesConcurrently() {
+    final RepositoryRouter underTest = new RepositoryRouter(new RepositoryAffinity(), mExecutor);
+    final CountDownLatch allProbing = new CountDownLatch(mRepositories.size());
+
+    final String result =
+        underTest.firstHit(
+            "org.apache.commons",
+            mRepositories,
+            repository -> {
+              allProbing.countDown();
+              try {
+                // would time-out if the repositories were probed one after the other
+                Assert.assertTrue(allProbing.await(10, TimeUnit.SECONDS));
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              return probeCentralOnly(repository);
+            });
+
+    Assert.assertEquals("found", result);
+    // learned, even though it was probed concurrently
+    Assert.assertEquals(
+        1, underTest.getAffinity().likelyRepositoryIndex("org.apache.commons", mRepositories));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testParallelProbingPropagatesFailures() {
+    new RepositoryRouter(new RepositoryAffinity(), mExecutor)
+        .firstHit(
+            "org.apache.commons",
+            mRepositories,
+            repository -> {
+              throw new IllegalStateException("bad version");
+            });
+  }
+}
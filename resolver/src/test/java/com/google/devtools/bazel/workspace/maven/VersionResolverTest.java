@@ -0,0 +1,68 @@
+package com.google.devtools.bazel.workspace.maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VersionResolverTest {
+
+  private final List<String> mRequestedRanges = new ArrayList<>();
+
+  private VersionResolver createResolver(List<String> availableVersions) {
+    return new VersionResolver(
+        artifact -> {
+          mRequestedRanges.add(
+              artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion());
+          return availableVersions;
+        },
+        false);
+  }
+
+  @Test
+  public void testPlainVersionIsNotRequested() throws Exception {
+    final VersionResolver underTest = createResolver(Arrays.asList("1.0", "1.1"));
+
+    Assert.assertEquals("1.2", underTest.resolveVersion("net.evendanan", "dep1", "", "1.2"));
+    Assert.assertTrue(mRequestedRanges.isEmpty());
+  }
+
+  @Test
+  public void testRangeResolvesToHighestVersion() throws Exception {
+    final VersionResolver underTest = createResolver(Arrays.asList("1.0", "1.1", "1.5"));
+
+    Assert.assertEquals(
+        "1.5", underTest.resolveVersion("net.evendanan", "dep1", "", "[1.0,2.0)"));
+  }
+
+  @Test
+  public void testRangeFallsBackToLowerBoundWhenNoVersionsAreKnown() throws Exception {
+    final VersionResolver underTest = createResolver(Collections.emptyList());
+
+    Assert.assertEquals(
+        "1.0", underTest.resolveVersion("net.evendanan", "dep1", "", "[1.0,2.0)"));
+  }
+
+  @Test
+  public void testSameRangeIsRequestedOnce() throws Exception {
+    final VersionResolver underTest = createResolver(Arrays.asList("1.0", "1.1"));
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(
+          "1.1", underTest.resolveVersion("net.evendanan", "dep1", "", "[1.0,2.0)"));
+      Assert.assertEquals(
+          "1.1", underTest.resolveVersion("net.evendanan", "dep1", "sources", "[1.0,2.0)"));
+    }
+    underTest.resolveVersion("net.evendanan", "dep1", "", "[1.0,3.0)");
+    underTest.resolveVersion("net.evendanan", "dep2", "", "[1.0,2.0)");
+
+    Assert.assertEquals(
+        Arrays.asList(
+            "net.evendanan:dep1:[1.0,2.0)",
+            "net.evendanan:dep1:[1.0,3.0)",
+            "net.evendanan:dep2:[1.0,2.0)"),
+        mRequestedRanges);
+  }
+}
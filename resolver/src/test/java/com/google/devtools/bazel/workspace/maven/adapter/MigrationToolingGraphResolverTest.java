@@ -0,0 +1,323 @@
+package com.google.devtools.bazel.workspace.maven.adapter;
+
+import com.google.common.base.Charsets;
+import com.google.devtools.bazel.workspace.maven.RepositoryRouter;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+import net.evendanan.bazel.mvn.api.model.Resolution;
+import net.evendanan.http.HttpTransport;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MigrationToolingGraphResolverTest {
+
+  @Rule public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+  private HttpServer mServer;
+  private final Map<String, String> mServedFiles = new HashMap<>();
+  private final List<String> mRequests = Collections.synchronizedList(new ArrayList<>());
+  private ExecutorService mServerExecutor;
+  private volatile long mResponseDelayMillis;
+
+  private static String pom(String artifactId, String... dependencies) {
+    final StringBuilder pom =
+        new StringBuilder(
+            "<project><modelVersion>4.0.0</modelVersion><groupId>net.evendanan</groupId>"
+                + "<artifactId>"
+                + artifactId
+                + "</artifactId><version>1.0</version><dependencies>");
+    for (String dependency : dependencies) {
+      pom.append("<dependency><groupId>net.evendanan</groupId><artifactId>")
+          .append(dependency)
+          .append("</artifactId><version>1.0</version></dependency>");
+    }
+    return pom.append("</dependencies></project>").toString();
+  }
+
+  @Before
+  public void setup() throws Exception {
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    mServer.createContext(
+        "/",
+        exchange -> {
+          final String path = exchange.getRequestURI().getPath();
+          mRequests.add(exchange.getRequestMethod() + " " + path);
+          if (mResponseDelayMillis > 0) {
+            try {
+              Thread.sleep(mResponseDelayMillis);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          final String content = mServedFiles.get(path);
+          if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+          } else if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+          } else {
+            final byte[] bytes = content.getBytes(Charsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+              body.write(bytes);
+            }
+          }
+          exchange.close();
+        });
+    // requests are served concurrently, like a real repository would
+    mServerExecutor = Executors.newCachedThreadPool();
+    mServer.setExecutor(mServerExecutor);
+    mServer.start();
+
+    mServedFiles.put("/repo/net/evendanan/root1/1.0/root1-1.0.pom", pom("root1", "shared"));
+    mServedFiles.put("/repo/net/evendanan/root2/1.0/root2-1.0.pom", pom("root2", "shared"));
+    mServedFiles.put("/repo/net/evendanan/shared/1.0/shared-1.0.pom", pom("shared"));
+  }
+
+  @After
+  public void tearDown() {
+    mServer.stop(0);
+    mServerExecutor.shutdownNow();
+  }
+
+  private List<String> repositories() {
+    return Collections.singletonList(
+        "http://127.0.0.1:" + mServer.getAddress().getPort() + "/repo/");
+  }
+
+  private static MigrationToolingGraphResolver createResolver(
+      int traversalThreads, HttpTransport transport) {
+    return new MigrationToolingGraphResolver(
+        false,
+        System.getProperty("java.home"),
+        traversalThreads,
+        null,
+        transport,
+        new RepositoryRouter(),
+        null);
+  }
+
+  private static List<String> artifactIds(Resolution resolution) {
+    return resolution.allResolvedDependencies().stream()
+        .map(Dependency::mavenCoordinate)
+        .map(MavenCoordinate::artifactId)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testSharesResolvedPomsBetweenRoots() {
+    final MigrationToolingGraphResolver underTest =
+        createResolver(1, new HttpTransport());
+
+    final Resolution resolution1 =
+        underTest.resolve("net.evendanan:root1:1.0", repositories(), Collections.emptyList());
+    final Resolution resolution2 =
+        underTest.resolve("net.evendanan:root2:1.0", repositories(), Collections.emptyList());
+
+    Assert.assertEquals("root1", resolution1.rootDependency().artifactId());
+    Assert.assertEquals(Arrays.asList("root1", "shared"), artifactIds(resolution1));
+    Assert.assertEquals("root2", resolution2.rootDependency().artifactId());
+    Assert.assertEquals(Arrays.asList("root2", "shared"), artifactIds(resolution2));
+
+    Assert.assertEquals(
+        1,
+        mRequests.stream()
+            .filter(request -> request.equals("GET /repo/net/evendanan/shared/1.0/shared-1.0.pom"))
+            .count());
+  }
+
+  @Test
+  public void testResolvesOfflineFromLocalRepository() throws Exception {
+    final Path localRepository = mTempFolder.newFolder("local-repository").toPath();
+    for (String artifactId : Arrays.asList("root1", "shared")) {
+      final String path = "/repo/net/evendanan/" + artifactId + "/1.0/" + artifactId + "-1.0.pom";
+      final Path pomFile = localRepository.resolve(path.substring("/repo/".length()));
+      Files.createDirectories(pomFile.getParent());
+      Files.write(pomFile, mServedFiles.get(path).getBytes(Charsets.UTF_8));
+    }
+    final MigrationToolingGraphResolver underTest =
+        createResolver(1, HttpTransport.offline());
+
+    final Resolution resolution =
+        underTest.resolve(
+            "net.evendanan:root1:1.0",
+            Collections.singletonList(localRepository.toUri().toString()),
+            Collections.emptyList());
+
+    Assert.assertEquals(Arrays.asList("root1", "shared"), artifactIds(resolution));
+    Assert.assertEquals(
+        localRepository.toUri() + "net/evendanan/shared/1.0/shared-1.0.jar",
+        resolution.allResolvedDependencies().stream()
+            .filter(dependency -> dependency.mavenCoordinate().artifactId().equals("shared"))
+            .findFirst()
+            .get()
+            .url());
+    Assert.assertTrue(mRequests.isEmpty());
+  }
+
+  @Test
+  public void testSharesFetchedPomsBetweenDifferentRepositories() {
+    final MigrationToolingGraphResolver underTest =
+        createResolver(1, new HttpTransport());
+
+    underTest.resolve("net.evendanan:root1:1.0", repositories(), Collections.emptyList());
+    final List<String> otherRepositories = new ArrayList<>(repositories());
+    otherRepositories.add(0, "http://127.0.0.1:" + mServer.getAddress().getPort() + "/other/");
+    final Resolution resolution2 =
+        underTest.resolve("net.evendanan:root2:1.0", otherRepositories, Collections.emptyList());
+
+    Assert.assertEquals(Arrays.asList("root2", "shared"), artifactIds(resolution2));
+    Assert.assertEquals(
+        1,
+        mRequests.stream()
+            .filter(request -> request.equals("GET /repo/net/evendanan/shared/1.0/shared-1.0.pom"))
+            .count());
+  }
+
+  @Test
+  public void testDoesNotShareRepositoriesDeclaredByPomsBetweenRoots() {
+    final String extraRepository =
+        "http://127.0.0.1:" + mServer.getAddress().getPort() + "/extra/";
+    mServedFiles.put(
+        "/repo/net/evendanan/root1/1.0/root1-1.0.pom",
+        pom("root1").replace(
+                "<dependencies>",
+                "<repositories><repository><id>extra</id><url>"
+                    + extraRepository
+                    + "</url></repository></repositories><dependencies>"));
+    mServedFiles.put("/repo/net/evendanan/root2/1.0/root2-1.0.pom", pom("root2", "extra-only"));
+    mServedFiles.put("/extra/net/evendanan/extra-only/1.0/extra-only-1.0.pom", pom("extra-only"));
+    final MigrationToolingGraphResolver underTest =
+        createResolver(1, new HttpTransport());
+
+    underTest.resolve("net.evendanan:root1:1.0", repositories(), Collections.emptyList());
+    mRequests.clear();
+    final Resolution resolution2 =
+        underTest.resolve("net.evendanan:root2:1.0", repositories(), Collections.emptyList());
+
+    Assert.assertEquals(
+        "",
+        resolution2.allResolvedDependencies().stream()
+            .filter(dependency -> dependency.mavenCoordinate().artifactId().equals("extra-only"))
+            .findFirst()
+            .get()
+            .url());
+    Assert.assertTrue(mRequests.stream().noneMatch(request -> request.contains("/extra/")));
+  }
+
+  @Test
+  public void testConcurrentTraversalResolvesLikeSerialTraversal() {
+    final String extraRepository =
+        "http://127.0.0.1:" + mServer.getAddress().getPort() + "/extra/";
+    // a diamond: root -> (left, right) -> bottom -> leaf, where left excludes leaf
+    mServedFiles.put("/repo/net/evendanan/root/1.0/root-1.0.pom", pom("root", "left", "right"));
+    mServedFiles.put(
+        "/repo/net/evendanan/left/1.0/left-1.0.pom",
+        pom("left", "bottom", "deep1")
+            .replace(
+                "<artifactId>bottom</artifactId><version>1.0</version>",
+                "<artifactId>bottom</artifactId><version>1.0</version><exclusions><exclusion>"
+                    + "<groupId>net.evendanan</groupId><artifactId>leaf</artifactId>"
+                    + "</exclusion></exclusions>"));
+    // right declares a repository, which is only known once right's model is built. Serially,
+    // that is after everything under left was resolved.
+    mServedFiles.put(
+        "/repo/net/evendanan/right/1.0/right-1.0.pom",
+        pom("right", "bottom")
+            .replace(
+                "<dependencies>",
+                "<repositories><repository><id>extra</id><url>"
+                    + extraRepository
+                    + "</url></repository></repositories><dependencies>"));
+    mServedFiles.put("/repo/net/evendanan/bottom/1.0/bottom-1.0.pom", pom("bottom", "leaf"));
+    mServedFiles.put("/repo/net/evendanan/leaf/1.0/leaf-1.0.pom", pom("leaf"));
+    mServedFiles.put("/repo/net/evendanan/deep1/1.0/deep1-1.0.pom", pom("deep1", "deep2"));
+    mServedFiles.put("/repo/net/evendanan/deep2/1.0/deep2-1.0.pom", pom("deep2", "extra-only"));
+    mServedFiles.put("/extra/net/evendanan/extra-only/1.0/extra-only-1.0.pom", pom("extra-only"));
+
+    final Resolution serial =
+        createResolver(1, new HttpTransport())
+            .resolve("net.evendanan:root:1.0", repositories(), Collections.emptyList());
+    final Resolution concurrent =
+        createResolver(4, new HttpTransport())
+            .resolve("net.evendanan:root:1.0", repositories(), Collections.emptyList());
+
+    Assert.assertEquals(
+        Arrays.asList("bottom", "deep1", "deep2", "extra-only", "left", "right", "root"),
+        artifactIds(serial));
+    Assert.assertEquals(serial.rootDependency(), concurrent.rootDependency());
+    Assert.assertEquals(
+        new ArrayList<>(serial.allResolvedDependencies()),
+        new ArrayList<>(concurrent.allResolvedDependencies()));
+  }
+
+  @Test
+  public void testConcurrentTraversalRequestsEachUrlOnceAndIsFaster() {
+    final List<String> repositories = new ArrayList<>(repositories());
+    repositories.add("http://127.0.0.1:" + mServer.getAddress().getPort() + "/other/");
+    // everything is in the second repository, so each artifact also misses the first one
+    final List<String> children = new ArrayList<>();
+    for (int index = 0; index < 6; index++) {
+      children.add("child" + index);
+      mServedFiles.put(
+          "/other/net/evendanan/child" + index + "/1.0/child" + index + "-1.0.pom",
+          pom("child" + index, "leaf" + index));
+      mServedFiles.put(
+          "/other/net/evendanan/leaf" + index + "/1.0/leaf" + index + "-1.0.pom",
+          pom("leaf" + index));
+    }
+    // and one artifact does not have a POM at all, only a jar
+    children.add("jar-only");
+    mServedFiles.put("/other/net/evendanan/jar-only/1.0/jar-only-1.0.jar", "jar");
+    mServedFiles.put(
+        "/other/net/evendanan/root/1.0/root-1.0.pom", pom("root", children.toArray(new String[0])));
+    mResponseDelayMillis = 30;
+
+    final long serialStart = System.nanoTime();
+    final Resolution serial =
+        createResolver(1, new HttpTransport())
+            .resolve("net.evendanan:root:1.0", repositories, Collections.emptyList());
+    final long serialNanos = System.nanoTime() - serialStart;
+    final List<String> serialRequests = new ArrayList<>(mRequests);
+    mRequests.clear();
+
+    final long concurrentStart = System.nanoTime();
+    final Resolution concurrent =
+        createResolver(4, new HttpTransport())
+            .resolve("net.evendanan:root:1.0", repositories, Collections.emptyList());
+    final long concurrentNanos = System.nanoTime() - concurrentStart;
+    final List<String> concurrentRequests = new ArrayList<>(mRequests);
+
+    Assert.assertEquals(14, serial.allResolvedDependencies().size());
+    Assert.assertEquals(
+        new ArrayList<>(serial.allResolvedDependencies()),
+        new ArrayList<>(concurrent.allResolvedDependencies()));
+    // the serial traversal after the concurrent one found every outcome, hits and misses alike
+    Assert.assertEquals(concurrentRequests.size(), new HashSet<>(concurrentRequests).size());
+    Assert.assertEquals(
+        serialRequests.stream().sorted().collect(Collectors.toList()),
+        concurrentRequests.stream().sorted().collect(Collectors.toList()));
+    Assert.assertTrue(
+        "concurrent took " + concurrentNanos + "ns, serial took " + serialNanos + "ns",
+        concurrentNanos < serialNanos);
+  }
+}
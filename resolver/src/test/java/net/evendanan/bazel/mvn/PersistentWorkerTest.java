@@ -0,0 +1,89 @@
+package net.evendanan.bazel.mvn;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistentWorkerTest {
+
+  private static List<JsonObject> runWorker(String input, PersistentWorker.RequestHandler handler)
+      throws Exception {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new PersistentWorker(handler)
+        .run(new ByteArrayInputStream(input.getBytes(Charsets.UTF_8)), output);
+
+    final List<JsonObject> responses = new ArrayList<>();
+    for (String line : new String(output.toByteArray(), Charsets.UTF_8).split("\n")) {
+      if (!line.isEmpty()) responses.add(new JsonParser().parse(line).getAsJsonObject());
+    }
+    return responses;
+  }
+
+  @Test
+  public void testIsPersistentWorker() {
+    Assert.assertTrue(PersistentWorker.isPersistentWorker(new String[] {"--persistent_worker"}));
+    Assert.assertFalse(PersistentWorker.isPersistentWorker(new String[] {"--artifact=a:b:1"}));
+  }
+
+  @Test
+  public void testServesRequestsWithSameHandler() throws Exception {
+    final List<List<String>> handled = new ArrayList<>();
+    final List<JsonObject> responses =
+        runWorker(
+            "{\"arguments\":[\"--artifact=a:b:1\"],\"requestId\":0}\n"
+                + "{\"arguments\":[\"--artifact=a:c:1\",\"--test_only=true\"],\"requestId\":0}\n",
+            args -> {
+              handled.add(Arrays.asList(args));
+              System.out.println("resolved " + args[0]);
+              return handled.size() == 1 ? 0 : 3;
+            });
+
+    Assert.assertEquals(2, handled.size());
+    Assert.assertEquals(Arrays.asList("--artifact=a:b:1"), handled.get(0));
+    Assert.assertEquals(Arrays.asList("--artifact=a:c:1", "--test_only=true"), handled.get(1));
+
+    Assert.assertEquals(2, responses.size());
+    Assert.assertEquals(0, responses.get(0).get("exitCode").getAsInt());
+    Assert.assertEquals(
+        "resolved --artifact=a:b:1\n", responses.get(0).get("output").getAsString());
+    Assert.assertEquals(3, responses.get(1).get("exitCode").getAsInt());
+    Assert.assertEquals(
+        "resolved --artifact=a:c:1\n", responses.get(1).get("output").getAsString());
+  }
+
+  @Test
+  public void testReportsFailureAndKeepsServing() throws Exception {
+    final List<JsonObject> responses =
+        runWorker(
+            "{\"arguments\":[\"fail\"],\"requestId\":0}{\"arguments\":[\"ok\"],\"requestId\":0}",
+            args -> {
+              if (args[0].equals("fail")) throw new IllegalStateException("failed to resolve");
+              return 0;
+            });
+
+    Assert.assertEquals(2, responses.size());
+    Assert.assertEquals(1, responses.get(0).get("exitCode").getAsInt());
+    Assert.assertTrue(
+        responses.get(0).get("output").getAsString().contains("failed to resolve"));
+    Assert.assertEquals(0, responses.get(1).get("exitCode").getAsInt());
+  }
+
+  @Test
+  public void testRestoresSystemStreams() throws Exception {
+    final PrintStream originalOut = System.out;
+    final PrintStream originalErr = System.err;
+
+    runWorker("{\"arguments\":[],\"requestId\":0}", args -> 0);
+
+    Assert.assertSame(originalOut, System.out);
+    Assert.assertSame(originalErr, System.err);
+  }
+}
@@ -1,6 +1,9 @@
 package net.evendanan.bazel.mvn;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import net.evendanan.bazel.mvn.api.model.Dependency;
@@ -8,6 +11,8 @@ import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 
 public class TestUtils {
 
+  public static final int DIAMOND_LATTICE_LEVELS = 40;
+
   public static Dependency createDependency(
       String mavenDep,
       String url,
@@ -46,6 +51,42 @@ public class TestUtils {
     return createDependency(mavenDep, url, "", depsLabels, exportsLabels, runtimeLabels);
   }
 
+  /**
+   * A graph where {@code root} depends on, and exports, the two artifacts of the first level, each
+   * of them depends on, and exports, both artifacts of the next level, and so on, until the last
+   * level, which depends on, and exports, {@code bottom}. There are 2^40 paths from the root to
+   * the bottom, so anything which travels every path will not finish.
+   *
+   * @return the definitions of the root, the artifacts of every level and the bottom. If the
+   *     bottom is the root, the graph is a cycle and the root is only defined once.
+   */
+  public static List<Dependency> createDiamondLattice(
+      MavenCoordinate root, MavenCoordinate bottom) {
+    final List<Dependency> dependencies = new ArrayList<>();
+    List<MavenCoordinate> currentLevel = Collections.singletonList(root);
+    for (int level = 1; level <= DIAMOND_LATTICE_LEVELS + 1; level++) {
+      final List<MavenCoordinate> nextLevel =
+          level > DIAMOND_LATTICE_LEVELS
+              ? Collections.singletonList(bottom)
+              : Arrays.asList(
+                  MavenCoordinate.create("lattice", "left" + level, "1", "jar"),
+                  MavenCoordinate.create("lattice", "right" + level, "1", "jar"));
+      for (MavenCoordinate coordinate : currentLevel) {
+        dependencies.add(
+            Dependency.builder()
+                .mavenCoordinate(coordinate)
+                .dependencies(nextLevel)
+                .exports(nextLevel)
+                .build());
+      }
+      currentLevel = nextLevel;
+    }
+    if (!bottom.equals(root)) {
+      dependencies.add(Dependency.builder().mavenCoordinate(bottom).build());
+    }
+    return dependencies;
+  }
+
   private static Collection<MavenCoordinate> generateDeps(final List<String> depsLabels) {
     return depsLabels.stream()
         .map(label -> MavenCoordinate.create("safe_mvn", label, "", ""))
@@ -0,0 +1,86 @@
+package net.evendanan.bazel.mvn.api;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+import org.junit.Test;
+
+public class ExclusionMatcherTest {
+
+  private static final MavenCoordinate GUAVA =
+      MavenCoordinate.create("com.google.guava", "guava", "27.0.1-jre", "");
+
+  @Test
+  public void testEmpty() {
+    final ExclusionMatcher matcher = ExclusionMatcher.compile(Collections.emptyList());
+
+    assertTrue(matcher.isEmpty());
+    assertFalse(matcher.matchesPrefix(GUAVA));
+    assertFalse(matcher.matchesGroupOrArtifact("com.google.guava", "guava"));
+  }
+
+  @Test
+  public void testEmptyStringMatchesAnyPrefix() {
+    final ExclusionMatcher matcher = ExclusionMatcher.compile(Collections.singleton(""));
+
+    assertFalse(matcher.isEmpty());
+    assertTrue(matcher.matchesPrefix(GUAVA));
+    assertFalse(matcher.matchesGroupOrArtifact("com.google.guava", "guava"));
+  }
+
+  @Test
+  public void testMatchesPrefix() {
+    final ExclusionMatcher matcher =
+        ExclusionMatcher.compile(Arrays.asList("org.apache", "com.google.guava:guava:27"));
+
+    assertTrue(matcher.matchesPrefix(GUAVA));
+    assertTrue(
+        matcher.matchesPrefix(MavenCoordinate.create("org.apache.commons", "lang3", "3.8", "")));
+    assertTrue(
+        matcher.matchesPrefix(MavenCoordinate.create("com.google.guava", "guava", "27", "")));
+    assertFalse(
+        matcher.matchesPrefix(MavenCoordinate.create("com.google.guava", "guava", "28.0", "")));
+    assertFalse(
+        matcher.matchesPrefix(MavenCoordinate.create("com.google.guava", "guava", "2", "")));
+    assertFalse(matcher.matchesPrefix(MavenCoordinate.create("org.apach", "lang3", "3.8", "")));
+  }
+
+  @Test
+  public void testMatchesPrefixAcrossSeparators() {
+    final ExclusionMatcher matcher =
+        ExclusionMatcher.compile(Arrays.asList("com.google.guava:", "org.apache:commons"));
+
+    assertTrue(matcher.matchesPrefix(GUAVA));
+    assertTrue(
+        matcher.matchesPrefix(MavenCoordinate.create("org.apache", "commons-io", "2.6", "")));
+    assertFalse(
+        matcher.matchesPrefix(MavenCoordinate.create("com.google.guavas", "guava", "1", "")));
+    assertFalse(matcher.matchesPrefix(MavenCoordinate.create("org.apache", "common", "1", "")));
+  }
+
+  @Test
+  public void testMatchesGroupOrArtifactExactly() {
+    final ExclusionMatcher matcher =
+        ExclusionMatcher.compile(Arrays.asList("org.apache", "com.google.guava:guava"));
+
+    assertTrue(matcher.matchesGroupOrArtifact("org.apache", "commons"));
+    assertTrue(matcher.matchesGroupOrArtifact("com.google.guava", "guava"));
+    assertFalse(matcher.matchesGroupOrArtifact("org.apache.commons", "commons-lang3"));
+    assertFalse(matcher.matchesGroupOrArtifact("org", "apache"));
+    assertFalse(matcher.matchesGroupOrArtifact("com.google.guava", "failureaccess"));
+    assertFalse(matcher.matchesGroupOrArtifact("com.google.guava", "guav"));
+    assertFalse(matcher.matchesGroupOrArtifact("com.google.guava", "guava-testlib"));
+  }
+
+  @Test
+  public void testVersionedExclusionNeverMatchesGroupOrArtifact() {
+    final ExclusionMatcher matcher =
+        ExclusionMatcher.compile(Collections.singleton("com.google.guava:guava:27.0.1-jre"));
+
+    assertFalse(matcher.matchesGroupOrArtifact("com.google.guava", "guava"));
+    assertTrue(matcher.matchesPrefix(GUAVA));
+  }
+}
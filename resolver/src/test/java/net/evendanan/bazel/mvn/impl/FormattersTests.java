@@ -3,7 +3,6 @@ package net.evendanan.bazel.mvn.impl;
 import static net.evendanan.bazel.mvn.TestUtils.createDependency;
 import static net.evendanan.bazel.mvn.TestUtils.markAsTestOnly;
 
-import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -447,7 +446,7 @@ public class FormattersTests {
   @Test
   public void testPomOnlyArtifactHttp() {
     Assert.assertTrue(
-        new TargetsBuilders.HttpTargetsBuilder(false, dep -> URI.create(""))
+        new TargetsBuilders.HttpTargetsBuilder(false, LockfileBaseline.empty(), dep -> "")
             .buildTargets(
                 createDependency(
                     "parent:lib",
@@ -464,7 +463,7 @@ public class FormattersTests {
     final String ruleText =
         targetsToString(
             " ",
-            new TargetsBuilders.HttpTargetsBuilder(false, dep -> URI.create(""))
+            new TargetsBuilders.HttpTargetsBuilder(false, LockfileBaseline.empty(), dep -> "")
                 .buildTargets(
                     createDependency(
                         "aar:lib",
@@ -0,0 +1,97 @@
+package net.evendanan.bazel.mvn.impl;
+
+import com.google.common.base.Charsets;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JarInspectionCacheTest {
+
+  private static final List<String> PROCESSORS =
+      Arrays.asList("net.evendanan.FirstProcessor", "net.evendanan.SecondProcessor");
+
+  private File mCacheFolder;
+  private final Map<Dependency, String> mSha256s = new HashMap<>();
+
+  @Before
+  public void setup() throws Exception {
+    mCacheFolder = Files.createTempDirectory("JarInspectionCacheTest").toFile();
+  }
+
+  private static Dependency dependency(String version, String url) {
+    return Dependency.builder()
+        .mavenCoordinate(MavenCoordinate.create("net.evendanan", "processor", version, "jar"))
+        .url(url)
+        .build();
+  }
+
+  @Test
+  public void testKeptBetweenInstances() {
+    final Dependency dependency = dependency("1.0", "https://example.com/processor-1.0.jar");
+    final Dependency notProcessor = dependency("1.1", "https://example.com/processor-1.1.jar");
+
+    Assert.assertNull(new JarInspectionCache(mCacheFolder, null).find(dependency));
+    new JarInspectionCache(mCacheFolder, null).store(dependency, PROCESSORS);
+    new JarInspectionCache(mCacheFolder, null).store(notProcessor, Collections.emptyList());
+
+    final JarInspectionCache underTest = new JarInspectionCache(mCacheFolder, null);
+    Assert.assertEquals(PROCESSORS, underTest.find(dependency));
+    Assert.assertEquals(Collections.emptyList(), underTest.find(notProcessor));
+  }
+
+  @Test
+  public void testDoesNotFindArtifactFromAnotherUrl() {
+    final JarInspectionCache underTest = new JarInspectionCache(mCacheFolder, null);
+    underTest.store(dependency("1.0", "https://example.com/processor-1.0.jar"), PROCESSORS);
+
+    Assert.assertNull(underTest.find(dependency("1.0", "https://example.org/processor-1.0.jar")));
+  }
+
+  @Test
+  public void testKeyedBySha256IfProvided() {
+    final Dependency dependency = dependency("1.0", "https://example.com/processor-1.0.jar");
+    final JarInspectionCache underTest = new JarInspectionCache(mCacheFolder, mSha256s::get);
+    mSha256s.put(dependency, "0000");
+    underTest.store(dependency, PROCESSORS);
+
+    Assert.assertEquals(PROCESSORS, underTest.find(dependency));
+    // the artifact changed
+    mSha256s.put(dependency, "1111");
+    Assert.assertNull(underTest.find(dependency));
+  }
+
+  @Test
+  public void testDoesNotCacheSnapshots() {
+    final Dependency snapshot =
+        dependency("1.0-SNAPSHOT", "https://example.com/processor-1.0-SNAPSHOT.jar");
+    final JarInspectionCache underTest = new JarInspectionCache(mCacheFolder, null);
+    underTest.store(snapshot, PROCESSORS);
+
+    Assert.assertNull(underTest.find(snapshot));
+    Assert.assertEquals(0, mCacheFolder.list().length);
+  }
+
+  @Test
+  public void testIgnoresEntryOfAnotherKey() throws Exception {
+    final Dependency dependency = dependency("1.0", "https://example.com/processor-1.0.jar");
+    final JarInspectionCache underTest = new JarInspectionCache(mCacheFolder, null);
+    underTest.store(dependency, PROCESSORS);
+
+    final String key = "net.evendanan:processor:1.0 jar https://example.com/processor-1.0.jar";
+    final File entryFile = underTest.getEntryFile(key);
+    Assert.assertTrue(entryFile.isFile());
+    Files.write(
+        entryFile.toPath(), "another key\nnet.evendanan.OtherProcessor\n".getBytes(Charsets.UTF_8));
+
+    Assert.assertNull(underTest.find(dependency));
+  }
+}
@@ -0,0 +1,196 @@
+package net.evendanan.bazel.mvn.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import net.evendanan.bazel.mvn.api.DependencyTools;
+import net.evendanan.bazel.mvn.api.Target;
+import net.evendanan.bazel.mvn.api.TargetsBuilder;
+import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LockfileBaselineTest {
+
+  private static final String DEP1_URL = "https://example.com/net/evendanan/dep1/1.0.0/dep1.jar";
+  private static final String DEP1_SOURCES_URL =
+      "https://example.com/net/evendanan/dep1/1.0.0/dep1-sources.jar";
+  private static final String PROCESSOR_URL =
+      "https://example.com/net/evendanan/processor/2.0.0/processor.jar";
+
+  private static final Function<Dependency, URI> FAILING_DOWNLOADER =
+      dependency -> {
+        throw new AssertionError("should not download " + dependency.url());
+      };
+  private static final Function<Dependency, String> FAILING_SHA_PROVIDER =
+      dependency -> {
+        throw new AssertionError("should not calculate the SHA256 of " + dependency.url());
+      };
+
+  @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File mLockfile;
+  private List<Target> mTargets;
+
+  @Before
+  public void setUp() throws Exception {
+    mLockfile = tmp.newFile("lockfile.json");
+
+    final Target dep1Jar =
+        new Target("net.evendanan:dep1:1.0.0", "http_file", "mvn__dep1", "")
+            .addList("urls", Collections.singletonList(DEP1_URL))
+            .addString("sha256", "dep1sha");
+    final Target dep1Sources =
+        new Target("net.evendanan:dep1:1.0.0", "http_file", "mvn__dep1__sources", "")
+            .addList("urls", Collections.singletonList(DEP1_SOURCES_URL));
+    final Target dep1Import = new Target("net.evendanan:dep1:1.0.0", "jvm_import", "dep1", "");
+    final Target processorJar =
+        new Target("net.evendanan:processor:2.0.0", "http_file", "mvn__processor", "")
+            .addList("urls", Collections.singletonList(PROCESSOR_URL))
+            .addString("sha256", "processorsha");
+    final Target processorPlugin =
+        new Target("net.evendanan:processor:2.0.0", "java_plugin", "processor", "")
+            .addString("processor_class", "net.evendanan.Processor");
+
+    mTargets = Arrays.asList(dep1Jar, dep1Sources, dep1Import, processorJar, processorPlugin);
+    new JsonLockfileWriter(mLockfile, true).write(mTargets);
+  }
+
+  private static Dependency dependency(String artifactId, String version, String url) {
+    return Dependency.builder()
+        .mavenCoordinate(MavenCoordinate.create("net.evendanan", artifactId, version, "jar"))
+        .url(url)
+        .build();
+  }
+
+  @Test
+  public void testReadsWrittenLockfile() {
+    final LockfileBaseline baseline = LockfileBaseline.read(mLockfile, new DependencyTools());
+    Assert.assertEquals(2, baseline.size());
+
+    final LockfileBaseline.Artifact dep1 = baseline.find(dependency("dep1", "1.0.0", DEP1_URL));
+    Assert.assertNotNull(dep1);
+    Assert.assertEquals("dep1sha", dep1.getSha256());
+    Assert.assertEquals("jar", dep1.getTargetType());
+    // a jar may have been written without being inspected
+    Assert.assertNull(dep1.getProcessorClasses());
+    Assert.assertEquals(DEP1_SOURCES_URL, dep1.getSourcesUrl());
+
+    final LockfileBaseline.Artifact processor =
+        baseline.find(dependency("processor", "2.0.0", PROCESSOR_URL));
+    Assert.assertNotNull(processor);
+    Assert.assertEquals("processor", processor.getTargetType());
+    Assert.assertEquals(
+        Collections.singletonList("net.evendanan.Processor"), processor.getProcessorClasses());
+    Assert.assertEquals("", processor.getSourcesUrl());
+  }
+
+  @Test
+  public void testSourcesAreNotKnownIfTheyWereNotLocated() throws Exception {
+    new JsonLockfileWriter(mLockfile, false).write(mTargets);
+    final LockfileBaseline baseline = LockfileBaseline.read(mLockfile, new DependencyTools());
+
+    Assert.assertEquals(
+        DEP1_SOURCES_URL, baseline.find(dependency("dep1", "1.0.0", DEP1_URL)).getSourcesUrl());
+    Assert.assertNull(
+        baseline.find(dependency("processor", "2.0.0", PROCESSOR_URL)).getSourcesUrl());
+  }
+
+  @Test
+  public void testDoesNotFindChangedArtifacts() {
+    final LockfileBaseline baseline = LockfileBaseline.read(mLockfile, new DependencyTools());
+
+    // version bump
+    Assert.assertNull(baseline.find(dependency("dep1", "1.0.1", DEP1_URL)));
+    // served from somewhere else
+    Assert.assertNull(baseline.find(dependency("dep1", "1.0.0", "https://other.com/dep1.jar")));
+    // new artifact
+    Assert.assertNull(baseline.find(dependency("dep2", "1.0.0", DEP1_URL)));
+  }
+
+  @Test
+  public void testNeverReusesSnapshots() throws Exception {
+    Files.write(
+        mLockfile.toPath(),
+        ("{\"version\": \"1.0\", \"artifacts\": {\"net.evendanan:dep1:1.0-SNAPSHOT\":"
+                + " {\"url\": \"https://example.com/dep1.jar\", \"sha256\": \"old\"}}}")
+            .getBytes(StandardCharsets.UTF_8));
+    final LockfileBaseline baseline = LockfileBaseline.read(mLockfile, new DependencyTools());
+
+    Assert.assertEquals(1, baseline.size());
+    Assert.assertNull(
+        baseline.find(dependency("dep1", "1.0-SNAPSHOT", "https://example.com/dep1.jar")));
+  }
+
+  @Test
+  public void testMissingOrCorruptedLockfileIsEmpty() throws Exception {
+    final File missing = new File(tmp.getRoot(), "none.json");
+    Assert.assertEquals(0, LockfileBaseline.read(missing, new DependencyTools()).size());
+
+    Files.write(mLockfile.toPath(), "{not json".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(0, LockfileBaseline.read(mLockfile, new DependencyTools()).size());
+  }
+
+  @Test
+  public void testHttpTargetsBuilderReusesSha() {
+    final LockfileBaseline baseline = LockfileBaseline.read(mLockfile, new DependencyTools());
+
+    final List<Target> targets =
+        new TargetsBuilders.HttpTargetsBuilder(true, baseline, FAILING_SHA_PROVIDER)
+            .buildTargets(dependency("dep1", "1.0.0", DEP1_URL), new DependencyTools());
+
+    Assert.assertEquals(1, targets.size());
+    Assert.assertEquals("dep1sha", targets.get(0).getStringAttribute("sha256"));
+  }
+
+  @Test
+  public void testJarInspectorReusesProcessorClasses() {
+    final LockfileBaseline baseline = LockfileBaseline.read(mLockfile, new DependencyTools());
+    final RuleClassifiers.JarInspector inspector =
+        new RuleClassifiers.JarInspector(FAILING_DOWNLOADER, baseline, null, null);
+
+    final List<TargetsBuilder> builders =
+        inspector.findAllPossibleBuilders(dependency("processor", "2.0.0", PROCESSOR_URL));
+    Assert.assertEquals(1, builders.size());
+    Assert.assertEquals(
+        Collections.singletonList("net.evendanan.Processor"),
+        ((TargetsBuilders.JavaPluginFormatter) builders.get(0)).getProcessorClasses());
+  }
+
+  @Test
+  public void testJarInspectorInspectsArtifactsWhichWereNotWrittenAsProcessors() throws Exception {
+    final LockfileBaseline baseline = LockfileBaseline.read(mLockfile, new DependencyTools());
+    final File jar = tmp.newFile("dep1.jar");
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+      zip.putNextEntry(new ZipEntry("net/evendanan/Dep1.class"));
+      zip.closeEntry();
+    }
+    final List<Dependency> downloaded = new ArrayList<>();
+    final RuleClassifiers.JarInspector inspector =
+        new RuleClassifiers.JarInspector(
+            dependency -> {
+              downloaded.add(dependency);
+              return jar.toURI();
+            },
+            baseline,
+            null,
+            null);
+
+    final Dependency dep1 = dependency("dep1", "1.0.0", DEP1_URL);
+    Assert.assertTrue(inspector.findAllPossibleBuilders(dep1).isEmpty());
+    Assert.assertEquals(Collections.singletonList(dep1), downloaded);
+  }
+}
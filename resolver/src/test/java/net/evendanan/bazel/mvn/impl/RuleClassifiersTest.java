@@ -1,16 +1,24 @@
 package net.evendanan.bazel.mvn.impl;
 
+import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import net.evendanan.bazel.mvn.api.RuleClassifier;
 import net.evendanan.bazel.mvn.api.TargetsBuilder;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+import net.evendanan.http.HttpTransport;
+import net.evendanan.http.RangedZipReader;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -66,7 +74,8 @@ public class RuleClassifiersTest {
           }
         };
     Assert.assertTrue(
-        new RuleClassifiers.JarInspector(dependencyURIFunction)
+        new RuleClassifiers.JarInspector(
+                dependencyURIFunction, LockfileBaseline.empty(), null, null)
             .findAllPossibleBuilders(dependency)
             .isEmpty());
   }
@@ -83,7 +92,8 @@ public class RuleClassifiersTest {
           }
         };
     final TargetsBuilder processorFormatter =
-        new RuleClassifiers.JarInspector(dependencyURIFunction)
+        new RuleClassifiers.JarInspector(
+                dependencyURIFunction, LockfileBaseline.empty(), null, null)
             .findAllPossibleBuilders(dependency).stream()
                 .filter(
                     possibleBuilder ->
@@ -110,7 +120,8 @@ public class RuleClassifiersTest {
           }
         };
     final TargetsBuilder processorFormatter =
-        new RuleClassifiers.JarInspector(dependencyURIFunction)
+        new RuleClassifiers.JarInspector(
+                dependencyURIFunction, LockfileBaseline.empty(), null, null)
             .findAllPossibleBuilders(dependency).stream()
                 .filter(
                     targetsBuilder -> targetsBuilder instanceof TargetsBuilders.JavaPluginFormatter)
@@ -139,7 +150,8 @@ public class RuleClassifiersTest {
           }
         };
     final TargetsBuilder processorFormatter =
-        new RuleClassifiers.JarInspector(dependencyURIFunction)
+        new RuleClassifiers.JarInspector(
+                dependencyURIFunction, LockfileBaseline.empty(), null, null)
             .findAllPossibleBuilders(dependency).stream()
                 .filter(
                     targetsBuilder -> targetsBuilder instanceof TargetsBuilders.JavaPluginFormatter)
@@ -153,6 +165,148 @@ public class RuleClassifiersTest {
         "com.spotify.dataenum.processor.DataEnumProcessor", processorClasses.get(0));
   }
 
+  @Test
+  public void testJarInspector_java_plugin_local_file() throws Exception {
+    final Dependency dependency = Dependency.builder().mavenCoordinate(mMavenCoordinate).build();
+    final File localJar = File.createTempFile("testJarInspector_java_plugin_local_file", ".jar");
+    Files.write(
+        localJar.toPath(),
+        Resources.toByteArray(Resources.getResource("dataenum-processor-1.0.2.jar")));
+
+    final List<TargetsBuilder> builders =
+        new RuleClassifiers.JarInspector(
+                dep -> localJar.toURI(), LockfileBaseline.empty(), null, null)
+            .findAllPossibleBuilders(dependency);
+    Assert.assertEquals(1, builders.size());
+    Assert.assertEquals(
+        Collections.singletonList("com.spotify.dataenum.processor.DataEnumProcessor"),
+        ((TargetsBuilders.JavaPluginFormatter) builders.get(0)).getProcessorClasses());
+  }
+
+  @Test
+  public void testJarInspector_local_file_reads_only_services_entry() throws Exception {
+    final Dependency dependency = Dependency.builder().mavenCoordinate(mMavenCoordinate).build();
+    final File localJar = File.createTempFile("testJarInspector_local_file", ".jar");
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(localJar))) {
+      zipOutputStream.putNextEntry(new ZipEntry("net/evendanan/Large.class"));
+      zipOutputStream.write(new byte[1024 * 1024]);
+      zipOutputStream.closeEntry();
+      // the services entry is matched regardless of case
+      zipOutputStream.putNextEntry(
+          new ZipEntry("meta-inf/services/javax.annotation.processing.processor"));
+      zipOutputStream.write(
+          "# processors\nnet.evendanan.FirstProcessor\n\n net.evendanan.SecondProcessor \n"
+              .getBytes(Charsets.UTF_8));
+      zipOutputStream.closeEntry();
+    }
+
+    final List<TargetsBuilder> builders =
+        new RuleClassifiers.JarInspector(
+                dep -> localJar.toURI(), LockfileBaseline.empty(), null, null)
+            .findAllPossibleBuilders(dependency);
+    Assert.assertEquals(1, builders.size());
+    Assert.assertEquals(
+        Arrays.asList("net.evendanan.FirstProcessor", "net.evendanan.SecondProcessor"),
+        ((TargetsBuilders.JavaPluginFormatter) builders.get(0)).getProcessorClasses());
+  }
+
+  @Test
+  public void testJarInspector_remote_does_not_download() throws Exception {
+    final File remoteJar = File.createTempFile("testJarInspector_remote", ".jar");
+    Files.write(
+        remoteJar.toPath(),
+        Resources.toByteArray(Resources.getResource("dataenum-processor-1.0.2.jar")));
+    final Dependency dependency =
+        Dependency.builder()
+            .mavenCoordinate(mMavenCoordinate)
+            .url(remoteJar.toURI().toString())
+            .build();
+
+    final List<TargetsBuilder> builders =
+        new RuleClassifiers.JarInspector(
+                dep -> {
+                  throw new AssertionError("should not download " + dep);
+                },
+                LockfileBaseline.empty(),
+                new RangedZipReader(HttpTransport.offline()),
+                null)
+            .findAllPossibleBuilders(dependency);
+    Assert.assertEquals(1, builders.size());
+    Assert.assertEquals(
+        Collections.singletonList("com.spotify.dataenum.processor.DataEnumProcessor"),
+        ((TargetsBuilders.JavaPluginFormatter) builders.get(0)).getProcessorClasses());
+  }
+
+  @Test
+  public void testJarInspector_remote_falls_back_to_download() throws Exception {
+    final Dependency dependency =
+        Dependency.builder()
+            .mavenCoordinate(mMavenCoordinate)
+            .url("https://example.com/dataenum-processor-1.0.2.jar")
+            .build();
+    final URI downloaded = Resources.getResource("dataenum-processor-1.0.2.jar").toURI();
+
+    // an offline transport can not fetch ranges of https URLs
+    final List<TargetsBuilder> builders =
+        new RuleClassifiers.JarInspector(
+                dep -> downloaded,
+                LockfileBaseline.empty(),
+                new RangedZipReader(HttpTransport.offline()),
+                null)
+            .findAllPossibleBuilders(dependency);
+    Assert.assertEquals(1, builders.size());
+    Assert.assertEquals(
+        Collections.singletonList("com.spotify.dataenum.processor.DataEnumProcessor"),
+        ((TargetsBuilders.JavaPluginFormatter) builders.get(0)).getProcessorClasses());
+  }
+
+  @Test
+  public void testJarInspector_cached_inspection_does_not_read_jar() throws Exception {
+    final JarInspectionCache cache =
+        new JarInspectionCache(Files.createTempDirectory("testJarInspector_cached").toFile(), null);
+    final Dependency dependency =
+        Dependency.builder()
+            .mavenCoordinate(mMavenCoordinate)
+            .url("https://example.com/dataenum-processor-1.0.2.jar")
+            .build();
+    final URI downloaded = Resources.getResource("dataenum-processor-1.0.2.jar").toURI();
+    new RuleClassifiers.JarInspector(dep -> downloaded, LockfileBaseline.empty(), null, cache)
+        .findAllPossibleBuilders(dependency);
+
+    final List<TargetsBuilder> builders =
+        new RuleClassifiers.JarInspector(
+                dep -> {
+                  throw new AssertionError("should not download " + dep);
+                },
+                LockfileBaseline.empty(),
+                null,
+                cache)
+            .findAllPossibleBuilders(dependency);
+    Assert.assertEquals(1, builders.size());
+    Assert.assertEquals(
+        Collections.singletonList("com.spotify.dataenum.processor.DataEnumProcessor"),
+        ((TargetsBuilders.JavaPluginFormatter) builders.get(0)).getProcessorClasses());
+  }
+
+  @Test
+  public void testJarInspector_failed_inspection_is_not_cached() throws Exception {
+    final JarInspectionCache cache =
+        new JarInspectionCache(Files.createTempDirectory("testJarInspector_failed").toFile(), null);
+    final Dependency dependency =
+        Dependency.builder()
+            .mavenCoordinate(mMavenCoordinate)
+            .url("https://example.com/dataenum-processor-1.0.2.jar")
+            .build();
+    final File missing = new File("/not/a/real/path/dataenum-processor-1.0.2.jar");
+
+    Assert.assertTrue(
+        new RuleClassifiers.JarInspector(
+                dep -> missing.toURI(), LockfileBaseline.empty(), null, cache)
+            .findAllPossibleBuilders(dependency)
+            .isEmpty());
+    Assert.assertNull(cache.find(dependency));
+  }
+
   @Test
   public void testPriority() {
     RuleClassifier classifier1 = Mockito.mock(RuleClassifier.class);
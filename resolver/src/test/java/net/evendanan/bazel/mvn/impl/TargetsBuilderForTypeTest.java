@@ -10,6 +10,9 @@ import org.junit.Test;
 
 public class TargetsBuilderForTypeTest {
 
+  private static final RuleClassifiers.JarInspector NO_JAR_INSPECTOR =
+      new RuleClassifiers.JarInspector(dep -> null, LockfileBaseline.empty(), null, null);
+
   private Dependency dependency;
 
   @Before
@@ -22,7 +25,7 @@ public class TargetsBuilderForTypeTest {
   public void generateBuilderForTheRightType() {
     AtomicReference<TargetType> returnValue = new AtomicReference<>(TargetType.jar);
     TargetsBuilderForType underTest =
-        new TargetsBuilderForType(mvn -> returnValue.get(), dep -> null);
+        new TargetsBuilderForType(mvn -> returnValue.get(), NO_JAR_INSPECTOR);
 
     returnValue.set(TargetType.jar);
     Assert.assertSame(TargetsBuilders.JAVA_IMPORT, underTest.generateBuilder(dependency));
@@ -46,14 +49,14 @@ public class TargetsBuilderForTypeTest {
 
   @Test(expected = IllegalArgumentException.class)
   public void testThrowsExceptionOnNullType() {
-    TargetsBuilderForType underTest = new TargetsBuilderForType(mvn -> null, dep -> null);
+    TargetsBuilderForType underTest = new TargetsBuilderForType(mvn -> null, NO_JAR_INSPECTOR);
     underTest.generateBuilder(dependency);
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void testThrowsExceptionOnUnhandledType() {
     TargetsBuilderForType underTest =
-        new TargetsBuilderForType(mvn -> TargetType.valueOf("unknown"), dep -> null);
+        new TargetsBuilderForType(mvn -> TargetType.valueOf("unknown"), NO_JAR_INSPECTOR);
     underTest.generateBuilder(dependency);
   }
 }
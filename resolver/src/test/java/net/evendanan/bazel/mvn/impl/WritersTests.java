@@ -1,10 +1,19 @@
 package net.evendanan.bazel.mvn.impl;
 
 import java.io.File;
+import java.math.BigInteger;
 import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import net.evendanan.bazel.mvn.api.DependencyTools;
 import net.evendanan.bazel.mvn.api.Target;
@@ -15,6 +24,22 @@ import org.junit.Test;
 
 public class WritersTests {
 
+  private static Function<Dependency, String> sha256Of(Function<Dependency, URI> downloader) {
+    return dependency -> {
+      try {
+        return String.format(
+            Locale.ROOT,
+            "%064x",
+            new BigInteger(
+                1,
+                MessageDigest.getInstance("SHA-256")
+                    .digest(Files.readAllBytes(Paths.get(downloader.apply(dependency))))));
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    };
+  }
+
   @Test
   public void testHttpTargetsBuilderWithSha() throws Exception {
     final Function<Dependency, URI> dependencyURIFunction =
@@ -28,7 +53,8 @@ public class WritersTests {
           }
         };
     final TargetsBuilders.HttpTargetsBuilder httpTargetsBuilder =
-        new TargetsBuilders.HttpTargetsBuilder(true, dependencyURIFunction);
+        new TargetsBuilders.HttpTargetsBuilder(
+            true, LockfileBaseline.empty(), sha256Of(dependencyURIFunction));
 
     final List<Target> targets =
         httpTargetsBuilder.buildTargets(
@@ -64,7 +90,8 @@ public class WritersTests {
           }
         };
     final TargetsBuilders.HttpTargetsBuilder httpTargetsBuilder =
-        new TargetsBuilders.HttpTargetsBuilder(true, dependencyURIFunction);
+        new TargetsBuilders.HttpTargetsBuilder(
+            true, LockfileBaseline.empty(), sha256Of(dependencyURIFunction));
 
     final List<Target> targets =
         httpTargetsBuilder.buildTargets(
@@ -78,4 +105,74 @@ public class WritersTests {
     Assert.assertEquals(1, targets.size());
     Assert.assertFalse(targets.get(0).outputString("").contains("sha256"));
   }
+
+  @Test
+  public void testHttpTargetsBuilderTakesShaFromProvider() {
+    final TargetsBuilders.HttpTargetsBuilder httpTargetsBuilder =
+        new TargetsBuilders.HttpTargetsBuilder(
+            true, LockfileBaseline.empty(), dep -> "sha-of-" + dep.mavenCoordinate().artifactId());
+
+    final List<Target> targets =
+        httpTargetsBuilder.buildTargets(
+            Dependency.builder()
+                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "1.2.3", "jar"))
+                .url("https://maven.central.org/repo/net/evendanan/dep1/dep1-1.2.3.jar")
+                .build(),
+            DependencyTools.DEFAULT);
+
+    Assert.assertEquals(1, targets.size());
+    Assert.assertTrue(targets.get(0).outputString("").contains("sha256 = \"sha-of-dep1\""));
+  }
+
+  @Test
+  public void testHttpTargetsBuilderWithShaOnSeveralThreads() throws Exception {
+    final int artifactsCount = 16;
+    final File[] files = new File[artifactsCount];
+    final String[] expectedShas = new String[artifactsCount];
+    for (int artifactIndex = 0; artifactIndex < artifactsCount; artifactIndex++) {
+      final byte[] content = new byte[256 * 1024];
+      Arrays.fill(content, (byte) artifactIndex);
+      files[artifactIndex] =
+          File.createTempFile("testHttpTargetsBuilderWithShaOnSeveralThreads", "test");
+      Files.write(files[artifactIndex].toPath(), content);
+      expectedShas[artifactIndex] =
+          String.format(
+              Locale.ROOT,
+              "%064x",
+              new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+    }
+    final TargetsBuilders.HttpTargetsBuilder httpTargetsBuilder =
+        new TargetsBuilders.HttpTargetsBuilder(
+            true,
+            LockfileBaseline.empty(),
+            sha256Of(dep -> files[Integer.parseInt(dep.mavenCoordinate().artifactId())].toURI()));
+
+    final ExecutorService executor = Executors.newFixedThreadPool(artifactsCount);
+    try {
+      final List<Future<List<Target>>> pendingTargets = new ArrayList<>();
+      for (int artifactIndex = 0; artifactIndex < artifactsCount; artifactIndex++) {
+        final Dependency dependency =
+            Dependency.builder()
+                .mavenCoordinate(
+                    MavenCoordinate.create("net.evendanan", "" + artifactIndex, "1.2.3", "jar"))
+                .url("https://maven.central.org/repo/net/evendanan/dep-" + artifactIndex + ".jar")
+                .build();
+        pendingTargets.add(
+            executor.submit(
+                () -> httpTargetsBuilder.buildTargets(dependency, DependencyTools.DEFAULT)));
+      }
+
+      for (int artifactIndex = 0; artifactIndex < artifactsCount; artifactIndex++) {
+        final List<Target> targets = pendingTargets.get(artifactIndex).get();
+        Assert.assertEquals(1, targets.size());
+        Assert.assertTrue(
+            targets
+                .get(0)
+                .outputString("")
+                .contains("sha256 = \"" + expectedShas[artifactIndex] + "\""));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
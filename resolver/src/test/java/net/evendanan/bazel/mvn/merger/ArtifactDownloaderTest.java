@@ -19,6 +19,11 @@ import org.junit.Test;
 
 public class ArtifactDownloaderTest {
 
+  private static final String TEST_OUTPUT_SHA256 =
+      "bd7e7256257150da48bb20d21779be9527710f3a31bbb6f1cdb4e200cc5b887e";
+  private static final String CHANGED_SHA256 =
+      "d67e2e944994496c8d8ec76eed0cf9f09679448d584b532bebf941852a37f5ed";
+
   private TestOpener mTestOpener;
   private Dependency mDependency;
   private File expectedOutputFile;
@@ -87,6 +92,62 @@ public class ArtifactDownloaderTest {
         Integer.valueOf(1), mTestOpener.mAccessCounters.get(new URL(mDependency.url())));
   }
 
+  @Test
+  public void testCalculatesSha256WhileDownloading() throws Exception {
+    final String sha256 = mUnderTest.getSha256ForDependency(mDependency);
+
+    Assert.assertEquals(TEST_OUTPUT_SHA256, sha256);
+    Assert.assertTrue(expectedOutputFile.exists());
+    final File sidecar = ArtifactDownloader.sha256Sidecar(expectedOutputFile);
+    Assert.assertEquals(
+        TEST_OUTPUT_SHA256
+            + " "
+            + expectedOutputFile.length()
+            + " "
+            + expectedOutputFile.lastModified(),
+        new String(Files.readAllBytes(sidecar.toPath()), Charsets.UTF_8));
+    Assert.assertEquals(
+        Integer.valueOf(1), mTestOpener.mAccessCounters.get(new URL(mDependency.url())));
+  }
+
+  @Test
+  public void testReadsSha256FromSidecar() throws Exception {
+    mUnderTest.getLocalUriForDependency(mDependency);
+    // a digest which could only come from the sidecar
+    final String recordedSha256 =
+        "0000000000000000000000000000000000000000000000000000000000000000";
+    Files.write(
+        ArtifactDownloader.sha256Sidecar(expectedOutputFile).toPath(),
+        (recordedSha256
+                + " "
+                + expectedOutputFile.length()
+                + " "
+                + expectedOutputFile.lastModified())
+            .getBytes(Charsets.UTF_8));
+
+    Assert.assertEquals(recordedSha256, mUnderTest.getSha256ForDependency(mDependency));
+  }
+
+  @Test
+  public void testCalculatesSha256OfExistingFileWithoutSidecar() throws Exception {
+    Files.write(expectedOutputFile.toPath(), "changed".getBytes(Charsets.UTF_8));
+
+    Assert.assertEquals(CHANGED_SHA256, mUnderTest.getSha256ForDependency(mDependency));
+    Assert.assertTrue(ArtifactDownloader.sha256Sidecar(expectedOutputFile).isFile());
+    Assert.assertFalse(mTestOpener.mAccessCounters.containsKey(new URL(mDependency.url())));
+  }
+
+  @Test
+  public void testRecalculatesSha256IfFileChangedSinceSidecar() throws Exception {
+    Assert.assertEquals(TEST_OUTPUT_SHA256, mUnderTest.getSha256ForDependency(mDependency));
+
+    Files.write(expectedOutputFile.toPath(), "changed".getBytes(Charsets.UTF_8));
+
+    Assert.assertEquals(CHANGED_SHA256, mUnderTest.getSha256ForDependency(mDependency));
+    Assert.assertEquals(
+        Integer.valueOf(1), mTestOpener.mAccessCounters.get(new URL(mDependency.url())));
+  }
+
   private static class TestOpener implements ArtifactDownloader.ConnectionOpener {
     private static String TEST_OUTPUT = "testing 1 2 3";
     private Map<URL, Integer> mAccessCounters = new HashMap<>();
@@ -0,0 +1,329 @@
+package net.evendanan.bazel.mvn.merger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import net.evendanan.bazel.mvn.TestUtils;
+import net.evendanan.bazel.mvn.api.model.Dependency;
+import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
+import net.evendanan.bazel.mvn.api.model.Resolution;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactGraphTest {
+
+  private static MavenCoordinate coordinate(String artifactId, String version) {
+    return MavenCoordinate.create("net.evendanan", artifactId, version, "");
+  }
+
+  private static Dependency dependency(String artifactId, String version, String... dependencies) {
+    return Dependency.builder()
+        .mavenCoordinate(coordinate(artifactId, version))
+        .dependencies(
+            Arrays.stream(dependencies)
+                .map(dependency -> coordinate(dependency, "1"))
+                .collect(Collectors.toList()))
+        .url("https://example.com/" + artifactId + "-" + version + ".jar")
+        .build();
+  }
+
+  private static MavenCoordinate latticeCoordinate(String side, int level) {
+    return MavenCoordinate.create("lattice", side + level, "1", "jar");
+  }
+
+  private static String edge(CompactGraph graph, int from, int to) {
+    return graph.coordinate(from).artifactId() + "->" + graph.coordinate(to).artifactId();
+  }
+
+  private static Resolution createDiamondLattice() {
+    final MavenCoordinate root = coordinate("root", "1");
+    return Resolution.create(
+        root, TestUtils.createDiamondLattice(root, coordinate("bottom", "1")));
+  }
+
+  @Test
+  public void testInternsCoordinatesAndKeys() {
+    final CompactGraph graph =
+        CompactGraph.ofDependencies(
+            Arrays.asList(
+                dependency("root", "1", "a", "b"),
+                dependency("a", "1", "b"),
+                dependency("a", "2"),
+                dependency("b", "1")));
+
+    Assert.assertEquals(4, graph.nodesCount());
+    Assert.assertEquals(3, graph.keysCount());
+    final int a1 = graph.nodeId(coordinate("a", "1"));
+    final int a2 = graph.nodeId(coordinate("a", "2"));
+    Assert.assertNotEquals(a1, a2);
+    Assert.assertEquals(graph.key(a1), graph.key(a2));
+    Assert.assertEquals(graph.key(a1), graph.keyId(coordinate("a", "3")));
+    Assert.assertEquals(-1, graph.nodeId(coordinate("a", "3")));
+    Assert.assertEquals(-1, graph.keyId(coordinate("c", "1")));
+    Assert.assertEquals(coordinate("a", "2"), graph.coordinate(a2));
+    Assert.assertArrayEquals(
+        new int[] {graph.nodeId(coordinate("b", "1"))}, graph.dependencies(a1));
+  }
+
+  @Test
+  public void testReferencedOnlyNodesAreNotDefined() {
+    final CompactGraph graph =
+        CompactGraph.ofDependencies(Collections.singletonList(dependency("root", "1", "a")));
+
+    final int a = graph.nodeId(coordinate("a", "1"));
+    Assert.assertTrue(a >= 0);
+    Assert.assertFalse(graph.isDefined(a));
+    Assert.assertTrue(graph.isDefined(graph.nodeId(coordinate("root", "1"))));
+    Assert.assertArrayEquals(
+        new int[] {graph.nodeId(coordinate("root", "1"))}, graph.definitionOrder());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testFailsOnAttributesOfUndefinedNode() {
+    final CompactGraph graph =
+        CompactGraph.ofDependencies(Collections.singletonList(dependency("root", "1", "a")));
+
+    graph.attributes(graph.nodeId(coordinate("a", "1")));
+  }
+
+  @Test
+  public void testGrowsWhileDefiningNode() {
+    // the root is defined before its children, so interning them grows the columns
+    final String[] children = new String[100];
+    for (int index = 0; index < children.length; index++) children[index] = "child" + index;
+    final CompactGraph graph =
+        CompactGraph.ofDependencies(Collections.singletonList(dependency("root", "1", children)));
+
+    final int root = graph.nodeId(coordinate("root", "1"));
+    Assert.assertEquals(101, graph.nodesCount());
+    Assert.assertEquals(100, graph.dependencies(root).length);
+    Assert.assertEquals(100, graph.children(root).length);
+    Assert.assertEquals(coordinate("child99", "1"), graph.coordinate(graph.dependencies(root)[99]));
+  }
+
+  @Test
+  public void testFirstDefinitionWinsForDependencies() {
+    final Dependency first = dependency("a", "1", "b");
+    final CompactGraph graph =
+        CompactGraph.ofDependencies(Arrays.asList(first, dependency("a", "1", "c")));
+
+    final int a = graph.nodeId(coordinate("a", "1"));
+    Assert.assertSame(first, graph.attributes(a));
+    Assert.assertArrayEquals(new int[] {graph.nodeId(coordinate("b", "1"))}, graph.dependencies(a));
+  }
+
+  @Test
+  public void testLastDefinitionWinsForResolutions() {
+    final Dependency last = dependency("a", "1", "c");
+    final CompactGraph graph =
+        CompactGraph.ofResolutions(
+            Arrays.asList(
+                Resolution.create(
+                    coordinate("a", "1"), Collections.singletonList(dependency("a", "1", "b"))),
+                Resolution.create(coordinate("a", "1"), Collections.singletonList(last))));
+
+    final int a = graph.nodeId(coordinate("a", "1"));
+    Assert.assertSame(last, graph.attributes(a));
+    Assert.assertArrayEquals(new int[] {a, a}, graph.roots());
+    Assert.assertArrayEquals(new int[] {a}, graph.definitionOrder());
+  }
+
+  @Test
+  public void testFirstDefinitionWinsForResolution() {
+    final Dependency first = dependency("a", "1", "b");
+    final CompactGraph graph =
+        CompactGraph.ofResolution(
+            Resolution.create(
+                coordinate("root", "1"),
+                Arrays.asList(dependency("root", "1", "a"), first, dependency("a", "1", "c"))));
+
+    final int a = graph.nodeId(coordinate("a", "1"));
+    Assert.assertSame(first, graph.attributes(a));
+    Assert.assertArrayEquals(new int[] {graph.nodeId(coordinate("root", "1"))}, graph.roots());
+    Assert.assertArrayEquals(new int[] {graph.nodeId(coordinate("b", "1"))}, graph.dependencies(a));
+  }
+
+  @Test
+  public void testChildrenAreDistinct() {
+    final CompactGraph graph =
+        CompactGraph.ofDependencies(
+            Collections.singletonList(
+                Dependency.builder(dependency("root", "1", "a", "b", "a"))
+                    .exports(Arrays.asList(coordinate("b", "1"), coordinate("c", "1")))
+                    .runtimeDependencies(Collections.singletonList(coordinate("a", "1")))
+                    .build()));
+
+    Assert.assertArrayEquals(
+        new int[] {
+          graph.nodeId(coordinate("a", "1")),
+          graph.nodeId(coordinate("b", "1")),
+          graph.nodeId(coordinate("c", "1"))
+        },
+        graph.children(graph.nodeId(coordinate("root", "1"))));
+  }
+
+  @Test
+  public void testDfsVisitsOncePerRoot() {
+    final List<Resolution> resolutions =
+        Arrays.asList(
+            Resolution.create(
+                coordinate("root", "1"),
+                Arrays.asList(
+                    dependency("root", "1", "a", "b"),
+                    dependency("a", "1", "c"),
+                    dependency("b", "1", "c", "a"),
+                    dependency("c", "1", "a"))),
+            Resolution.create(
+                coordinate("b", "1"),
+                Arrays.asList(
+                    dependency("b", "1", "c", "a"),
+                    dependency("a", "1", "c"),
+                    dependency("c", "1", "a"))));
+
+    final CompactGraph graph = CompactGraph.ofResolutions(resolutions);
+    final List<String> visits = new ArrayList<>();
+    graph.dfs((node, level) -> visits.add(graph.coordinate(node).artifactId() + "@" + level));
+
+    Assert.assertEquals(
+        Arrays.asList("root@1", "a@2", "c@3", "b@2", "b@1", "c@2", "a@3"), visits);
+    // the first traversal reaches c at level 3, but it is a direct dependency of the second root
+    final int[] depths = graph.minimalDepths();
+    Assert.assertEquals(1, depths[graph.nodeId(coordinate("root", "1"))]);
+    Assert.assertEquals(1, depths[graph.nodeId(coordinate("b", "1"))]);
+    Assert.assertEquals(2, depths[graph.nodeId(coordinate("a", "1"))]);
+    Assert.assertEquals(2, depths[graph.nodeId(coordinate("c", "1"))]);
+  }
+
+  @Test
+  public void testDfsReportsCycles() {
+    final CompactGraph graph =
+        CompactGraph.ofResolutions(
+            Collections.singleton(
+                Resolution.create(
+                    coordinate("root", "1"),
+                    Arrays.asList(
+                        dependency("root", "1", "a"),
+                        dependency("a", "1", "b"),
+                        dependency("b", "1", "a", "c"),
+                        dependency("c", "1")))));
+    final List<String> visits = new ArrayList<>();
+    final List<String> cycles = new ArrayList<>();
+
+    graph.dfs(
+        (node, level) -> visits.add(graph.coordinate(node).artifactId()),
+        (from, to) -> cycles.add(edge(graph, from, to)));
+
+    Assert.assertEquals(Arrays.asList("root", "a", "b", "c"), visits);
+    Assert.assertEquals(Collections.singletonList("b->a"), cycles);
+    final int[] depths = graph.minimalDepths();
+    Assert.assertEquals(2, depths[graph.nodeId(coordinate("a", "1"))]);
+    Assert.assertEquals(3, depths[graph.nodeId(coordinate("b", "1"))]);
+    Assert.assertEquals(4, depths[graph.nodeId(coordinate("c", "1"))]);
+  }
+
+  @Test
+  public void testMinimalDepthsOfUnreachableNodesAreZero() {
+    final CompactGraph graph =
+        CompactGraph.ofResolutions(
+            Collections.singleton(
+                Resolution.create(
+                    coordinate("root", "1"),
+                    Arrays.asList(dependency("root", "1"), dependency("a", "1")))));
+
+    Assert.assertEquals(1, graph.minimalDepths()[graph.nodeId(coordinate("root", "1"))]);
+    Assert.assertEquals(0, graph.minimalDepths()[graph.nodeId(coordinate("a", "1"))]);
+  }
+
+  @Test(timeout = 5000)
+  public void testDfsVisitsDiamondLatticeOnce() {
+    final CompactGraph graph =
+        CompactGraph.ofResolutions(Collections.singleton(createDiamondLattice()));
+    final int[] visits = new int[graph.nodesCount()];
+
+    final List<Integer> cycles = new ArrayList<>();
+
+    graph.dfs((node, level) -> visits[node]++, (from, to) -> cycles.add(to));
+
+    Assert.assertEquals(2 + 2 * TestUtils.DIAMOND_LATTICE_LEVELS, visits.length);
+    for (int count : visits) {
+      Assert.assertEquals(1, count);
+    }
+    Assert.assertTrue(cycles.isEmpty());
+  }
+
+  @Test(timeout = 5000)
+  public void testMinimalDepthsOfDiamondLattice() {
+    final CompactGraph graph =
+        CompactGraph.ofResolutions(Collections.singleton(createDiamondLattice()));
+
+    final int[] depths = graph.minimalDepths();
+
+    Assert.assertEquals(1, depths[graph.nodeId(coordinate("root", "1"))]);
+    for (int level = 1; level <= TestUtils.DIAMOND_LATTICE_LEVELS; level++) {
+      Assert.assertEquals(level + 1, depths[graph.nodeId(latticeCoordinate("left", level))]);
+      Assert.assertEquals(level + 1, depths[graph.nodeId(latticeCoordinate("right", level))]);
+    }
+    Assert.assertEquals(
+        TestUtils.DIAMOND_LATTICE_LEVELS + 2, depths[graph.nodeId(coordinate("bottom", "1"))]);
+  }
+
+  @Test(timeout = 5000)
+  public void testReportsCyclesOfCyclicDiamondLattice() {
+    final MavenCoordinate root = coordinate("root", "1");
+    final CompactGraph graph =
+        CompactGraph.ofResolutions(
+            Collections.singleton(
+                Resolution.create(root, TestUtils.createDiamondLattice(root, root))));
+    final List<String> cycles = new ArrayList<>();
+
+    graph.dfs(
+        (node, level) -> {},
+        (from, to) -> cycles.add(edge(graph, from, to)));
+
+    // both artifacts of the last level close a cycle back to the root
+    final int lastLevel = TestUtils.DIAMOND_LATTICE_LEVELS;
+    Assert.assertEquals(
+        Arrays.asList("left" + lastLevel + "->root", "right" + lastLevel + "->root"), cycles);
+    final int[] depths = graph.minimalDepths();
+    Assert.assertEquals(1, depths[graph.nodeId(root)]);
+    Assert.assertEquals(lastLevel + 1, depths[graph.nodeId(latticeCoordinate("left", lastLevel))]);
+  }
+
+  @Test(timeout = 5000)
+  public void testMergesDiamondLattice() {
+    final Collection<Dependency> merged =
+        new DefaultMerger(new PinLatestVersionMerger())
+            .mergeGraphs(Collections.singleton(createDiamondLattice()));
+
+    Assert.assertEquals(2 + 2 * TestUtils.DIAMOND_LATTICE_LEVELS, merged.size());
+  }
+
+  @Test
+  public void testToDependencyMapsAndDropsRepeatedEdges() {
+    final CompactGraph graph =
+        CompactGraph.ofDependencies(
+            Arrays.asList(
+                dependency("root", "1", "a", "b", "a"),
+                dependency("a", "1"),
+                dependency("a", "2"),
+                dependency("b", "1")));
+    final int root = graph.nodeId(coordinate("root", "1"));
+    final int a1 = graph.nodeId(coordinate("a", "1"));
+    final int a2 = graph.nodeId(coordinate("a", "2"));
+
+    final Dependency identity =
+        graph.toDependency(graph.attributes(root), root, IntUnaryOperator.identity());
+    Assert.assertEquals(
+        Arrays.asList(coordinate("a", "1"), coordinate("b", "1")), identity.dependencies());
+    Assert.assertEquals(graph.attributes(root).url(), identity.url());
+
+    final Dependency mapped =
+        graph.toDependency(graph.attributes(root), root, node -> node == a1 ? a2 : node);
+    Assert.assertEquals(
+        Arrays.asList(coordinate("a", "2"), coordinate("b", "1")), mapped.dependencies());
+  }
+}
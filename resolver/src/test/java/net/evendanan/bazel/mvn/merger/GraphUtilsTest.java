@@ -93,4 +93,20 @@ public class GraphUtilsTest {
                 seen.add(dependency.mavenCoordinate())));
     Assert.assertEquals(4, seen.size());
   }
+
+  @Test(expected = NullPointerException.class)
+  public void testFailsOnUnknownDependency() {
+    final Resolution resolution =
+        Resolution.create(
+            MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""),
+            Collections.singletonList(
+                Dependency.builder()
+                    .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
+                    .dependencies(
+                        Collections.singleton(
+                            MavenCoordinate.create("net.evendanan", "inner1", "0.1", "")))
+                    .build()));
+
+    GraphUtils.dfsTraveller(Collections.singleton(resolution), (dependency, level) -> {});
+  }
 }
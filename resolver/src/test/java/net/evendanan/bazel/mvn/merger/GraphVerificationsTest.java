@@ -2,9 +2,12 @@ package net.evendanan.bazel.mvn.merger;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 import net.evendanan.bazel.mvn.api.model.Resolution;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -45,46 +48,27 @@ public class GraphVerificationsTest {
                     .build()));
   }
 
-  @Test
-  public void checkNoConflictingVersions_HappyPath() {
-    GraphVerifications.checkNoConflictingVersions(mBasicResolution.allResolvedDependencies());
-  }
-
-  @Test(expected = GraphVerifications.InvalidGraphException.class)
-  public void checkNoConflictingVersions_Fail() {
-    GraphVerifications.checkNoConflictingVersions(
-        Arrays.asList(
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner-inner1", "0.2", ""))
-                .build()));
+  private static void assertViolation(
+      List<GraphVerifications.InvalidGraphException> violations,
+      String checkTitle,
+      String mavenCoordinate) {
+    Assert.assertTrue(
+        violations.toString(),
+        violations.stream()
+            .map(Throwable::getMessage)
+            .anyMatch(m -> m.contains("'" + checkTitle + "'") && m.contains(mavenCoordinate)));
   }
 
   @Test
-  public void checkAllGraphDependenciesAreResolved_HappyPath() {
-    GraphVerifications.checkAllGraphDependenciesAreResolved(mBasicResolution);
-  }
-
-  @Test(expected = NullPointerException.class)
-  public void checkAllGraphDependenciesAreResolved_FailRootMissing() {
-    GraphVerifications.checkAllGraphDependenciesAreResolved(
-        Resolution.create(
-            MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""),
+  public void testNoConflictingVersions_Fail() {
+    assertViolation(
+        GraphVerifications.verifyMergedGraph(
             Arrays.asList(
+                Dependency.builder()
+                    .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
+                    .build(),
                 Dependency.builder()
                     .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
-                    .dependencies(
-                        Arrays.asList(
-                            MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""),
-                            MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", "")))
                     .build(),
                 Dependency.builder()
                     .mavenCoordinate(
@@ -92,15 +76,115 @@ public class GraphVerificationsTest {
                     .build(),
                 Dependency.builder()
                     .mavenCoordinate(
-                        MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", ""))
-                    .build())));
+                        MavenCoordinate.create("net.evendanan", "inner-inner1", "0.2", ""))
+                    .build())),
+        "NoConflictingVersions",
+        "net.evendanan:inner-inner1:0.2");
   }
 
-  @Test(expected = NullPointerException.class)
-  public void checkAllGraphDependenciesAreResolved_FailDependencyMissing() {
-    GraphVerifications.checkAllGraphDependenciesAreResolved(
-        Resolution.create(
-            MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""),
+  @Test
+  public void testVerifyResolution_HappyPath() {
+    Assert.assertTrue(GraphVerifications.verifyResolution(mBasicResolution).isEmpty());
+  }
+
+  @Test
+  public void testAllGraphDependenciesAreResolved_FailRootMissing() {
+    assertViolation(
+        GraphVerifications.verifyResolution(
+            Resolution.create(
+                MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""),
+                Arrays.asList(
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
+                        .dependencies(
+                            Arrays.asList(
+                                MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""),
+                                MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", "")))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", ""))
+                        .build()))),
+        "AllGraphDependenciesAreResolved",
+        "net.evendanan:dep1:0.1");
+  }
+
+  @Test
+  public void testAllGraphDependenciesAreResolved_FailDependencyMissing() {
+    assertViolation(
+        GraphVerifications.verifyResolution(
+            Resolution.create(
+                MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""),
+                Arrays.asList(
+                    Dependency.builder()
+                        .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
+                        .dependencies(
+                            Collections.singleton(
+                                MavenCoordinate.create("net.evendanan", "inner1", "0.1", "")))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
+                        .dependencies(
+                            Arrays.asList(
+                                MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""),
+                                MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", "")))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""))
+                        .build()))),
+        "AllGraphDependenciesAreResolved",
+        "net.evendanan:inner-inner2:0.1");
+  }
+
+  @Test
+  public void testGraphDoesNotHaveDanglingDependencies_Fail() {
+    assertViolation(
+        GraphVerifications.verifyResolution(
+            Resolution.create(
+                MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""),
+                Arrays.asList(
+                    Dependency.builder()
+                        .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
+                        .dependencies(
+                            Collections.singleton(
+                                MavenCoordinate.create("net.evendanan", "inner1", "0.1", "")))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
+                        .dependencies(
+                            Arrays.asList(
+                                MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""),
+                                MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", "")))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", ""))
+                        .build(),
+                    Dependency.builder()
+                        .mavenCoordinate(
+                            MavenCoordinate.create(
+                                "net.evendanan", "inner-inner3" /*dangling*/, "0.1", ""))
+                        .build()))),
+        "GraphDoesNotHaveDanglingDependencies",
+        "net.evendanan:inner-inner3:0.1");
+  }
+
+  @Test
+  public void testAllDependenciesAreResolved_Fail() {
+    assertViolation(
+        GraphVerifications.verifyMergedGraph(
             Arrays.asList(
                 Dependency.builder()
                     .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
@@ -113,24 +197,21 @@ public class GraphVerificationsTest {
                     .dependencies(
                         Arrays.asList(
                             MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""),
-                            MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", "")))
+                            MavenCoordinate.create(
+                                "net.evendanan", "inner-inner2" /*this is missing*/, "0.1", "")))
                     .build(),
                 Dependency.builder()
                     .mavenCoordinate(
                         MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""))
-                    .build())));
+                    .build())),
+        "AllDependenciesAreResolved",
+        "net.evendanan:inner-inner2:0.1");
   }
 
   @Test
-  public void checkGraphDoesNotHaveDanglingDependencies_HappyPath() {
-    GraphVerifications.checkGraphDoesNotHaveDanglingDependencies(mBasicResolution);
-  }
-
-  @Test(expected = GraphVerifications.InvalidGraphException.class)
-  public void checkGraphDoesNotHaveDanglingDependencies_Fail() {
-    GraphVerifications.checkGraphDoesNotHaveDanglingDependencies(
-        Resolution.create(
-            MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""),
+  public void testNoRepeatingDependencies_Fail() {
+    assertViolation(
+        GraphVerifications.verifyMergedGraph(
             Arrays.asList(
                 Dependency.builder()
                     .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
@@ -151,89 +232,134 @@ public class GraphVerificationsTest {
                     .build(),
                 Dependency.builder()
                     .mavenCoordinate(
-                        MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", ""))
+                        MavenCoordinate.create(
+                            "net.evendanan", "inner-inner1" /*repeating*/, "0.1", ""))
                     .build(),
                 Dependency.builder()
                     .mavenCoordinate(
-                        MavenCoordinate.create(
-                            "net.evendanan", "inner-inner3" /*dangling*/, "0.1", ""))
-                    .build())));
+                        MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", ""))
+                    .build())),
+        "NoRepeatingDependencies",
+        "net.evendanan:inner-inner1:0.1");
   }
 
   @Test
-  public void checkAllDependenciesAreResolved_HappyPath() {
-    GraphVerifications.checkAllDependenciesAreResolved(mBasicResolution.allResolvedDependencies());
+  public void testRootResolved_MissingUrl() {
+    final MavenCoordinate root = MavenCoordinate.create("net.evendanan", "dep1", "0.1", "");
+    Resolution resolution =
+        Resolution.create(
+            root, Collections.singletonList(Dependency.builder().mavenCoordinate(root).build()));
+    assertViolation(
+        GraphVerifications.verifyResolution(resolution),
+        "Failed to resolve requested coordinate",
+        "net.evendanan:dep1:0.1");
   }
 
-  @Test(expected = GraphVerifications.InvalidGraphException.class)
-  public void checkAllDependenciesAreResolved_Fail() {
-    GraphVerifications.checkAllDependenciesAreResolved(
-        Arrays.asList(
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
-                .dependencies(
-                    Collections.singleton(
-                        MavenCoordinate.create("net.evendanan", "inner1", "0.1", "")))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
-                .dependencies(
-                    Arrays.asList(
-                        MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""),
-                        MavenCoordinate.create(
-                            "net.evendanan", "inner-inner2" /*this is missing*/, "0.1", "")))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""))
-                .build()));
+  @Test
+  public void testVerifyResolutions_HappyPath() {
+    Assert.assertTrue(
+        GraphVerifications.verifyResolutions(Arrays.asList(mBasicResolution, mBasicResolution))
+            .isEmpty());
+    GraphVerifications.throwIfInvalid(Collections.emptyList());
   }
 
   @Test
-  public void checkNoRepeatingDependencies_HappyPath() {
-    GraphVerifications.checkNoRepeatingDependencies(mBasicResolution.allResolvedDependencies());
+  public void testVerifyResolution_CollectsAllViolations() {
+    final MavenCoordinate root = MavenCoordinate.create("net.evendanan", "dep1", "0.1", "");
+    final Resolution resolution =
+        Resolution.create(
+            root,
+            Arrays.asList(
+                // no url
+                Dependency.builder()
+                    .mavenCoordinate(root)
+                    .dependencies(
+                        Arrays.asList(
+                            MavenCoordinate.create("net.evendanan", "missing1", "0.1", ""),
+                            MavenCoordinate.create("net.evendanan", "inner1", "0.1", "")))
+                    .build(),
+                Dependency.builder()
+                    .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
+                    .runtimeDependencies(
+                        Collections.singleton(
+                            MavenCoordinate.create("net.evendanan", "missing2", "0.1", "")))
+                    .url("https://example.com/inner1.jar")
+                    .build(),
+                Dependency.builder()
+                    .mavenCoordinate(
+                        MavenCoordinate.create("net.evendanan", "dangling", "0.1", ""))
+                    .url("https://example.com/dangling.jar")
+                    .build()));
+
+    final List<String> messages =
+        GraphVerifications.verifyResolutions(Arrays.asList(mBasicResolution, resolution)).stream()
+            .map(Throwable::getMessage)
+            .collect(Collectors.toList());
+
+    Assert.assertEquals(4, messages.size());
+    Assert.assertTrue(messages.get(0).contains("'Failed to resolve requested coordinate'"));
+    Assert.assertTrue(messages.get(0).contains("net.evendanan:dep1:0.1"));
+    Assert.assertTrue(
+        messages.stream()
+            .anyMatch(
+                m ->
+                    m.contains("'AllGraphDependenciesAreResolved'")
+                        && m.contains("net.evendanan:missing1:0.1")));
+    Assert.assertTrue(
+        messages.stream()
+            .anyMatch(
+                m ->
+                    m.contains("'AllGraphDependenciesAreResolved'")
+                        && m.contains("net.evendanan:missing2:0.1")));
+    Assert.assertTrue(messages.get(3).contains("'GraphDoesNotHaveDanglingDependencies'"));
+    Assert.assertTrue(messages.get(3).contains("net.evendanan:dangling:0.1"));
   }
 
-  @Test(expected = GraphVerifications.InvalidGraphException.class)
-  public void checkNoRepeatingDependencies_Fail() {
-    GraphVerifications.checkNoRepeatingDependencies(
-        Arrays.asList(
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
-                .dependencies(
-                    Collections.singleton(
-                        MavenCoordinate.create("net.evendanan", "inner1", "0.1", "")))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner1", "0.1", ""))
-                .dependencies(
-                    Arrays.asList(
-                        MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""),
-                        MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", "")))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner-inner1", "0.1", ""))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(
-                    MavenCoordinate.create(
-                        "net.evendanan", "inner-inner1" /*repeating*/, "0.1", ""))
-                .build(),
-            Dependency.builder()
-                .mavenCoordinate(MavenCoordinate.create("net.evendanan", "inner-inner2", "0.1", ""))
-                .build()));
+  @Test
+  public void testVerifyResolution_MissingRoot() {
+    final MavenCoordinate root = MavenCoordinate.create("net.evendanan", "dep1", "0.1", "");
+
+    final List<GraphVerifications.InvalidGraphException> violations =
+        GraphVerifications.verifyResolution(Resolution.create(root, Collections.emptyList()));
+
+    Assert.assertEquals(2, violations.size());
   }
 
   @Test
-  public void testRootResolved_HappyPath() {
-    GraphVerifications.checkResolutionSuccess(mBasicResolution);
+  public void testVerifyMergedGraph_HappyPath() {
+    Assert.assertTrue(
+        GraphVerifications.verifyMergedGraph(mBasicResolution.allResolvedDependencies())
+            .isEmpty());
   }
 
-  @Test(expected = GraphVerifications.InvalidGraphException.class)
-  public void testRootResolved_MissingUrl() {
-    final MavenCoordinate root = MavenCoordinate.create("net.evendanan", "dep1", "0.1", "");
-    Resolution resolution =
-        Resolution.create(
-            root, Collections.singletonList(Dependency.builder().mavenCoordinate(root).build()));
-    GraphVerifications.checkResolutionSuccess(resolution);
+  @Test
+  public void testVerifyMergedGraph_CollectsAllViolations() {
+    final Dependency dep1 =
+        Dependency.builder()
+            .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.1", ""))
+            .dependencies(
+                Collections.singleton(
+                    MavenCoordinate.create("net.evendanan", "missing", "0.1", "")))
+            .build();
+    final Dependency dep1OtherVersion =
+        Dependency.builder()
+            .mavenCoordinate(MavenCoordinate.create("net.evendanan", "dep1", "0.2", ""))
+            .build();
+
+    final List<GraphVerifications.InvalidGraphException> violations =
+        GraphVerifications.verifyMergedGraph(Arrays.asList(dep1, dep1, dep1OtherVersion));
+
+    Assert.assertEquals(3, violations.size());
+    Assert.assertTrue(violations.get(0).getMessage().contains("'NoRepeatingDependencies'"));
+    Assert.assertTrue(violations.get(1).getMessage().contains("'NoConflictingVersions'"));
+    Assert.assertTrue(violations.get(2).getMessage().contains("'AllDependenciesAreResolved'"));
+
+    try {
+      GraphVerifications.throwIfInvalid(violations);
+      Assert.fail("should have thrown");
+    } catch (GraphVerifications.InvalidGraphException e) {
+      Assert.assertSame(violations.get(0), e);
+      Assert.assertEquals(2, e.getSuppressed().length);
+    }
   }
 }
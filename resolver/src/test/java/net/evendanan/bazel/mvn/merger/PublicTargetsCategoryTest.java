@@ -3,6 +3,7 @@ package net.evendanan.bazel.mvn.merger;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import net.evendanan.bazel.mvn.TestUtils;
 import net.evendanan.bazel.mvn.api.Target;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
@@ -217,4 +218,20 @@ public class PublicTargetsCategoryTest {
       }
     }
   }
+
+  @Test(timeout = 5000)
+  public void testCategoryRecursiveExportsExpandsSharedExportsOnce() {
+    final MavenCoordinate root = MavenCoordinate.create("root", "r", "1", "jar");
+    final List<Dependency> dependencies = TestUtils.createDiamondLattice(root, root);
+
+    Function<Target, Target> underTest =
+        PublicTargetsCategory.create(
+            PublicTargetsCategory.Type.recursive_exports,
+            Collections.singleton(root),
+            dependencies);
+
+    for (Dependency dependency : dependencies) {
+      Assert.assertTrue(underTest.apply(createMainTarget(dependency)).isPublic());
+    }
+  }
 }
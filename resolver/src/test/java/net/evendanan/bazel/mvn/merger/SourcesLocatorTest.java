@@ -1,7 +1,6 @@
 package net.evendanan.bazel.mvn.merger;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.*;
 import net.evendanan.bazel.mvn.api.model.Dependency;
@@ -9,7 +8,6 @@ import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.Mockito;
 
 public class SourcesLocatorTest {
 
@@ -52,11 +50,9 @@ public class SourcesLocatorTest {
 
   @Test
   public void testAddsSourcesIfExists() throws Exception {
-    final HttpURLConnection httpURLConnection = Mockito.mock(HttpURLConnection.class);
-    Mockito.doReturn(200).when(httpURLConnection).getResponseCode();
-    mFakeOpener.returnedConnections.put(new URL(dep1UriSources), httpURLConnection);
-    mFakeOpener.returnedConnections.put(new URL(dep2UriSources), httpURLConnection);
-    mFakeOpener.returnedConnections.put(new URL(dep3UriSources), httpURLConnection);
+    mFakeOpener.returnedCodes.put(new URL(dep1UriSources), 200);
+    mFakeOpener.returnedCodes.put(new URL(dep2UriSources), 200);
+    mFakeOpener.returnedCodes.put(new URL(dep3UriSources), 200);
 
     final List<Dependency> fixedDeps = new ArrayList<>(mUnderTest.fillSourcesAttribute(mTestData));
 
@@ -66,11 +62,9 @@ public class SourcesLocatorTest {
 
   @Test
   public void testDoesNotAddOnException() throws Exception {
-    final HttpURLConnection httpURLConnection = Mockito.mock(HttpURLConnection.class);
-    Mockito.doThrow(new IOException()).when(httpURLConnection).getResponseCode();
-    mFakeOpener.returnedConnections.put(new URL(dep1Uri), httpURLConnection);
-    mFakeOpener.returnedConnections.put(new URL(dep2Uri), httpURLConnection);
-    mFakeOpener.returnedConnections.put(new URL(dep3Uri), httpURLConnection);
+    mFakeOpener.failingUrls.add(new URL(dep1UriSources));
+    mFakeOpener.failingUrls.add(new URL(dep2UriSources));
+    mFakeOpener.failingUrls.add(new URL(dep3UriSources));
 
     final List<Dependency> fixedDeps = new ArrayList<>(mUnderTest.fillSourcesAttribute(mTestData));
 
@@ -80,11 +74,9 @@ public class SourcesLocatorTest {
 
   @Test
   public void testDoesNotAddOnNone200ResponseCode() throws Exception {
-    final HttpURLConnection httpURLConnection = Mockito.mock(HttpURLConnection.class);
-    Mockito.doReturn(400).when(httpURLConnection).getResponseCode();
-    mFakeOpener.returnedConnections.put(new URL(dep1Uri), httpURLConnection);
-    mFakeOpener.returnedConnections.put(new URL(dep2Uri), httpURLConnection);
-    mFakeOpener.returnedConnections.put(new URL(dep3Uri), httpURLConnection);
+    mFakeOpener.returnedCodes.put(new URL(dep1UriSources), 400);
+    mFakeOpener.returnedCodes.put(new URL(dep2UriSources), 400);
+    mFakeOpener.returnedCodes.put(new URL(dep3UriSources), 404);
 
     final List<Dependency> fixedDeps = new ArrayList<>(mUnderTest.fillSourcesAttribute(mTestData));
 
@@ -93,7 +85,7 @@ public class SourcesLocatorTest {
   }
 
   @Test
-  public void testDoesNotAddOnNullConnection() throws Exception {
+  public void testDoesNotAddOnUnknownUrl() throws Exception {
     final List<Dependency> fixedDeps = new ArrayList<>(mUnderTest.fillSourcesAttribute(mTestData));
 
     Assert.assertEquals("", fixedDeps.get(0).sourcesUrl());
@@ -112,15 +104,9 @@ public class SourcesLocatorTest {
 
   @Test
   public void testOnlyQueriesURIOnce() throws Exception {
-    final HttpURLConnection httpURLConnection1 = Mockito.mock(HttpURLConnection.class);
-    Mockito.doReturn(200).when(httpURLConnection1).getResponseCode();
-    mFakeOpener.returnedConnections.put(new URL(dep1UriSources), httpURLConnection1);
-    final HttpURLConnection httpURLConnection2 = Mockito.mock(HttpURLConnection.class);
-    Mockito.doReturn(200).when(httpURLConnection2).getResponseCode();
-    mFakeOpener.returnedConnections.put(new URL(dep2UriSources), httpURLConnection2);
-    final HttpURLConnection httpURLConnection3 = Mockito.mock(HttpURLConnection.class);
-    Mockito.doReturn(200).when(httpURLConnection3).getResponseCode();
-    mFakeOpener.returnedConnections.put(new URL(dep3UriSources), httpURLConnection3);
+    mFakeOpener.returnedCodes.put(new URL(dep1UriSources), 200);
+    mFakeOpener.returnedCodes.put(new URL(dep2UriSources), 200);
+    mFakeOpener.returnedCodes.put(new URL(dep3UriSources), 200);
 
     final List<Dependency> repeatedDeps =
         Arrays.asList(
@@ -139,31 +125,48 @@ public class SourcesLocatorTest {
     Assert.assertEquals(dep1UriSources, fixedDeps.get(1).sourcesUrl());
 
     Assert.assertEquals(1, mFakeOpener.buildsCounter.size());
-    mFakeOpener.buildsCounter.forEach((url, integer) -> Assert.assertEquals(1, integer.intValue()));
+    Assert.assertEquals(1, mFakeOpener.buildsCounter.get(new URL(dep1UriSources)).intValue());
+  }
+
+  @Test
+  public void testDoesNotQueryKnownSources() throws Exception {
+    mFakeOpener.returnedCodes.put(new URL(dep3UriSources), 200);
+
+    final List<Dependency> fixedDeps =
+        new ArrayList<>(
+            mUnderTest.fillSourcesAttribute(
+                mTestData,
+                dependency ->
+                    dependency.url().equals(dep1Uri) ? "https://example.com/known.jar" : null));
 
-    Mockito.verify(httpURLConnection1).getResponseCode();
-    Mockito.verify(httpURLConnection1).setRequestMethod("HEAD");
-    Mockito.verifyNoMoreInteractions(httpURLConnection1);
+    Assert.assertEquals("https://example.com/known.jar", fixedDeps.get(0).sourcesUrl());
+    Assert.assertEquals(dep3UriSources, fixedDeps.get(1).sourcesUrl());
 
-    Mockito.verifyZeroInteractions(httpURLConnection2, httpURLConnection3);
+    Assert.assertEquals(1, mFakeOpener.buildsCounter.size());
+    Assert.assertFalse(mFakeOpener.buildsCounter.containsKey(new URL(dep1UriSources)));
   }
 
   private static class FakeOpener
-      implements net.evendanan.bazel.mvn.merger.SourcesJarLocator.ConnectionFactory {
+      implements net.evendanan.bazel.mvn.merger.SourcesJarLocator.HeadRequester {
 
     private final Map<URL, Integer> buildsCounter = new HashMap<>();
-    private final Map<URL, HttpURLConnection> returnedConnections = new HashMap<>();
+    private final Map<URL, Integer> returnedCodes = new HashMap<>();
+    private final Set<URL> failingUrls = new HashSet<>();
 
     private boolean openFailure = false;
 
     @Override
-    public HttpURLConnection openUrlConnection(final URL url) throws IOException {
+    public int requestHead(final URL url) throws IOException {
       buildsCounter.compute(url, (key, count) -> count == null ? 1 : count + 1);
 
-      if (openFailure) {
+      if (openFailure || failingUrls.contains(url)) {
         throw new IOException("failed to open connection");
       }
-      return returnedConnections.get(url);
+      final Integer code = returnedCodes.get(url);
+      if (code == null) {
+        throw new IOException("unknown url " + url);
+      }
+      return code;
     }
   }
 }
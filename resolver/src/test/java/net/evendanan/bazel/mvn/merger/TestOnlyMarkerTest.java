@@ -3,8 +3,10 @@ package net.evendanan.bazel.mvn.merger;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
+import net.evendanan.bazel.mvn.TestUtils;
 import net.evendanan.bazel.mvn.api.model.Dependency;
 import net.evendanan.bazel.mvn.api.model.MavenCoordinate;
 import net.evendanan.bazel.mvn.api.model.Resolution;
@@ -149,6 +151,49 @@ public class TestOnlyMarkerTest {
         Arrays.asList(junit, appTestUtil), Collections.singleton(junitDep.mavenCoordinate()));
   }
 
+  @Test
+  public void testTravelsEachResolutionWithItsOwnDefinitions() {
+    final Dependency junitDep =
+        Dependency.builder()
+            .mavenCoordinate(MavenCoordinate.create("junit", "junit", "2", "jar"))
+            .build();
+    final MavenCoordinate lib = MavenCoordinate.create("a", "lib", "1", "jar");
+    final MavenCoordinate app = MavenCoordinate.create("app", "app", "1", "jar");
+    final MavenCoordinate testUtil = MavenCoordinate.create("util", "junit-helper", "1", "jar");
+    // the app excludes lib's test-only dependency, the test-util keeps it
+    final Resolution appResolution =
+        Resolution.create(
+            app,
+            Arrays.asList(
+                Dependency.builder().mavenCoordinate(lib).build(),
+                Dependency.builder()
+                    .mavenCoordinate(app)
+                    .dependencies(Collections.singleton(lib))
+                    .build()));
+    final Resolution testUtilResolution =
+        Resolution.create(
+            testUtil,
+            Arrays.asList(
+                junitDep,
+                Dependency.builder()
+                    .mavenCoordinate(lib)
+                    .dependencies(Collections.singleton(junitDep.mavenCoordinate()))
+                    .build(),
+                Dependency.builder()
+                    .mavenCoordinate(testUtil)
+                    .dependencies(Collections.singleton(lib))
+                    .build()));
+
+    final Predicate<MavenCoordinate> marked =
+        TestOnlyMarker.mark(
+            Arrays.asList(appResolution, testUtilResolution),
+            new HashSet<>(Arrays.asList(junitDep.mavenCoordinate(), testUtil)));
+
+    Assert.assertFalse(marked.test(app));
+    Assert.assertTrue(marked.test(lib));
+    Assert.assertTrue(marked.test(testUtil));
+  }
+
   @Test
   public void testReturnsSameIfInitialMapIsEmpty() {
     final Set<MavenCoordinate> emptySet = new HashSet<>();
@@ -161,4 +206,57 @@ public class TestOnlyMarkerTest {
 
     Assert.assertFalse(marked.test(MavenCoordinate.create("a", "b", "1", "jar")));
   }
+
+  @Test(timeout = 5000)
+  public void testMarksDiamondLatticeOnce() {
+    final MavenCoordinate root = MavenCoordinate.create("test", "util", "1", "jar");
+    final MavenCoordinate junit = MavenCoordinate.create("junit", "junit", "2", "jar");
+    final List<Dependency> dependencies = TestUtils.createDiamondLattice(root, junit);
+
+    final Predicate<MavenCoordinate> marked =
+        TestOnlyMarker.mark(
+            Collections.singleton(Resolution.create(root, dependencies)),
+            new HashSet<>(Arrays.asList(junit, root)));
+
+    dependencies.forEach(
+        dependency -> Assert.assertTrue(marked.test(dependency.mavenCoordinate())));
+  }
+
+  @Test
+  public void testMarksParentOfVersionCalculatedBeforeItsKeyWasMarked() {
+    final MavenCoordinate root = MavenCoordinate.create("test", "util", "1", "jar");
+    final MavenCoordinate junit = MavenCoordinate.create("junit", "junit", "2", "jar");
+    final MavenCoordinate lib1 = MavenCoordinate.create("a", "lib", "1", "jar");
+    final MavenCoordinate lib2 = MavenCoordinate.create("a", "lib", "2", "jar");
+    final MavenCoordinate first = MavenCoordinate.create("a", "first", "1", "jar");
+    final MavenCoordinate second = MavenCoordinate.create("a", "second", "1", "jar");
+    final MavenCoordinate third = MavenCoordinate.create("a", "third", "1", "jar");
+    // first reaches lib:1 before lib:2 (through second) marks the a:lib key as test-only,
+    // and then third reaches the already calculated lib:1.
+    final List<Dependency> dependencies =
+        Arrays.asList(
+            dependency(root, first, second, third),
+            dependency(first, lib1),
+            dependency(second, lib2),
+            dependency(third, lib1),
+            dependency(lib1),
+            dependency(lib2, junit),
+            dependency(junit));
+
+    final Predicate<MavenCoordinate> marked =
+        TestOnlyMarker.mark(
+            Collections.singleton(Resolution.create(root, dependencies)),
+            new HashSet<>(Arrays.asList(junit, root)));
+
+    Assert.assertTrue(marked.test(lib1));
+    Assert.assertTrue(marked.test(second));
+    Assert.assertTrue(marked.test(third));
+  }
+
+  private static Dependency dependency(MavenCoordinate coordinate, MavenCoordinate... children) {
+    return Dependency.builder()
+        .mavenCoordinate(coordinate)
+        .dependencies(Arrays.asList(children))
+        .build();
+  }
 }
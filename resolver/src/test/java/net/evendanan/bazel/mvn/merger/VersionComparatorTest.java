@@ -1,5 +1,12 @@
 package net.evendanan.bazel.mvn.merger;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -103,8 +110,116 @@ public class VersionComparatorTest {
     assertLater("2.0.2-AAAA", "2.0.1-CCCC");
   }
 
+  @Test
+  public void testTimestampVersions() throws Exception {
+    Assert.assertEquals(0, mUnderTest.compare("1.0.20231231235959", "1.0.20231231235959"));
+    assertLater("1.0.20240101000000", "1.0.20231231235959");
+    assertLater("20240101000000-SNAPSHOT", "20231231235959-SNAPSHOT");
+    assertLater("1.0.20240101000000", "1.0.9");
+  }
+
+  @Test
+  public void testParsesEachVersionOnce() throws Exception {
+    mUnderTest.compare("1.2.3-rc1", "1.2.4");
+    mUnderTest.compare("1.2.4", "1.2.3-rc1");
+
+    Assert.assertSame(mUnderTest.getVersionKey("1.2.3-rc1"), mUnderTest.getVersionKey("1.2.3-rc1"));
+  }
+
+  @Test
+  public void testSegmentsWithoutNumbers() throws Exception {
+    // segments without digits are not compared
+    Assert.assertEquals(1, mUnderTest.compare("1.jre", "1.android"));
+    Assert.assertEquals(1, mUnderTest.compare("1.android", "1.jre"));
+    assertLater("1.jre.1", "1.android");
+    // the number is the first run of digits in the segment
+    assertLater("1.beta2", "1.alpha1");
+  }
+
+  @Test
+  public void testAgreesWithRegexComparatorOnGeneratedVersions() throws Exception {
+    final List<String> versions = createVersions(new Random(1234), 300);
+    final RegexVersionComparator regexComparator = new RegexVersionComparator();
+
+    for (String version1 : versions) {
+      for (String version2 : versions) {
+        Assert.assertEquals(
+            version1 + " vs " + version2,
+            regexComparator.compare(version1, version2),
+            mUnderTest.compare(version1, version2));
+      }
+    }
+  }
+
   private void assertLater(String later, String previous) {
     Assert.assertEquals(
         "later " + later + " vs previous " + previous, 1, mUnderTest.compare(later, previous));
   }
+
+  private static List<String> createVersions(Random random, int count) {
+    final String[] qualifiers = {
+      "", "", "", "-SNAPSHOT", "-rc1", "-rc-2", "-alpha", "beta3", "-jre",
+    };
+    final List<String> versions = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      final StringBuilder version = new StringBuilder();
+      final int segments = 1 + random.nextInt(4);
+      for (int segment = 0; segment < segments; segment++) {
+        if (segment > 0) version.append('.');
+        version.append(random.nextInt(30));
+      }
+      version.append(qualifiers[random.nextInt(qualifiers.length)]);
+      versions.add(version.toString());
+    }
+    return versions;
+  }
+
+  /** The previous implementation of {@link VersionComparator}, which parsed on every call. */
+  private static class RegexVersionComparator implements Comparator<String> {
+    private final Pattern mSubVersionPattern = Pattern.compile("(\\d+)[-]*(.*)");
+
+    @Override
+    public int compare(String version1, String version2) {
+      if (Objects.equals(version1, version2)) return 0;
+
+      if (version1 == null || version1.equals("")) return -1;
+      if (version2 == null || version2.equals("")) return 1;
+
+      final String[] version1Split = version1.split("\\.", -1);
+      final String[] version2Split = version2.split("\\.", -1);
+
+      final int minIndex = Math.min(version1Split.length, version2Split.length);
+      for (int splitIndex = 0; splitIndex < minIndex; splitIndex++) {
+        final int subDiff = subVersionDiff(version1Split[splitIndex], version2Split[splitIndex]);
+        if (subDiff != 0) return subDiff;
+      }
+
+      return version1Split.length < version2Split.length ? -1 : 1;
+    }
+
+    private int subVersionDiff(String subVersion1, String subVersion2) {
+      Matcher matcher1 = mSubVersionPattern.matcher(subVersion1);
+      Matcher matcher2 = mSubVersionPattern.matcher(subVersion2);
+
+      if (matcher1.find() && matcher2.find()) {
+        final int number1 = Integer.parseInt(matcher1.group(1));
+        final int number2 = Integer.parseInt(matcher2.group(1));
+        if (number1 > number2) return 1;
+        if (number1 < number2) return -1;
+
+        String lexi1 = matcher1.group(2);
+        String lexi2 = matcher2.group(2);
+        if (lexi1.equals(lexi2)) return 0;
+        if (lexi1.equals("")) return 1;
+        if (lexi2.equals("")) return -1;
+
+        if (lexi1.equals("SNAPSHOT")) return 1;
+        if (lexi2.equals("SNAPSHOT")) return -1;
+
+        return Integer.compare(lexi1.compareTo(lexi2), 0);
+      }
+
+      return 0;
+    }
+  }
 }
@@ -0,0 +1,368 @@
+package net.evendanan.http;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpTransportTest {
+
+  private HttpServer mServer;
+  private ExecutorService mServerExecutor;
+  private final Map<String, String> mServedFiles = new HashMap<>();
+  private final List<String> mRequests = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicInteger mInFlight = new AtomicInteger();
+  private final AtomicInteger mMaxInFlight = new AtomicInteger();
+  private CountDownLatch mReleaseResponses = new CountDownLatch(0);
+  private CountDownLatch mReleaseBodies = new CountDownLatch(0);
+  private volatile boolean mServeRanges = false;
+
+  @Before
+  public void setup() throws Exception {
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    mServerExecutor = Executors.newCachedThreadPool();
+    mServer.setExecutor(mServerExecutor);
+    mServer.createContext(
+        "/",
+        exchange -> {
+          final int inFlight = mInFlight.incrementAndGet();
+          mMaxInFlight.accumulateAndGet(inFlight, Math::max);
+          await(mReleaseResponses);
+          final String path = exchange.getRequestURI().getPath();
+          mRequests.add(exchange.getRequestMethod() + " " + path);
+          final String content = mServedFiles.get(path);
+          if (path.startsWith("/error/")) {
+            exchange.sendResponseHeaders(500, -1);
+          } else if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+          } else if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(200, -1);
+          } else {
+            byte[] bytes = content.getBytes(Charsets.UTF_8);
+            final String range = exchange.getRequestHeaders().getFirst("Range");
+            if (mServeRanges && range != null) {
+              mRequests.add("Range " + range);
+              // bytes=<first>-<last> or bytes=-<suffix-length>
+              final String[] bounds = range.substring("bytes=".length()).split("-", -1);
+              final int first =
+                  bounds[0].isEmpty()
+                      ? Math.max(0, bytes.length - Integer.parseInt(bounds[1]))
+                      : Integer.parseInt(bounds[0]);
+              final int last =
+                  bounds[0].isEmpty()
+                      ? bytes.length - 1
+                      : Math.min(bytes.length - 1, Integer.parseInt(bounds[1]));
+              exchange
+                  .getResponseHeaders()
+                  .add("Content-Range", "bytes " + first + "-" + last + "/" + bytes.length);
+              bytes = Arrays.copyOfRange(bytes, first, last + 1);
+              exchange.sendResponseHeaders(206, bytes.length);
+            } else {
+              exchange.sendResponseHeaders(200, bytes.length);
+            }
+            // the headers were sent, but the body will wait
+            await(mReleaseBodies);
+            try (OutputStream body = exchange.getResponseBody()) {
+              body.write(bytes);
+            }
+          }
+          mInFlight.decrementAndGet();
+          exchange.close();
+        });
+    mServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    mServer.stop(0);
+    mServerExecutor.shutdownNow();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private URL url(String path) throws Exception {
+    return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + path);
+  }
+
+  @Test
+  public void testHead() throws Exception {
+    mServedFiles.put("/exists.jar", "jar");
+    final HttpTransport underTest = new HttpTransport();
+
+    Assert.assertEquals(200, underTest.head(url("/exists.jar")));
+    Assert.assertEquals(404, underTest.head(url("/missing.jar")));
+    Assert.assertEquals(Arrays.asList("HEAD /exists.jar", "HEAD /missing.jar"), mRequests);
+  }
+
+  @Test
+  public void testGet() throws Exception {
+    mServedFiles.put("/exists.pom", "<project/>");
+    final HttpTransport underTest = new HttpTransport();
+
+    Assert.assertEquals(
+        "<project/>", new String(underTest.get(url("/exists.pom")), Charsets.UTF_8));
+    Assert.assertNull(underTest.get(url("/missing.pom")));
+  }
+
+  @Test(expected = IOException.class)
+  public void testGetThrowsOnServerError() throws Exception {
+    new HttpTransport().get(url("/error/exists.pom"));
+  }
+
+  @Test
+  public void testOpenStream() throws Exception {
+    mServedFiles.put("/exists.jar", "jar-content");
+    final HttpTransport underTest = new HttpTransport();
+
+    try (InputStream inputStream = underTest.openStream(url("/exists.jar"))) {
+      Assert.assertEquals("jar-content", new String(inputStream.readAllBytes(), Charsets.UTF_8));
+    }
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testOpenStreamThrowsOnMissingFile() throws Exception {
+    new HttpTransport().openStream(url("/missing.jar"));
+  }
+
+  @Test
+  public void testSupportsFileUrls() throws Exception {
+    final File file = File.createTempFile("HttpTransportTest", ".pom");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "<project/>".getBytes(Charsets.UTF_8));
+    final HttpTransport underTest = new HttpTransport();
+
+    Assert.assertEquals(200, underTest.head(file.toURI().toURL()));
+    Assert.assertEquals(
+        "<project/>", new String(underTest.get(file.toURI().toURL()), Charsets.UTF_8));
+    Assert.assertEquals(404, underTest.head(new File(file.getPath() + ".missing").toURI().toURL()));
+    Assert.assertTrue(mRequests.isEmpty());
+  }
+
+  @Test
+  public void testReadsLocalFiles() throws Exception {
+    final File file = File.createTempFile("HttpTransportTest", ".jar");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "jar-content".getBytes(Charsets.UTF_8));
+    final File empty = File.createTempFile("HttpTransportTest", ".pom");
+    empty.deleteOnExit();
+    final URL missing = new File(file.getPath() + ".missing").toURI().toURL();
+    final HttpTransport underTest = new HttpTransport();
+
+    try (InputStream inputStream = underTest.openStream(file.toURI().toURL())) {
+      Assert.assertEquals("jar-content", new String(inputStream.readAllBytes(), Charsets.UTF_8));
+    }
+    Assert.assertEquals(0, underTest.get(empty.toURI().toURL()).length);
+    Assert.assertNull(underTest.get(missing));
+    // a folder is not a file
+    Assert.assertEquals(404, underTest.head(file.getParentFile().toURI().toURL()));
+    try {
+      underTest.openStream(missing);
+      Assert.fail("should have thrown");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOfflineReadsOnlyLocalFiles() throws Exception {
+    mServedFiles.put("/exists.pom", "<project/>");
+    final File file = File.createTempFile("HttpTransportTest", ".pom");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "<project/>".getBytes(Charsets.UTF_8));
+    final HttpTransport underTest = HttpTransport.offline();
+
+    Assert.assertEquals(200, underTest.head(file.toURI().toURL()));
+    Assert.assertEquals(
+        "<project/>", new String(underTest.get(file.toURI().toURL()), Charsets.UTF_8));
+    for (int i = 0; i < 3; i++) {
+      try {
+        switch (i) {
+          case 0:
+            underTest.head(url("/exists.pom"));
+            break;
+          case 1:
+            underTest.get(url("/exists.pom"));
+            break;
+          default:
+            underTest.openStream(url("/exists.pom")).close();
+        }
+        Assert.fail("should have thrown");
+      } catch (IOException e) {
+        Assert.assertTrue(e.getMessage().startsWith("Offline"));
+      }
+    }
+    Assert.assertTrue(mRequests.isEmpty());
+  }
+
+  @Test
+  public void testLimitsConcurrentRequestsPerHost() throws Exception {
+    mServedFiles.put("/exists.jar", "jar");
+    mReleaseResponses = new CountDownLatch(1);
+    final HttpTransport underTest =
+        new HttpTransport(Duration.ofSeconds(5), Duration.ofSeconds(30), 2);
+
+    final List<Thread> threads = new ArrayList<>();
+    final List<IOException> failures = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 0; i < 6; i++) {
+      final Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  underTest.head(url("/exists.jar"));
+                } catch (IOException e) {
+                  failures.add(e);
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    // letting the requests pile up
+    Thread.sleep(500);
+    Assert.assertEquals(2, mInFlight.get());
+    mReleaseResponses.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertTrue(failures.isEmpty());
+    Assert.assertEquals(6, mRequests.size());
+    Assert.assertEquals(2, mMaxInFlight.get());
+  }
+
+  @Test
+  public void testReleasesPermitWhenStreamIsClosed() throws Exception {
+    mServedFiles.put("/exists.jar", "jar");
+    final HttpTransport underTest =
+        new HttpTransport(Duration.ofSeconds(5), Duration.ofSeconds(30), 1);
+
+    for (int i = 0; i < 3; i++) {
+      underTest.openStream(url("/exists.jar")).close();
+    }
+    try {
+      underTest.openStream(url("/missing.jar"));
+      Assert.fail("should have thrown");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+    // would block forever if any of the permits above were not released
+    Assert.assertEquals(200, underTest.head(url("/exists.jar")));
+  }
+
+  @Test
+  public void testGetRange() throws Exception {
+    mServedFiles.put("/exists.jar", "0123456789");
+    mServeRanges = true;
+    final HttpTransport underTest = new HttpTransport();
+
+    final HttpTransport.Range range = underTest.getRange(url("/exists.jar"), 2, 3);
+    Assert.assertEquals("234", new String(range.content(), Charsets.UTF_8));
+    Assert.assertEquals(2, range.offset());
+    Assert.assertEquals(10, range.totalLength());
+
+    final HttpTransport.Range suffix = underTest.getSuffixRange(url("/exists.jar"), 4);
+    Assert.assertEquals("6789", new String(suffix.content(), Charsets.UTF_8));
+    Assert.assertEquals(6, suffix.offset());
+    Assert.assertEquals(10, suffix.totalLength());
+
+    // a suffix longer than the file is the whole file
+    Assert.assertEquals(
+        "0123456789",
+        new String(underTest.getSuffixRange(url("/exists.jar"), 100).content(), Charsets.UTF_8));
+    Assert.assertNull(underTest.getRange(url("/missing.jar"), 0, 3));
+  }
+
+  @Test
+  public void testHoldsPermitUntilRangeIsRead() throws Exception {
+    mServedFiles.put("/exists.jar", "0123456789");
+    mServeRanges = true;
+    mReleaseBodies = new CountDownLatch(1);
+    final HttpTransport underTest =
+        new HttpTransport(Duration.ofSeconds(5), Duration.ofSeconds(30), 1);
+
+    final List<Thread> threads = new ArrayList<>();
+    final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    for (int i = 0; i < 3; i++) {
+      final Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  ranges.add(
+                      new String(
+                          underTest.getRange(url("/exists.jar"), 2, 3).content(), Charsets.UTF_8));
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    // the first response's headers arrived, but its body did not
+    Thread.sleep(500);
+    Assert.assertEquals(1, mInFlight.get());
+    mReleaseBodies.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(Arrays.asList("234", "234", "234"), ranges);
+    Assert.assertEquals(1, mMaxInFlight.get());
+  }
+
+  @Test
+  public void testGetRangeIsNullIfServerDoesNotServeRanges() throws Exception {
+    mServedFiles.put("/exists.jar", "0123456789");
+    final HttpTransport underTest = new HttpTransport();
+
+    Assert.assertNull(underTest.getRange(url("/exists.jar"), 2, 3));
+    Assert.assertNull(underTest.getSuffixRange(url("/exists.jar"), 4));
+    Assert.assertEquals(Arrays.asList("GET /exists.jar", "GET /exists.jar"), mRequests);
+  }
+
+  @Test
+  public void testGetRangeOfLocalFile() throws Exception {
+    final File file = File.createTempFile("HttpTransportTest", ".jar");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "0123456789".getBytes(Charsets.UTF_8));
+    final HttpTransport underTest = HttpTransport.offline();
+
+    final HttpTransport.Range range = underTest.getRange(file.toURI().toURL(), 8, 5);
+    Assert.assertEquals("89", new String(range.content(), Charsets.UTF_8));
+    Assert.assertEquals(8, range.offset());
+    Assert.assertEquals(10, range.totalLength());
+    final HttpTransport.Range suffix = underTest.getSuffixRange(file.toURI().toURL(), 3);
+    Assert.assertEquals("789", new String(suffix.content(), Charsets.UTF_8));
+    Assert.assertEquals(7, suffix.offset());
+    Assert.assertNull(
+        underTest.getRange(new File(file.getPath() + ".missing").toURI().toURL(), 0, 1));
+  }
+}
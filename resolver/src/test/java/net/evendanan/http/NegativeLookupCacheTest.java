@@ -0,0 +1,143 @@
+package net.evendanan.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NegativeLookupCacheTest {
+
+  private File mCacheFolder;
+  private final Map<URL, Integer> mResponseCodes = new HashMap<>();
+  private final List<URL> mRequests = new ArrayList<>();
+
+  @Before
+  public void setup() throws Exception {
+    mCacheFolder = Files.createTempDirectory("NegativeLookupCacheTest").toFile();
+  }
+
+  private int fakeHead(URL url) throws IOException {
+    mRequests.add(url);
+    final Integer code = mResponseCodes.get(url);
+    if (code == null) throw new IOException("unknown url " + url);
+    return code;
+  }
+
+  @Test
+  public void testSkipsKnownMissingResources() throws Exception {
+    final URL missing = new URL("https://example.com/repo/dep-1.0-sources.jar");
+    mResponseCodes.put(missing, 404);
+    final NegativeLookupCache underTest =
+        new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false);
+
+    Assert.assertFalse(underTest.isKnownMissing(missing));
+    Assert.assertEquals(404, underTest.head(missing, this::fakeHead));
+    Assert.assertTrue(underTest.isKnownMissing(missing));
+    Assert.assertEquals(404, underTest.head(missing, this::fakeHead));
+
+    Assert.assertEquals(Collections.singletonList(missing), mRequests);
+  }
+
+  @Test
+  public void testSkipsKnownMissingGets() throws Exception {
+    final URL missing = new URL("https://example.com/repo/dep-1.0.pom");
+    final URL exists = new URL("https://example.com/repo/exists-1.0.pom");
+    final NegativeLookupCache underTest =
+        new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false);
+    final NegativeLookupCache.GetRequester fakeGet =
+        url -> {
+          mRequests.add(url);
+          return url.equals(exists) ? new byte[] {1} : null;
+        };
+
+    for (int i = 0; i < 2; i++) {
+      Assert.assertNull(underTest.get(missing, fakeGet));
+      Assert.assertArrayEquals(new byte[] {1}, underTest.get(exists, fakeGet));
+    }
+
+    Assert.assertTrue(underTest.isKnownMissing(missing));
+    Assert.assertFalse(underTest.isKnownMissing(exists));
+    Assert.assertEquals(Arrays.asList(missing, exists, exists), mRequests);
+  }
+
+  @Test
+  public void testKeptBetweenInstances() throws Exception {
+    final URL missing = new URL("https://example.com/repo/dep-1.0-sources.jar");
+    mResponseCodes.put(missing, 404);
+
+    new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false).head(missing, this::fakeHead);
+    new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false).head(missing, this::fakeHead);
+
+    Assert.assertEquals(Collections.singletonList(missing), mRequests);
+  }
+
+  @Test
+  public void testDoesNotCacheOtherResponses() throws Exception {
+    final URL exists = new URL("https://example.com/repo/exists.jar");
+    final URL error = new URL("https://example.com/repo/error.jar");
+    final URL failing = new URL("https://example.com/repo/failing.jar");
+    mResponseCodes.put(exists, 200);
+    mResponseCodes.put(error, 500);
+    final NegativeLookupCache underTest =
+        new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false);
+
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals(200, underTest.head(exists, this::fakeHead));
+      Assert.assertEquals(500, underTest.head(error, this::fakeHead));
+      try {
+        underTest.head(failing, this::fakeHead);
+        Assert.fail("should have thrown");
+      } catch (IOException e) {
+        // expected
+      }
+    }
+
+    Assert.assertEquals(Arrays.asList(exists, error, failing, exists, error, failing), mRequests);
+  }
+
+  @Test
+  public void testExpiredEntriesAreRequestedAgain() throws Exception {
+    final URL missing = new URL("https://example.com/repo/dep-1.0-sources.jar");
+    mResponseCodes.put(missing, 404);
+    final NegativeLookupCache underTest =
+        new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false);
+
+    underTest.head(missing, this::fakeHead);
+    Assert.assertTrue(
+        underTest
+            .getMarkerFile(missing)
+            .setLastModified(System.currentTimeMillis() - Duration.ofHours(2).toMillis()));
+
+    Assert.assertFalse(underTest.isKnownMissing(missing));
+    underTest.head(missing, this::fakeHead);
+    Assert.assertEquals(Arrays.asList(missing, missing), mRequests);
+  }
+
+  @Test
+  public void testBypassRequestsAgainAndRefreshes() throws Exception {
+    final URL url = new URL("https://example.com/repo/dep-1.0-sources.jar");
+    mResponseCodes.put(url, 404);
+    new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false).head(url, this::fakeHead);
+
+    // the resource was published since
+    mResponseCodes.put(url, 200);
+    final NegativeLookupCache bypassing =
+        new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), true);
+    Assert.assertFalse(bypassing.isKnownMissing(url));
+    Assert.assertEquals(200, bypassing.head(url, this::fakeHead));
+
+    Assert.assertFalse(
+        new NegativeLookupCache(mCacheFolder, Duration.ofHours(1), false).isKnownMissing(url));
+    Assert.assertEquals(Arrays.asList(url, url), mRequests);
+  }
+}
@@ -0,0 +1,203 @@
+package net.evendanan.http;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RangedZipReaderTest {
+
+  private HttpServer mServer;
+  private byte[] mServedZip;
+  private volatile boolean mServeRanges = true;
+  private final List<String> mRequests = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicLong mServedBytes = new AtomicLong();
+
+  @Before
+  public void setup() throws Exception {
+    mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    mServer.createContext(
+        "/",
+        exchange -> {
+          byte[] bytes = mServedZip;
+          final String range = exchange.getRequestHeaders().getFirst("Range");
+          mRequests.add(range == null ? "GET" : range);
+          if (mServeRanges && range != null) {
+            // bytes=<first>-<last> or bytes=-<suffix-length>
+            final String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            final int first =
+                bounds[0].isEmpty()
+                    ? Math.max(0, bytes.length - Integer.parseInt(bounds[1]))
+                    : Integer.parseInt(bounds[0]);
+            final int last =
+                bounds[0].isEmpty()
+                    ? bytes.length - 1
+                    : Math.min(bytes.length - 1, Integer.parseInt(bounds[1]));
+            exchange
+                .getResponseHeaders()
+                .add("Content-Range", "bytes " + first + "-" + last + "/" + bytes.length);
+            bytes = Arrays.copyOfRange(bytes, first, last + 1);
+            exchange.sendResponseHeaders(206, bytes.length);
+          } else {
+            exchange.sendResponseHeaders(200, bytes.length);
+          }
+          try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+            mServedBytes.addAndGet(bytes.length);
+          } catch (IOException e) {
+            // the client may close the stream without reading it
+          }
+          exchange.close();
+        });
+    mServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    mServer.stop(0);
+  }
+
+  private URL url() throws Exception {
+    return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + "/artifact.jar");
+  }
+
+  private static byte[] zip(int fillerEntries, boolean storeServices) throws IOException {
+    final ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(zip)) {
+      // not compressible, so the archive is large
+      final byte[] large = new byte[2 * 1024 * 1024];
+      new Random(42).nextBytes(large);
+      zipOutputStream.putNextEntry(new ZipEntry("net/evendanan/Large.class"));
+      zipOutputStream.write(large);
+      zipOutputStream.closeEntry();
+      for (int entryIndex = 0; entryIndex < fillerEntries; entryIndex++) {
+        zipOutputStream.putNextEntry(
+            new ZipEntry("net/evendanan/with/a/long/package/name/Filler" + entryIndex + ".class"));
+        zipOutputStream.write(entryIndex);
+        zipOutputStream.closeEntry();
+      }
+      final byte[] services =
+          "net.evendanan.FirstProcessor\nnet.evendanan.SecondProcessor\n".getBytes(Charsets.UTF_8);
+      final ZipEntry servicesEntry = new ZipEntry("META-INF/services/processors");
+      if (storeServices) {
+        final CRC32 crc = new CRC32();
+        crc.update(services);
+        servicesEntry.setMethod(ZipEntry.STORED);
+        servicesEntry.setSize(services.length);
+        servicesEntry.setCrc(crc.getValue());
+      }
+      zipOutputStream.putNextEntry(servicesEntry);
+      zipOutputStream.write(services);
+      zipOutputStream.closeEntry();
+    }
+    return zip.toByteArray();
+  }
+
+  private static List<String> asStrings(List<byte[]> entries) {
+    return entries.stream()
+        .map(entry -> new String(entry, Charsets.UTF_8))
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testReadsOnlyTheMatchingEntries() throws Exception {
+    mServedZip = zip(0, false);
+    final RangedZipReader underTest = new RangedZipReader(new HttpTransport());
+
+    final List<byte[]> entries =
+        underTest.readEntries(url(), name -> name.startsWith("META-INF/services/"));
+
+    Assert.assertEquals(
+        Collections.singletonList("net.evendanan.FirstProcessor\nnet.evendanan.SecondProcessor\n"),
+        asStrings(entries));
+    // the tail (with the central directory) and the entry
+    Assert.assertEquals(2, mRequests.size());
+    Assert.assertTrue(mServedBytes.get() < 100 * 1024);
+    Assert.assertTrue(mServedZip.length > 2 * 1024 * 1024);
+  }
+
+  @Test
+  public void testReadsStoredEntries() throws Exception {
+    mServedZip = zip(0, true);
+    final RangedZipReader underTest = new RangedZipReader(new HttpTransport());
+
+    Assert.assertEquals(
+        Collections.singletonList("net.evendanan.FirstProcessor\nnet.evendanan.SecondProcessor\n"),
+        asStrings(underTest.readEntries(url(), name -> name.startsWith("META-INF/services/"))));
+  }
+
+  @Test
+  public void testReadsCentralDirectoryWhichIsNotInTheTail() throws Exception {
+    mServedZip = zip(2000, false);
+    final RangedZipReader underTest = new RangedZipReader(new HttpTransport());
+
+    final List<byte[]> entries =
+        underTest.readEntries(url(), name -> name.endsWith("/Filler1999.class"));
+
+    Assert.assertEquals(1, entries.size());
+    Assert.assertArrayEquals(new byte[] {(byte) 1999}, entries.get(0));
+    // the tail, the central directory and the entry
+    Assert.assertEquals(3, mRequests.size());
+  }
+
+  @Test
+  public void testReturnsEmptyListIfNothingMatches() throws Exception {
+    mServedZip = zip(0, false);
+    final RangedZipReader underTest = new RangedZipReader(new HttpTransport());
+
+    Assert.assertTrue(underTest.readEntries(url(), name -> false).isEmpty());
+    Assert.assertEquals(1, mRequests.size());
+  }
+
+  @Test
+  public void testIsNullIfServerDoesNotServeRanges() throws Exception {
+    mServedZip = zip(0, false);
+    mServeRanges = false;
+    final RangedZipReader underTest = new RangedZipReader(new HttpTransport());
+
+    Assert.assertNull(underTest.readEntries(url(), name -> true));
+    Assert.assertEquals(Collections.singletonList("bytes=-65557"), mRequests);
+  }
+
+  @Test
+  public void testIsNullIfNotAZip() throws Exception {
+    mServedZip = "not a zip".getBytes(Charsets.UTF_8);
+    final RangedZipReader underTest = new RangedZipReader(new HttpTransport());
+
+    Assert.assertNull(underTest.readEntries(url(), name -> true));
+  }
+
+  @Test
+  public void testReadsLocalFiles() throws Exception {
+    final File file = File.createTempFile("RangedZipReaderTest", ".jar");
+    file.deleteOnExit();
+    Files.write(file.toPath(), zip(2000, false));
+    final RangedZipReader underTest = new RangedZipReader(HttpTransport.offline());
+
+    Assert.assertEquals(
+        Collections.singletonList("net.evendanan.FirstProcessor\nnet.evendanan.SecondProcessor\n"),
+        asStrings(
+            underTest.readEntries(
+                file.toURI().toURL(), name -> name.startsWith("META-INF/services/"))));
+    Assert.assertTrue(mRequests.isEmpty());
+  }
+}
@@ -1,31 +1,130 @@
 """Defining mabel bazel rules."""
-TransitiveDataInfo = provider(doc = "Internal provider for connectin resolving and merging.", fields = ["graph_file", "type"])
+TransitiveDataInfo = provider(
+    doc = "Internal provider for connectin resolving and merging.",
+    fields = {
+        "execution_requirements": "Execution requirements of the resolving action.",
+        "graph_file": "The resolved graph of this artifact.",
+        "request_arguments": "Resolver arguments which describe this artifact (without the output file).",
+        "resolver_arguments": "Resolver arguments which are shared by all the artifacts resolved in a single process.",
+        "type": "The type of artifact targets to generate.",
+    },
+)
+
+def _run_resolver(ctx, outputs, arguments, execution_requirements, inputs = [], progress_message = None):
+    args = ctx.actions.args()
+    args.add_all(arguments)
+
+    # persistent workers receive their arguments through a flag-file
+    args.use_param_file("@%s", use_always = True)
+    args.set_param_file_format("multiline")
+
+    worker_execution_requirements = dict(execution_requirements)
+    worker_execution_requirements["supports-workers"] = "1"
+    worker_execution_requirements["requires-worker-protocol"] = "json"
+
+    ctx.actions.run(
+        inputs = inputs,
+        outputs = outputs,
+        executable = ctx.executable._resolver,
+        arguments = [args],
+        mnemonic = "MabelMavenTransitiveDependencyResolve",
+        progress_message = progress_message,
+        execution_requirements = worker_execution_requirements,
+    )
 
 def _impl_resolver(ctx):
     output_file = ctx.outputs.out
     java_runtime = ctx.attr._jdk[java_common.JavaRuntimeInfo]
     java_home = java_runtime.java_home_runfiles_path
 
-    arguments = ["--repository={}".format(repository) for repository in ctx.attr.repositories] + \
-                ["--blacklist={}".format(exclude_artifact_list) for exclude_artifact_list in ctx.attr.maven_exclude_deps] + \
-                [
-                    "--artifact={}".format(ctx.attr.coordinate),
-                    "--type={}".format(ctx.attr.type),
-                    "--exports_generation={}".format(ctx.attr.exports_generation_type),
-                    "--output_file={}".format(output_file.path),
-                    "--debug_logs={}".format(ctx.attr.debug_logs).lower(),
-                    "--test_only={}".format(ctx.attr.test_only).lower(),
-                    "--jdk_home={}".format(java_home),
-                ]
+    request_arguments = ["--repository={}".format(repository) for repository in ctx.attr.repositories] + \
+                        ["--blacklist={}".format(exclude_artifact_list) for exclude_artifact_list in ctx.attr.maven_exclude_deps] + \
+                        [
+                            "--artifact={}".format(ctx.attr.coordinate),
+                            "--type={}".format(ctx.attr.type),
+                            "--exports_generation={}".format(ctx.attr.exports_generation_type),
+                            "--test_only={}".format(ctx.attr.test_only).lower(),
+                        ]
+    if ctx.attr.repository_affinity_path and not ctx.attr.parallel_repository_probing:
+        # serial probing never reads the affinity, so the file would only be written.
+        fail("repository_affinity_path requires parallel_repository_probing = True")
 
-    ctx.actions.run(
+    resolver_arguments = [
+        "--debug_logs={}".format(ctx.attr.debug_logs).lower(),
+        "--jdk_home={}".format(java_home),
+        "--traversal_threads={}".format(ctx.attr.traversal_threads),
+        "--pom_cache_path={}".format(ctx.attr.pom_cache_path),
+        "--repository_affinity_path={}".format(ctx.attr.repository_affinity_path),
+        "--negative_cache_path={}".format(ctx.attr.negative_cache_path),
+        "--offline={}".format(ctx.attr.offline).lower(),
+        "--parallel_repository_probing={}".format(ctx.attr.parallel_repository_probing).lower(),
+    ]
+
+    execution_requirements = {}
+    if ctx.attr.pom_cache_path or ctx.attr.repository_affinity_path or ctx.attr.negative_cache_path:
+        # the caches (and the affinity file) live outside the sandbox, and should survive between actions.
+        execution_requirements["no-sandbox"] = "1"
+
+    _run_resolver(
+        ctx,
         outputs = [output_file],
-        executable = ctx.executable._resolver,
-        arguments = arguments,
-        mnemonic = "MabelMavenTransitiveDependencyResolve",
+        arguments = request_arguments + ["--output_file={}".format(output_file.path)] + resolver_arguments,
+        execution_requirements = execution_requirements,
     )
 
-    return [TransitiveDataInfo(graph_file = output_file, type = ctx.attr.type)]
+    return [TransitiveDataInfo(
+        graph_file = output_file,
+        type = ctx.attr.type,
+        request_arguments = request_arguments,
+        resolver_arguments = resolver_arguments,
+        execution_requirements = execution_requirements,
+    )]
+
+def _batched_graph_files(ctx, infos):
+    """Resolves the given artifacts in (at most) `resolver_actions` batched actions per resolver configuration.
+
+    Returns the resolved graph files, in the same order as `infos`.
+    """
+    if ctx.attr.resolver_actions < 1:
+        return [info.graph_file for info in infos]
+
+    # artifacts can only share a resolver process if they share its arguments
+    groups = {}
+    for index, info in enumerate(infos):
+        key = " ".join(info.resolver_arguments)
+        if key not in groups:
+            groups[key] = []
+        groups[key].append(index)
+
+    graph_files = [None] * len(infos)
+    batch_index = 0
+    for indices in groups.values():
+        actions_count = min(ctx.attr.resolver_actions, len(indices))
+        for action_index in range(actions_count):
+            batch_indices = indices[action_index::actions_count]
+            outputs = []
+            requests = []
+            for index in batch_indices:
+                info = infos[index]
+                output_file = ctx.actions.declare_file("{}-resolved/{}_{}".format(ctx.label.name, index, info.graph_file.basename))
+                outputs.append(output_file)
+                graph_files[index] = output_file
+                requests.append("\t".join(info.request_arguments + ["--output_file={}".format(output_file.path)]))
+
+            batch_file = ctx.actions.declare_file("{}-resolved/batch_{}.txt".format(ctx.label.name, batch_index))
+            ctx.actions.write(batch_file, "\n".join(requests) + "\n")
+            first_info = infos[batch_indices[0]]
+            _run_resolver(
+                ctx,
+                inputs = [batch_file],
+                outputs = outputs,
+                arguments = first_info.resolver_arguments + ["--batch_file={}".format(batch_file.path)],
+                execution_requirements = first_info.execution_requirements,
+                progress_message = "Resolving %d Maven artifacts for %s" % (len(outputs), ctx.label),
+            )
+            batch_index += 1
+
+    return graph_files
 
 DEFAULT_MAVEN_SERVERS = ["https://repo1.maven.org/maven2/"]
 
@@ -37,8 +136,14 @@ _mabel_maven_dependency_graph_resolving_rule = rule(
         "debug_logs": attr.bool(default = False, doc = "If set to True, will print out debug logs while resolving dependencies. Default is False.", mandatory = False),
         "exports_generation_type": attr.string(mandatory = True, default = "inherit", values = ["inherit", "all", "requested_deps", "none"], doc = "For which targets should we generate exports attribute."),
         "maven_exclude_deps": attr.string_list(allow_empty = True, default = [], doc = "List of Maven dependencies which should not be resolved. You can omit the `version` or both `artifact-id:version`."),
+        "negative_cache_path": attr.string(default = "", doc = "Cache location for artifacts which were not found, so they are not requested again for a day. For example, `~/.mabel/missing/`. Empty means no cache. Setting it makes the resolving action run outside the sandbox. Default is empty.", mandatory = False),
+        "offline": attr.bool(default = False, doc = "If set to True, resolves only from local (`file://`) `repositories`, without any network access. Default is False.", mandatory = False),
+        "parallel_repository_probing": attr.bool(default = False, doc = "If set to True, all repositories are probed concurrently for each artifact. The first declared repository which has the artifact is still the one used. Default is False.", mandatory = False),
+        "pom_cache_path": attr.string(default = "", doc = "Cache location for downloaded (released) POM files. For example, `~/.mabel/poms/`. Empty means no cache. Setting it makes the resolving action run outside the sandbox. Default is empty.", mandatory = False),
         "repositories": attr.string_list(allow_empty = False, default = DEFAULT_MAVEN_SERVERS, doc = "List of URLs that point to Maven servers. Defaut is Maven-Central."),
+        "repository_affinity_path": attr.string(default = "", doc = "File in which the learned groupId to repository affinity is kept between runs. It is used to skip probing repositories declared after the learned one, so it requires parallel_repository_probing. Empty means it is only kept in memory. Default is empty.", mandatory = False),
         "test_only": attr.bool(default = False, doc = "Should this artifact be marked as test_only. Default is False.", mandatory = False),
+        "traversal_threads": attr.int(default = 8, doc = "Number of threads used to fetch the transitive POMs of this artifact. 1 means a serial traversal. Default is 8.", mandatory = False),
         "type": attr.string(mandatory = True, default = "inherit", values = ["inherit", "jar", "aar", "naive", "processor", "auto"], doc = "The type of artifact targets to generate."),
         "_jdk": attr.label(default = Label("@bazel_tools//tools/jdk:current_java_runtime"), providers = [java_common.JavaRuntimeInfo]),
         "_resolver": attr.label(executable = True, allow_files = True, cfg = "exec", default = Label("//resolver:resolver_bin")),
@@ -47,7 +152,7 @@ _mabel_maven_dependency_graph_resolving_rule = rule(
 )
 
 # buildifier: disable=unnamed-macro
-def artifact(coordinate, maven_exclude_deps = [], repositories = DEFAULT_MAVEN_SERVERS, debug_logs = False, type = "inherit", exports_generation_type = "inherit", test_only = False):
+def artifact(coordinate, maven_exclude_deps = [], repositories = DEFAULT_MAVEN_SERVERS, debug_logs = False, type = "inherit", exports_generation_type = "inherit", test_only = False, traversal_threads = 8, pom_cache_path = "", repository_affinity_path = "", parallel_repository_probing = False, negative_cache_path = "", offline = False):
     rule_name = "_mabel_maven_dependency_graph_resolving_{}".format(coordinate.replace(":", "__").replace("-", "_").replace(".", "_"))
 
     # different targets may use the same artifact
@@ -61,6 +166,12 @@ def artifact(coordinate, maven_exclude_deps = [], repositories = DEFAULT_MAVEN_S
             test_only = test_only,
             exports_generation_type = exports_generation_type,
             debug_logs = debug_logs,
+            traversal_threads = traversal_threads,
+            pom_cache_path = pom_cache_path,
+            repository_affinity_path = repository_affinity_path,
+            parallel_repository_probing = parallel_repository_probing,
+            negative_cache_path = negative_cache_path,
+            offline = offline,
             visibility = ["//visibility:private"],
         )
     return ":%s" % rule_name
@@ -80,13 +191,18 @@ script_merger_template = """
     --version_conflict_resolver={version_conflict_resolver} \
     --type={default_target_type} \
     --exports_generation={default_exports_generation} \
+    --offline={offline} \
+    --target_construction_threads={target_construction_threads} \
+    --negative_cache_path={negative_cache_path} \
+    --negative_cache_ttl_hours={negative_cache_ttl_hours} \
+    --bypass_negative_cache={bypass_negative_cache} \
     {lockfile_param}
 
 echo "Stored resolved dependencies graph (rules) at {output_pretty_dep_graph_filename}"{lockfile_echo}
 """
 
 def _impl_merger(ctx):
-    source_files = [dep[TransitiveDataInfo].graph_file for dep in ctx.attr.maven_deps]
+    source_files = _batched_graph_files(ctx, [dep[TransitiveDataInfo] for dep in ctx.attr.maven_deps])
     script = ctx.outputs.out
     java_runtime = ctx.attr._jdk[java_common.JavaRuntimeInfo]
 
@@ -98,6 +214,7 @@ def _impl_merger(ctx):
     lockfile_echo = ""
     if ctx.attr.lockfile_path:
         lockfile_param = " \\\n    --lockfile_path=${{BUILD_WORKING_DIRECTORY}}/{}".format(ctx.attr.lockfile_path)
+        lockfile_param += " \\\n    --incremental={}".format(ctx.attr.incremental).lower()
         lockfile_echo = "\necho \"Stored lockfile at ${{BUILD_WORKING_DIRECTORY}}/{}\"".format(ctx.attr.lockfile_path)
 
     output_pretty_dep_graph_filename = ""
@@ -119,6 +236,11 @@ def _impl_merger(ctx):
         version_conflict_resolver = ctx.attr.version_conflict_resolver,
         default_exports_generation = ctx.attr.default_exports_generation,
         default_target_type = ctx.attr.default_target_type,
+        offline = "{}".format(ctx.attr.offline).lower(),
+        target_construction_threads = ctx.attr.target_construction_threads,
+        negative_cache_path = ctx.attr.negative_cache_path,
+        negative_cache_ttl_hours = ctx.attr.negative_cache_ttl_hours,
+        bypass_negative_cache = "{}".format(ctx.attr.bypass_negative_cache).lower(),
         lockfile_param = lockfile_param,
         lockfile_echo = lockfile_echo,
     )
@@ -133,12 +255,14 @@ mabel_rule = rule(
     executable = True,
     attrs = {
         "artifacts_path": attr.string(default = "", doc = "Cache location to download artifacts into. Empty means `[user-home-folder]/.mabel/artifacts/`", mandatory = False),
-        "calculate_sha": attr.bool(default = True, doc = "Will also calculate SHA256 of the artifact. Default True", mandatory = False),
+        "bypass_negative_cache": attr.bool(default = False, doc = "If set to True, sources JARs which are in the negative cache are requested anyway, and the cache is refreshed with the responses. Default is False.", mandatory = False),
+        "calculate_sha": attr.bool(default = True, doc = "Will also calculate SHA256 of the artifact. If False, artifacts are inspected with HTTP range requests, without downloading them, where the server supports it. Default True", mandatory = False),
         "debug_logs": attr.bool(default = False, doc = "If set to True, will print out debug logs while resolving dependencies. Default is False.", mandatory = False),
         "default_exports_generation": attr.string(default = "requested_deps", values = ["all", "requested_deps", "none"], doc = "For which targets should we generate exports attribute."),
         "default_target_type": attr.string(default = "auto", values = ["jar", "aar", "naive", "processor", "auto"], doc = "The type of artifact targets to generate."),
         "fetch_srcjar": attr.bool(default = False, doc = "Will also try to locate srcjar for the dependency. Default False", mandatory = False),
         "generated_targets_prefix": attr.string(default = "", doc = "A prefix to add to all generated targets. Default is an empty string, meaning no prefix.", mandatory = False),
+        "incremental": attr.bool(default = False, doc = "If set to True, artifacts which did not change since the existing lockfile (at `lockfile_path`) was written are not downloaded, hashed or inspected again: their data is taken from the lockfile. Default is False.", mandatory = False),
         "lockfile_path": attr.string(default = "", doc = "Path to output JSON lockfile for bzlmod. Path is relative to workspace root.", mandatory = False),
         "mabel_repository_rule_name": attr.string(mandatory = False, default = "mabel", doc = "The name of the mabel remote-repository name (the name of the `http_archive` used to import _mabel_). Default is `mabel`."),
         "maven_deps": attr.label_list(
@@ -147,11 +271,17 @@ mabel_rule = rule(
             providers = [TransitiveDataInfo],
             doc = "List of `maven_dependency_graph_rule` targets.",
         ),
+        "negative_cache_path": attr.string(default = "", doc = "Cache location for sources JARs which were not found (with `fetch_srcjar`), so they are not requested again for `negative_cache_ttl_hours`. For example, `~/.mabel/missing/`. Empty means no cache. Default is empty.", mandatory = False),
+        "negative_cache_ttl_hours": attr.int(default = 24, doc = "For how many hours a sources JAR which was not found is not requested again. Default is 24.", mandatory = False),
+        "offline": attr.bool(default = False, doc = "If set to True, artifacts are read only from local (`file://`) URLs, without any network access. Default is False.", mandatory = False),
         "output_graph_to_file": attr.bool(default = False, doc = "If set to True, will output the graph to dependencies.txt. Default is False.", mandatory = False),
         "public_targets_category": attr.string(mandatory = False, default = "all", values = ["requested_deps", "recursive_exports", "all"], doc = "Set public visibility of resolved targets. Default is 'all'. Can be: 'requested_deps', 'recursive_exports', 'all'."),
+        "resolver_actions": attr.int(default = 0, doc = "If larger than zero, the `maven_deps` are resolved in (at most) this many batched actions, each resolving many artifacts in a single process with shared caches. Default is 0, which means one action per artifact.", mandatory = False),
+        "target_construction_threads": attr.int(default = 8, doc = "Number of threads used to download, hash and inspect the artifacts while constructing their targets. The generated lockfile is the same as with 1 (a serial construction). Default is 8.", mandatory = False),
         "version_conflict_resolver": attr.string(mandatory = False, default = "latest_version", values = ["latest_version", "breadth_first"], doc = "Defines the strategy used to resolve version-conflicts. Default is 'latest_version'. Can be: 'latest_version', 'breadth_first'."),
         "_jdk": attr.label(default = Label("@bazel_tools//tools/jdk:current_java_runtime"), providers = [java_common.JavaRuntimeInfo]),
         "_merger": attr.label(executable = True, allow_single_file = True, cfg = "exec", default = Label("//resolver:merger_bin_deploy.jar")),
+        "_resolver": attr.label(executable = True, allow_files = True, cfg = "exec", default = Label("//resolver:resolver_bin")),
     },
     outputs = {"out": "%{name}-generate-deps.sh"},
 )
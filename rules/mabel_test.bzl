@@ -1,7 +1,7 @@
 """Tests for mabel.bzl artifact macro."""
 
 load("@bazel_skylib//lib:unittest.bzl", "analysistest", "asserts")
-load("//rules:mabel.bzl", "DEFAULT_MAVEN_SERVERS", "TransitiveDataInfo", "artifact")
+load("//rules:mabel.bzl", "DEFAULT_MAVEN_SERVERS", "TransitiveDataInfo", "artifact", "mabel_rule")
 
 def _artifact_basic_test_impl(ctx):
     env = analysistest.begin(ctx)
@@ -24,6 +24,11 @@ def _artifact_basic_test_impl(ctx):
     args = action.argv
     asserts.true(env, _has_arg(args, "--artifact=com.example:foo:1.0"), "Missing artifact arg")
     asserts.true(env, _has_arg(args, "--type=inherit"), "Missing type arg")
+    asserts.true(env, _has_arg(args, "--traversal_threads=8"), "Missing traversal_threads arg")
+
+    # Resolving can run in a persistent worker
+    asserts.equals(env, "1", action.execution_info.get("supports-workers"))
+    asserts.equals(env, "json", action.execution_info.get("requires-worker-protocol"))
 
     return analysistest.end(env)
 
@@ -52,9 +57,35 @@ def _artifact_custom_test_impl(ctx):
     # Check custom values that change behavior
     asserts.true(env, _has_arg(args, "--test_only=true"), "Missing test_only arg")
     asserts.true(env, _has_arg(args, "--blacklist=group:exclude"), "Missing blacklist arg")
+    asserts.true(env, _has_arg(args, "--traversal_threads=1"), "Missing traversal_threads arg")
+
+    return analysistest.end(env)
+
+def _mabel_rule_batched_test_impl(ctx):
+    env = analysistest.begin(ctx)
+
+    actions = analysistest.target_actions(env)
+    resolve_actions = [a for a in actions if a.mnemonic == "MabelMavenTransitiveDependencyResolve"]
+
+    # three artifacts with the same resolver arguments, in two batched actions
+    asserts.equals(env, 2, len(resolve_actions))
+    outputs_count = 0
+    for action in resolve_actions:
+        args = action.argv
+        asserts.true(env, _has_arg_prefix(args, "--batch_file="), "Missing batch_file arg")
+        asserts.true(env, _has_arg(args, "--traversal_threads=8"), "Missing traversal_threads arg")
+        asserts.false(env, _has_arg_prefix(args, "--artifact="), "artifact should be in the batch file")
+        outputs_count += len(action.outputs.to_list())
+    asserts.equals(env, 3, outputs_count)
 
     return analysistest.end(env)
 
+def _has_arg_prefix(args, prefix):
+    for arg in args:
+        if arg.startswith(prefix):
+            return True
+    return False
+
 def _has_arg(args, expected):
     for arg in args:
         if arg == expected:
@@ -63,6 +94,7 @@ def _has_arg(args, expected):
 
 artifact_basic_test = analysistest.make(_artifact_basic_test_impl)
 artifact_custom_test = analysistest.make(_artifact_custom_test_impl)
+mabel_rule_batched_test = analysistest.make(_mabel_rule_batched_test_impl)
 
 def mabel_test_suite():
     # Test 1: Basic usage
@@ -81,6 +113,7 @@ def mabel_test_suite():
         test_only = True,
         exports_generation_type = "none",
         maven_exclude_deps = ["group:exclude"],
+        traversal_threads = 1,
     )
 
     artifact_custom_test(
@@ -93,3 +126,20 @@ def mabel_test_suite():
 
     if basic_label != dup_label:
         fail("artifact() macro should be idempotent and return the same label for the same coordinate. Expected {}, got {}".format(basic_label, dup_label))
+
+    # Test 4: Batched resolving
+    mabel_rule(
+        name = "batched_mabel_rule",
+        maven_deps = [
+            artifact("com.example:batch1:1.0"),
+            artifact("com.example:batch2:1.0"),
+            artifact("com.example:batch3:1.0"),
+        ],
+        resolver_actions = 2,
+        tags = ["manual"],
+    )
+
+    mabel_rule_batched_test(
+        name = "mabel_rule_batched_test",
+        target_under_test = ":batched_mabel_rule",
+    )